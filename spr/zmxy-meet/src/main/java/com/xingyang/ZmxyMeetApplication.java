@@ -3,9 +3,11 @@ package com.xingyang;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @MapperScan("com.xingyang.mapper")
+@EnableScheduling
 public class ZmxyMeetApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,108 @@
+package com.xingyang.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.xingyang.mapper.CircleMemberMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 圈子成员本地缓存，群聊发送和分发时判断成员身份，避免每条消息都查询成员表
+ * 未命中时在独立线程池中加载，Redis 监听线程可以异步等待而不直接查库；
+ * 加入/退出圈子后通过 Redis 发布订阅让所有节点失效该圈子的缓存
+ */
+@Component
+public class CircleMemberCache {
+    
+    private static final String CHANGE_CHANNEL = "circle:member:changes";
+    
+    private final AsyncLoadingCache<Long, Set<Long>> members;
+    private final ExecutorService loader;
+    private final StringRedisTemplate stringRedisTemplate;
+    
+    public CircleMemberCache(CircleMemberMapper circleMemberMapper,
+                             StringRedisTemplate stringRedisTemplate,
+                             RedisMessageListenerContainer listenerContainer,
+                             @Value("${circle.member-cache.max-size:1000}") long maxSize,
+                             @Value("${circle.member-cache.ttl-seconds:60}") long ttlSeconds,
+                             @Value("${circle.member-cache.loader-threads:2}") int loaderThreads) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        
+        AtomicInteger counter = new AtomicInteger();
+        this.loader = Executors.newFixedThreadPool(loaderThreads, r -> {
+            Thread thread = new Thread(r, "circle-member-loader-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.members = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .executor(loader)
+                .buildAsync(circleId -> Set.copyOf(circleMemberMapper.selectUserIds(circleId)));
+        
+        listenerContainer.addMessageListener(
+                (message, pattern) -> members.synchronous().invalidate(
+                        Long.valueOf(new String(message.getBody(), StandardCharsets.UTF_8))),
+                new ChannelTopic(CHANGE_CHANNEL));
+    }
+    
+    public Set<Long> getMembers(Long circleId) {
+        return members.synchronous().get(circleId);
+    }
+    
+    /**
+     * 已缓存时返回已完成的 future，否则在加载线程池中查库，调用线程不阻塞
+     */
+    public CompletableFuture<Set<Long>> getMembersAsync(Long circleId) {
+        return members.get(circleId);
+    }
+    
+    public boolean isMember(Long circleId, Long userId) {
+        return getMembers(circleId).contains(userId);
+    }
+    
+    /**
+     * 成员变更后失效所有节点上该圈子的缓存；在事务中调用时等提交后再失效，避免读到旧成员列表
+     */
+    public void invalidate(Long circleId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    broadcastInvalidate(circleId);
+                }
+            });
+        } else {
+            broadcastInvalidate(circleId);
+        }
+    }
+    
+    private void broadcastInvalidate(Long circleId) {
+        members.synchronous().invalidate(circleId);
+        try {
+            stringRedisTemplate.convertAndSend(CHANGE_CHANNEL, String.valueOf(circleId));
+        } catch (Exception e) {
+            // 其他节点最多在 ttl-seconds 后过期
+            System.err.println("圈子成员变更广播失败: " + e.getMessage());
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+}
@@ -0,0 +1,283 @@
+package com.xingyang.cache;
+
+import com.xingyang.entity.Relation;
+import com.xingyang.mapper.RelationMapper;
+import com.xingyang.util.LongHashSet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 关注关系邻接表（进程内）：每个用户的关注集合和粉丝集合，ID 存在 LongHashSet 中不装箱
+ * 启动后流式读取 tb_relation 预热，预热完成前查询回源 MySQL，预热失败时按 retry-interval-ms 重试直到成功；
+ * 关注/取消关注时更新本地并通过 Redis 发布订阅通知其他节点，定时全量重建纠正漏掉的变更
+ */
+@Component
+public class FollowGraphCache {
+
+    private static final String CHANGE_CHANNEL = "relation:graph:changes";
+
+    private record Graph(Map<Long, LongHashSet> following, Map<Long, LongHashSet> followers) {
+        Graph() {
+            this(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * 一条关注变更，重建期间暂存，重建完成后补到新图上
+     */
+    private record Change(boolean follow, long followerId, long followedId) {
+    }
+
+    private final RelationMapper relationMapper;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final boolean enabled;
+
+    private volatile Graph graph = new Graph();
+    private volatile boolean ready;
+    private final AtomicBoolean loading = new AtomicBoolean();
+    private List<Change> pendingChanges;
+
+    public FollowGraphCache(RelationMapper relationMapper,
+                            StringRedisTemplate stringRedisTemplate,
+                            RedisMessageListenerContainer listenerContainer,
+                            @Value("${relation.graph.enabled:true}") boolean enabled) {
+        this.relationMapper = relationMapper;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.enabled = enabled;
+
+        // 其他节点（以及本节点）发布的变更，重复应用是幂等的
+        listenerContainer.addMessageListener(
+                (message, pattern) -> onChangeMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CHANGE_CHANNEL));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::reload, "follow-graph-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 定时全量重建，纠正发布订阅断线期间漏掉的变更
+     */
+    @Scheduled(fixedDelayString = "${relation.graph.reload-interval-ms:3600000}",
+               initialDelayString = "${relation.graph.reload-interval-ms:3600000}")
+    public void scheduledReload() {
+        if (enabled && ready) {
+            reload();
+        }
+    }
+
+    /**
+     * 预热失败后重试，直到邻接表可用；之后由 scheduledReload 接管
+     */
+    @Scheduled(fixedDelayString = "${relation.graph.retry-interval-ms:30000}",
+               initialDelayString = "${relation.graph.retry-interval-ms:30000}")
+    public void retryWarmUp() {
+        if (enabled && !ready) {
+            reload();
+        }
+    }
+
+    private void reload() {
+        // 预热线程、重试和定时重建可能撞在一起，同一时间只做一次全量加载
+        if (!loading.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            doReload();
+        } finally {
+            loading.set(false);
+        }
+    }
+
+    private void doReload() {
+        synchronized (this) {
+            pendingChanges = new ArrayList<>();
+        }
+        try {
+            long start = System.currentTimeMillis();
+            Graph fresh = new Graph();
+            long[] edges = {0};
+            // 流式读取，不把整张表装进内存
+            relationMapper.streamFollowEdges(context -> {
+                Relation edge = context.getResultObject();
+                addEdge(fresh, edge.getUserIdA(), edge.getUserIdB());
+                edges[0]++;
+            });
+            synchronized (this) {
+                for (Change change : pendingChanges) {
+                    apply(fresh, change);
+                }
+                pendingChanges = null;
+                graph = fresh;
+                ready = true;
+            }
+            System.out.println("关注关系邻接表加载完成: " + edges[0] + " 条, 用户 " + fresh.following().size()
+                    + ", 耗时 " + (System.currentTimeMillis() - start) + "ms");
+        } catch (Exception e) {
+            synchronized (this) {
+                pendingChanges = null;
+            }
+            System.err.println("关注关系邻接表加载失败: " + e.getMessage());
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean isFollowing(long followerId, long followedId) {
+        LongHashSet set = graph.following().get(followerId);
+        if (set == null) {
+            return false;
+        }
+        synchronized (set) {
+            return set.contains(followedId);
+        }
+    }
+
+    public int followingCount(long userId) {
+        return size(graph.following().get(userId));
+    }
+
+    public int followerCount(long userId) {
+        return size(graph.followers().get(userId));
+    }
+
+    public long[] following(long userId) {
+        return toArray(graph.following().get(userId));
+    }
+
+    public long[] followers(long userId) {
+        return toArray(graph.followers().get(userId));
+    }
+
+    /**
+     * 关注过别人的所有用户
+     */
+    public long[] users() {
+        return graph.following().keySet().stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * 关注关系写入 MySQL 后调用；在事务中调用时等提交后再生效
+     */
+    public void onFollow(long followerId, long followedId) {
+        publish(new Change(true, followerId, followedId));
+    }
+
+    public void onUnfollow(long followerId, long followedId) {
+        publish(new Change(false, followerId, followedId));
+    }
+
+    private void publish(Change change) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    broadcast(change);
+                }
+            });
+        } else {
+            broadcast(change);
+        }
+    }
+
+    private void broadcast(Change change) {
+        applyLocal(change);
+        try {
+            stringRedisTemplate.convertAndSend(CHANGE_CHANNEL,
+                    (change.follow() ? "F:" : "U:") + change.followerId() + ":" + change.followedId());
+        } catch (Exception e) {
+            System.err.println("关注关系变更广播失败: " + e.getMessage());
+        }
+    }
+
+    private void onChangeMessage(String body) {
+        if (!enabled) {
+            return;
+        }
+        String[] parts = body.split(":");
+        if (parts.length == 3) {
+            applyLocal(new Change("F".equals(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+        }
+    }
+
+    private void applyLocal(Change change) {
+        synchronized (this) {
+            if (pendingChanges != null) {
+                pendingChanges.add(change);
+            }
+        }
+        apply(graph, change);
+    }
+
+    private static void apply(Graph target, Change change) {
+        if (change.follow()) {
+            addEdge(target, change.followerId(), change.followedId());
+        } else {
+            removeEdge(target.following().get(change.followerId()), change.followedId());
+            removeEdge(target.followers().get(change.followedId()), change.followerId());
+        }
+    }
+
+    private static void addEdge(Graph target, long followerId, long followedId) {
+        LongHashSet following = target.following().computeIfAbsent(followerId, id -> new LongHashSet());
+        synchronized (following) {
+            following.add(followedId);
+        }
+        LongHashSet followers = target.followers().computeIfAbsent(followedId, id -> new LongHashSet());
+        synchronized (followers) {
+            followers.add(followerId);
+        }
+    }
+
+    private static void removeEdge(LongHashSet set, long id) {
+        if (set != null) {
+            synchronized (set) {
+                set.remove(id);
+            }
+        }
+    }
+
+    private static int size(LongHashSet set) {
+        if (set == null) {
+            return 0;
+        }
+        synchronized (set) {
+            return set.size();
+        }
+    }
+
+    private static long[] toArray(LongHashSet set) {
+        if (set == null) {
+            return new long[0];
+        }
+        synchronized (set) {
+            return set.toArray();
+        }
+    }
+}
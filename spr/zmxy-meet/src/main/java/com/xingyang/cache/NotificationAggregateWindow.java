@@ -0,0 +1,116 @@
+package com.xingyang.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 通知聚合窗口（Redis）
+ * notification:agg:{userId}:{type}:{relatedId}         STRING  窗口内聚合到的通知ID，窗口从第一条通知开始计时，不续期
+ * notification:agg:{userId}:{type}:{relatedId}:actors  SET     窗口内已计入人数的触发者，与窗口同时过期
+ */
+@Component
+public class NotificationAggregateWindow {
+
+    private static final String KEY_PREFIX = "notification:agg:";
+    private static final String ACTORS_SUFFIX = ":actors";
+
+    /**
+     * 打开窗口并重置触发者集合，ARGV[3..] 为第一批触发者
+     */
+    private static final DefaultRedisScript<Long> OPEN_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])\n" +
+            "redis.call('DEL', KEYS[2])\n" +
+            "if #ARGV > 2 then\n" +
+            "  redis.call('SADD', KEYS[2], unpack(ARGV, 3))\n" +
+            "  redis.call('PEXPIRE', KEYS[2], ARGV[2])\n" +
+            "end\n" +
+            "return 1",
+            Long.class);
+
+    /**
+     * 把触发者加入窗口，返回其中新出现的触发者；窗口已过期时返回 nil
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> ADD_ACTORS_SCRIPT = new DefaultRedisScript<>(
+            "local ttl = redis.call('PTTL', KEYS[1])\n" +
+            "if ttl <= 0 then\n" +
+            "  return false\n" +
+            "end\n" +
+            "local added = {}\n" +
+            "for i = 1, #ARGV do\n" +
+            "  if redis.call('SADD', KEYS[2], ARGV[i]) == 1 then\n" +
+            "    added[#added + 1] = ARGV[i]\n" +
+            "  end\n" +
+            "end\n" +
+            "redis.call('PEXPIRE', KEYS[2], ttl)\n" +
+            "return added",
+            List.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Duration window;
+
+    public NotificationAggregateWindow(StringRedisTemplate stringRedisTemplate,
+                                       @Value("${notification.aggregate.window-minutes:30}") long windowMinutes) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.window = Duration.ofMinutes(windowMinutes);
+    }
+
+    /**
+     * 当前窗口对应的通知ID，没有打开的窗口时返回 null
+     */
+    public Long current(Long userId, String type, Long relatedId) {
+        String value = stringRedisTemplate.opsForValue().get(key(userId, type, relatedId));
+        return value != null ? Long.valueOf(value) : null;
+    }
+
+    /**
+     * 以新插入的通知打开窗口，actorIds 是这条通知已计入的触发者；需要在通知提交后调用，
+     * 避免窗口指向回滚掉的通知；已有窗口时覆盖（旧窗口的通知已读或已删除，不能再聚合）
+     */
+    public void open(Long userId, String type, Long relatedId, Long notificationId, Collection<Long> actorIds) {
+        String key = key(userId, type, relatedId);
+        List<String> args = new ArrayList<>();
+        args.add(notificationId.toString());
+        args.add(String.valueOf(window.toMillis()));
+        actorIds.forEach(id -> args.add(id.toString()));
+        stringRedisTemplate.execute(OPEN_SCRIPT, List.of(key, key + ACTORS_SUFFIX), args.toArray());
+    }
+
+    /**
+     * 记录窗口内的触发者，返回其中第一次出现的人（同一个人重复点赞、评论不重复计数）；窗口不存在时返回 null
+     */
+    public List<Long> addActors(Long userId, String type, Long relatedId, Collection<Long> actorIds) {
+        if (actorIds.isEmpty()) {
+            return List.of();
+        }
+        String key = key(userId, type, relatedId);
+        List<?> added = stringRedisTemplate.execute(ADD_ACTORS_SCRIPT, List.of(key, key + ACTORS_SUFFIX),
+                actorIds.stream().map(String::valueOf).toArray());
+        if (added == null) {
+            return null;
+        }
+        return added.stream().map(id -> Long.valueOf(id.toString())).toList();
+    }
+
+    /**
+     * 撤销 addActors 新计入的触发者，聚合所在的事务回滚时调用，重试时这些人还能重新计入
+     */
+    public void removeActors(Long userId, String type, Long relatedId, Collection<Long> actorIds) {
+        if (actorIds.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.opsForSet().remove(key(userId, type, relatedId) + ACTORS_SUFFIX,
+                actorIds.stream().map(String::valueOf).toArray());
+    }
+
+    private String key(Long userId, String type, Long relatedId) {
+        return KEY_PREFIX + userId + ":" + type + ":" + (relatedId != null ? relatedId : 0);
+    }
+}
@@ -0,0 +1,115 @@
+package com.xingyang.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * 通知未读数计数器（Redis）
+ * notification:unread:{userId}          STRING  未读数，创建/已读时增减
+ * notification:unread:{userId}:rebuild  STRING  重建期间累积的增减量
+ * 计数器不存在时读取方先放一个重建标记再从 MySQL 统计，统计期间的增减记在标记上，
+ * 写回时一并加上，不会因为统计和写回之间的增减而少算；计数带过期时间，偶发偏差会随过期自愈
+ */
+@Component
+public class NotificationUnreadCounter {
+
+    private static final String KEY_PREFIX = "notification:unread:";
+    private static final String REBUILD_SUFFIX = ":rebuild";
+    private static final long REBUILD_TTL_SECONDS = 60;
+
+    /**
+     * 计数器存在时增减（不减到负数）；正在重建时记到重建标记上，返回 -1
+     */
+    private static final DefaultRedisScript<Long> ADJUST_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then\n" +
+            "  if redis.call('EXISTS', KEYS[2]) == 1 then\n" +
+            "    redis.call('INCRBY', KEYS[2], ARGV[1])\n" +
+            "  end\n" +
+            "  return -1\n" +
+            "end\n" +
+            "local v = redis.call('INCRBY', KEYS[1], ARGV[1])\n" +
+            "if v < 0 then\n" +
+            "  v = redis.call('INCRBY', KEYS[1], -v)\n" +
+            "end\n" +
+            "return v",
+            Long.class);
+
+    /**
+     * 重建完成：计数器已被别人写回时以它为准；重建标记已被 reset 删除时不写回（统计结果可能已过时）；
+     * 否则写入 统计值 + 期间的增减量
+     */
+    private static final DefaultRedisScript<Long> FINISH_REBUILD_SCRIPT = new DefaultRedisScript<>(
+            "local cur = redis.call('GET', KEYS[1])\n" +
+            "if cur then\n" +
+            "  return tonumber(cur)\n" +
+            "end\n" +
+            "local delta = redis.call('GET', KEYS[2])\n" +
+            "if not delta then\n" +
+            "  return tonumber(ARGV[1])\n" +
+            "end\n" +
+            "local v = math.max(tonumber(ARGV[1]) + tonumber(delta), 0)\n" +
+            "redis.call('SET', KEYS[1], v, 'EX', ARGV[2])\n" +
+            "redis.call('DEL', KEYS[2])\n" +
+            "return v",
+            Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Duration ttl;
+
+    public NotificationUnreadCounter(StringRedisTemplate stringRedisTemplate,
+                                     @Value("${notification.unread.ttl-hours:24}") long ttlHours) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.ttl = Duration.ofHours(ttlHours);
+    }
+
+    /**
+     * 读取未读数，计数器不存在时用 loader 从数据库统计并写回
+     */
+    public long get(Long userId, LongSupplier loader) {
+        String value = stringRedisTemplate.opsForValue().get(key(userId));
+        if (value != null) {
+            return Long.parseLong(value);
+        }
+        // 先放重建标记再统计，统计开始后的增减都会记到标记上；并发重建时共用同一个标记
+        stringRedisTemplate.opsForValue().setIfAbsent(rebuildKey(userId), "0",
+                Duration.ofSeconds(REBUILD_TTL_SECONDS));
+        long count = loader.getAsLong();
+        Long rebuilt = stringRedisTemplate.execute(FINISH_REBUILD_SCRIPT, List.of(key(userId), rebuildKey(userId)),
+                String.valueOf(count), String.valueOf(ttl.toSeconds()));
+        return rebuilt != null ? rebuilt : count;
+    }
+
+    /**
+     * 增减未读数，返回新值；计数器不存在时返回 -1
+     */
+    public long increment(Long userId, long delta) {
+        Long value = stringRedisTemplate.execute(ADJUST_SCRIPT, List.of(key(userId), rebuildKey(userId)),
+                String.valueOf(delta));
+        return value != null ? value : -1;
+    }
+
+    public long decrement(Long userId, long delta) {
+        return increment(userId, -delta);
+    }
+
+    /**
+     * 删除计数器，下次读取时重建；同时删除重建标记，进行中的重建不会写回过时的统计值
+     */
+    public void reset(Long userId) {
+        stringRedisTemplate.delete(List.of(key(userId), rebuildKey(userId)));
+    }
+
+    private String key(Long userId) {
+        return KEY_PREFIX + userId;
+    }
+
+    private String rebuildKey(Long userId) {
+        return KEY_PREFIX + userId + REBUILD_SUFFIX;
+    }
+}
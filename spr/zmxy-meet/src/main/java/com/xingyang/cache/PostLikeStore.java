@@ -0,0 +1,164 @@
+package com.xingyang.cache;
+
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 点赞存储（Redis）
+ * post:likes:{postId}    SET   点赞该帖子的用户
+ * user:likes:{userId}    ZSET  用户点赞的帖子，分数为点赞时间
+ * post:likes:delta       HASH  尚未写回 MySQL 的点赞数增量
+ * post:likes:dirty       SET   有待写回增量的帖子
+ */
+@Component
+public class PostLikeStore {
+
+    private static final String POST_LIKES_KEY_PREFIX = "post:likes:";
+    private static final String USER_LIKES_KEY_PREFIX = "user:likes:";
+    private static final String DELTA_KEY = "post:likes:delta";
+    private static final String DIRTY_KEY = "post:likes:dirty";
+
+    private static final DefaultRedisScript<Long> LIKE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('SADD', KEYS[1], ARGV[1]) == 1 then\n" +
+            "  redis.call('ZADD', KEYS[2], ARGV[3], ARGV[2])\n" +
+            "  redis.call('HINCRBY', KEYS[3], ARGV[2], 1)\n" +
+            "  redis.call('SADD', KEYS[4], ARGV[2])\n" +
+            "  return 1\n" +
+            "end\n" +
+            "return 0",
+            Long.class);
+
+    private static final DefaultRedisScript<Long> UNLIKE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('SREM', KEYS[1], ARGV[1]) == 1 then\n" +
+            "  redis.call('ZREM', KEYS[2], ARGV[2])\n" +
+            "  redis.call('HINCRBY', KEYS[3], ARGV[2], -1)\n" +
+            "  redis.call('SADD', KEYS[4], ARGV[2])\n" +
+            "  return 1\n" +
+            "end\n" +
+            "return 0",
+            Long.class);
+
+    /**
+     * 取出并清空一批帖子的增量，返回值与 ARGV 顺序一致
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> TAKE_DELTAS_SCRIPT = new DefaultRedisScript<>(
+            "local out = {}\n" +
+            "for i, id in ipairs(ARGV) do\n" +
+            "  out[i] = redis.call('HGET', KEYS[1], id) or '0'\n" +
+            "  redis.call('HDEL', KEYS[1], id)\n" +
+            "end\n" +
+            "return out",
+            List.class);
+
+    public record LikeRecord(Long postId, Long userId, long likedAt) {
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    public PostLikeStore(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * 点赞，返回 true 表示本次新增（之前未点赞）
+     */
+    public boolean like(Long postId, Long userId) {
+        Long added = stringRedisTemplate.execute(LIKE_SCRIPT, keys(postId, userId),
+                userId.toString(), postId.toString(), String.valueOf(System.currentTimeMillis()));
+        return added != null && added == 1;
+    }
+
+    /**
+     * 取消点赞，返回 true 表示本次确实取消了
+     */
+    public boolean unlike(Long postId, Long userId) {
+        Long removed = stringRedisTemplate.execute(UNLIKE_SCRIPT, keys(postId, userId),
+                userId.toString(), postId.toString());
+        return removed != null && removed == 1;
+    }
+
+    public boolean isLiked(Long postId, Long userId) {
+        return Boolean.TRUE.equals(stringRedisTemplate.opsForSet().isMember(postLikesKey(postId), userId.toString()));
+    }
+
+    /**
+     * 用户点赞的帖子ID，按点赞时间倒序分页
+     */
+    public List<Long> getLikedPostIds(Long userId, long offset, long count) {
+        Set<String> postIds = stringRedisTemplate.opsForZSet()
+                .reverseRange(userLikesKey(userId), offset, offset + count - 1);
+        if (postIds == null) {
+            return List.of();
+        }
+        List<Long> result = new ArrayList<>(postIds.size());
+        postIds.forEach(id -> result.add(Long.valueOf(id)));
+        return result;
+    }
+
+    /**
+     * 取出最多 batchSize 个帖子的待写回增量（增量为 0 的不返回）
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Long, Integer> takePendingDeltas(long batchSize) {
+        List<String> postIds = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, batchSize);
+        if (postIds == null || postIds.isEmpty()) {
+            return Map.of();
+        }
+
+        List<Object> deltas = stringRedisTemplate.execute(TAKE_DELTAS_SCRIPT, List.of(DELTA_KEY), postIds.toArray());
+        Map<Long, Integer> result = new HashMap<>();
+        for (int i = 0; i < postIds.size(); i++) {
+            int delta = deltas != null ? Integer.parseInt(deltas.get(i).toString()) : 0;
+            if (delta != 0) {
+                result.put(Long.valueOf(postIds.get(i)), delta);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 写回失败时把增量放回去，下次再试
+     */
+    public void restoreDeltas(Map<Long, Integer> deltas) {
+        deltas.forEach((postId, delta) -> {
+            stringRedisTemplate.opsForHash().increment(DELTA_KEY, postId.toString(), delta);
+            stringRedisTemplate.opsForSet().add(DIRTY_KEY, postId.toString());
+        });
+    }
+
+    /**
+     * 导入已有的点赞记录（数量已计入 MySQL，不产生增量），使用管道批量写入
+     */
+    public void importLikes(List<LikeRecord> likes) {
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (LikeRecord like : likes) {
+                    ops.opsForSet().add(postLikesKey(like.postId()), like.userId().toString());
+                    ops.opsForZSet().add(userLikesKey(like.userId()), like.postId().toString(), like.likedAt());
+                }
+                return null;
+            }
+        });
+    }
+
+    private List<String> keys(Long postId, Long userId) {
+        return List.of(postLikesKey(postId), userLikesKey(userId), DELTA_KEY, DIRTY_KEY);
+    }
+
+    private String postLikesKey(Long postId) {
+        return POST_LIKES_KEY_PREFIX + postId;
+    }
+
+    private String userLikesKey(Long userId) {
+        return USER_LIKES_KEY_PREFIX + userId;
+    }
+}
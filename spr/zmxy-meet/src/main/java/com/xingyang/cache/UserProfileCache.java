@@ -0,0 +1,180 @@
+package com.xingyang.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.xingyang.entity.User;
+import com.xingyang.mapper.UserMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 用户资料两级缓存：Caffeine 本地缓存（L1）+ Redis（L2），未命中时回源 MySQL
+ * 资料变更时删除 Redis 并通过发布订阅通知所有节点清理本地缓存
+ * 缓存中不保存密码哈希；返回给调用方的是副本，修改它不会影响缓存（需要密码时用 findByUsername 查库）
+ */
+@Component
+public class UserProfileCache {
+
+    private static final String KEY_PREFIX = "user:profile:";
+    private static final String INVALIDATE_CHANNEL = "user:profile:invalidate";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final UserMapper userMapper;
+    private final ObjectMapper objectMapper;
+    private final Cache<Long, User> localCache;
+    private final Duration redisTtl;
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder localMisses = new LongAdder();
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder redisMisses = new LongAdder();
+
+    public UserProfileCache(StringRedisTemplate stringRedisTemplate,
+                            UserMapper userMapper,
+                            ObjectMapper objectMapper,
+                            RedisMessageListenerContainer listenerContainer,
+                            @Value("${user.cache.local-max-size:10000}") long localMaxSize,
+                            @Value("${user.cache.local-ttl-seconds:60}") long localTtlSeconds,
+                            @Value("${user.cache.redis-ttl-minutes:30}") long redisTtlMinutes) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.userMapper = userMapper;
+        this.objectMapper = objectMapper;
+        this.redisTtl = Duration.ofMinutes(redisTtlMinutes);
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(localTtlSeconds))
+                .build();
+
+        // 其他节点修改资料后广播的失效消息
+        listenerContainer.addMessageListener(
+                (message, pattern) -> evictLocal(Long.valueOf(new String(message.getBody(), StandardCharsets.UTF_8))),
+                new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    public User get(Long userId) {
+        if (userId == null) {
+            return null;
+        }
+        return getAll(List.of(userId)).get(userId);
+    }
+
+    /**
+     * 批量读取：L1 -> L2 (MGET) -> MySQL (selectBatchIds)，逐级回填
+     */
+    public Map<Long, User> getAll(Collection<Long> userIds) {
+        Set<Long> ids = userIds.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        Map<Long, User> result = new HashMap<>();
+        localCache.getAllPresent(ids).forEach((id, user) -> result.put(id, copyOf(user)));
+        localHits.add(result.size());
+
+        List<Long> missing = ids.stream().filter(id -> !result.containsKey(id)).collect(Collectors.toList());
+        localMisses.add(missing.size());
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        List<String> values = stringRedisTemplate.opsForValue()
+                .multiGet(missing.stream().map(this::key).collect(Collectors.toList()));
+        List<Long> dbMissing = new ArrayList<>();
+        for (int i = 0; i < missing.size(); i++) {
+            User user = values != null ? parse(values.get(i)) : null;
+            if (user != null) {
+                user.setPassword(null);
+                localCache.put(user.getId(), user);
+                result.put(user.getId(), copyOf(user));
+            } else {
+                dbMissing.add(missing.get(i));
+            }
+        }
+        redisHits.add(missing.size() - dbMissing.size());
+        redisMisses.add(dbMissing.size());
+        if (dbMissing.isEmpty()) {
+            return result;
+        }
+
+        for (User loaded : userMapper.selectBatchIds(dbMissing)) {
+            User user = copyOf(loaded);
+            localCache.put(user.getId(), user);
+            result.put(user.getId(), copyOf(user));
+            try {
+                stringRedisTemplate.opsForValue().set(key(user.getId()), objectMapper.writeValueAsString(user), redisTtl);
+            } catch (JsonProcessingException e) {
+                System.err.println("用户资料缓存写入失败: " + e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 资料变更后调用：删除 Redis 缓存并通知所有节点清理本地缓存
+     */
+    public void invalidate(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        localCache.invalidate(userId);
+        stringRedisTemplate.delete(key(userId));
+        stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, userId.toString());
+    }
+
+    public void evictLocal(Long userId) {
+        localCache.invalidate(userId);
+    }
+
+    /**
+     * 各级缓存命中统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("localHits", localHits.sum());
+        stats.put("localMisses", localMisses.sum());
+        stats.put("localSize", localCache.estimatedSize());
+        stats.put("redisHits", redisHits.sum());
+        stats.put("redisMisses", redisMisses.sum());
+        return stats;
+    }
+
+    /**
+     * 不含密码的副本
+     */
+    private static User copyOf(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setUsername(user.getUsername());
+        copy.setNickname(user.getNickname());
+        copy.setEmail(user.getEmail());
+        copy.setAvatarUrl(user.getAvatarUrl());
+        copy.setSchoolVerified(user.getSchoolVerified());
+        copy.setCampus(user.getCampus());
+        copy.setCreateTime(user.getCreateTime());
+        copy.setUpdateTime(user.getUpdateTime());
+        copy.setDeleted(user.getDeleted());
+        return copy;
+    }
+
+    private User parse(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, User.class);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private String key(Long userId) {
+        return KEY_PREFIX + userId;
+    }
+}
@@ -0,0 +1,167 @@
+package com.xingyang.cache;
+
+import com.xingyang.entity.UserStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 用户计数缓存（Redis）
+ * user:stats:{userId}          HASH  posts / followers / following
+ * user:stats:{userId}:rebuild  HASH  加载期间累积的各字段增减量
+ * 缓存存在时才随 MySQL 增减，不存在时读取方先放加载标记再从 tb_user_stats 加载，
+ * 加载期间提交的增减记在标记上，写回时一并加上，不会被加载到的旧值覆盖；带过期时间，偏差会随过期自愈
+ */
+@Component
+public class UserStatsCache {
+
+    private static final String KEY_PREFIX = "user:stats:";
+    private static final String REBUILD_SUFFIX = ":rebuild";
+    private static final long REBUILD_TTL_SECONDS = 60;
+
+    private static final String POSTS = "posts";
+    private static final String FOLLOWERS = "followers";
+    private static final String FOLLOWING = "following";
+
+    /**
+     * 缓存存在时才增减各字段，并且不减到负数；正在加载时记到加载标记上
+     */
+    private static final DefaultRedisScript<Long> ADJUST_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then\n" +
+            "  if redis.call('EXISTS', KEYS[2]) == 1 then\n" +
+            "    for i = 1, #ARGV, 2 do\n" +
+            "      redis.call('HINCRBY', KEYS[2], ARGV[i], ARGV[i + 1])\n" +
+            "    end\n" +
+            "  end\n" +
+            "  return 0\n" +
+            "end\n" +
+            "for i = 1, #ARGV, 2 do\n" +
+            "  local delta = tonumber(ARGV[i + 1])\n" +
+            "  if delta ~= 0 and redis.call('HINCRBY', KEYS[1], ARGV[i], delta) < 0 then\n" +
+            "    redis.call('HSET', KEYS[1], ARGV[i], 0)\n" +
+            "  end\n" +
+            "end\n" +
+            "return 1",
+            Long.class);
+
+    /**
+     * 放置加载标记，已有标记时保留（并发加载共用同一个标记）
+     */
+    private static final DefaultRedisScript<Long> BEGIN_REBUILD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then\n" +
+            "  return 0\n" +
+            "end\n" +
+            "redis.call('HSET', KEYS[1], 'posts', 0, 'followers', 0, 'following', 0)\n" +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1])\n" +
+            "return 1",
+            Long.class);
+
+    /**
+     * 加载完成：缓存已被别人写回时以它为准；标记已被 evict 删除时不写回（加载到的值可能已过时）；
+     * 否则写入 加载值 + 期间的增减量。返回最终的 posts / followers / following
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> FINISH_REBUILD_SCRIPT = new DefaultRedisScript<>(
+            "local cur = redis.call('HMGET', KEYS[1], 'posts', 'followers', 'following')\n" +
+            "if cur[1] and cur[2] and cur[3] then\n" +
+            "  return {tonumber(cur[1]), tonumber(cur[2]), tonumber(cur[3])}\n" +
+            "end\n" +
+            "local delta = redis.call('HMGET', KEYS[2], 'posts', 'followers', 'following')\n" +
+            "if not (delta[1] and delta[2] and delta[3]) then\n" +
+            "  return {tonumber(ARGV[1]), tonumber(ARGV[2]), tonumber(ARGV[3])}\n" +
+            "end\n" +
+            "local v = {}\n" +
+            "for i = 1, 3 do\n" +
+            "  v[i] = math.max(tonumber(ARGV[i]) + tonumber(delta[i]), 0)\n" +
+            "end\n" +
+            "redis.call('HSET', KEYS[1], 'posts', v[1], 'followers', v[2], 'following', v[3])\n" +
+            "redis.call('EXPIRE', KEYS[1], ARGV[4])\n" +
+            "redis.call('DEL', KEYS[2])\n" +
+            "return v",
+            List.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Duration ttl;
+
+    public UserStatsCache(StringRedisTemplate stringRedisTemplate,
+                          @Value("${user.stats.redis-ttl-hours:24}") long ttlHours) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.ttl = Duration.ofHours(ttlHours);
+    }
+
+    /**
+     * 读取计数，缓存不存在时返回 null
+     */
+    public UserStats get(Long userId) {
+        Map<Object, Object> fields = stringRedisTemplate.opsForHash().entries(key(userId));
+        if (fields.size() < 3) {
+            return null;
+        }
+        UserStats stats = new UserStats();
+        stats.setUserId(userId);
+        stats.setPostsCount(Integer.valueOf(fields.get(POSTS).toString()));
+        stats.setFollowersCount(Integer.valueOf(fields.get(FOLLOWERS).toString()));
+        stats.setFollowingCount(Integer.valueOf(fields.get(FOLLOWING).toString()));
+        return stats;
+    }
+
+    /**
+     * 缓存未命中、开始从 MySQL 加载前调用，之后提交的增减会记到加载标记上
+     */
+    public void beginRebuild(Long userId) {
+        stringRedisTemplate.execute(BEGIN_REBUILD_SCRIPT, List.of(rebuildKey(userId)),
+                String.valueOf(REBUILD_TTL_SECONDS));
+    }
+
+    /**
+     * 用加载到的计数加上期间的增减量写回缓存，返回最终写入（或已被别人写入）的计数
+     */
+    public UserStats finishRebuild(UserStats loaded) {
+        Long userId = loaded.getUserId();
+        List<?> values = stringRedisTemplate.execute(FINISH_REBUILD_SCRIPT, List.of(key(userId), rebuildKey(userId)),
+                String.valueOf(loaded.getPostsCount()),
+                String.valueOf(loaded.getFollowersCount()),
+                String.valueOf(loaded.getFollowingCount()),
+                String.valueOf(ttl.toSeconds()));
+        if (values == null || values.size() < 3) {
+            return loaded;
+        }
+        UserStats stats = new UserStats();
+        stats.setUserId(userId);
+        stats.setPostsCount(((Number) values.get(0)).intValue());
+        stats.setFollowersCount(((Number) values.get(1)).intValue());
+        stats.setFollowingCount(((Number) values.get(2)).intValue());
+        return stats;
+    }
+
+    public void adjust(Long userId, int postsDelta, int followersDelta, int followingDelta) {
+        stringRedisTemplate.execute(ADJUST_SCRIPT, List.of(key(userId), rebuildKey(userId)),
+                POSTS, String.valueOf(postsDelta),
+                FOLLOWERS, String.valueOf(followersDelta),
+                FOLLOWING, String.valueOf(followingDelta));
+    }
+
+    /**
+     * 删除缓存，下次读取时从 tb_user_stats 加载；同时删除加载标记，进行中的加载不会写回过时的值
+     */
+    public void evict(Collection<Long> userIds) {
+        stringRedisTemplate.delete(userIds.stream()
+                .flatMap(id -> Stream.of(key(id), rebuildKey(id)))
+                .toList());
+    }
+
+    private String key(Long userId) {
+        return KEY_PREFIX + userId;
+    }
+
+    private String rebuildKey(Long userId) {
+        return KEY_PREFIX + userId + REBUILD_SUFFIX;
+    }
+}
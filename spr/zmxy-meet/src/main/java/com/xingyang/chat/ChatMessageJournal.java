@@ -0,0 +1,150 @@
+package com.xingyang.chat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xingyang.entity.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 聊天消息本地追加日志
+ * 消息写入 MySQL 之前先追加到当前段文件（每行一条 JSON），段内消息全部落库后删除该段；
+ * 进程崩溃后重启时读取剩余的段文件补写；反复写入失败的消息移到死信文件，留给人工处理
+ */
+@Component
+public class ChatMessageJournal {
+    
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String DEAD_LETTER_FILE = "dead-letter.log";
+    
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final boolean fsync;
+    
+    private FileChannel channel;
+    private Path currentSegment;
+    private long segmentSeq;
+    
+    public ChatMessageJournal(ObjectMapper objectMapper,
+                              @Value("${chat.persist.journal-dir:./data/chat-journal}") String directory,
+                              @Value("${chat.persist.journal-fsync:false}") boolean fsync) throws IOException {
+        this.objectMapper = objectMapper;
+        this.directory = Paths.get(directory);
+        this.fsync = fsync;
+        Files.createDirectories(this.directory);
+    }
+    
+    /**
+     * 追加一条消息到当前段
+     */
+    public synchronized void append(Message message) throws IOException {
+        if (channel == null) {
+            openSegment();
+        }
+        byte[] line = (objectMapper.writeValueAsString(message) + "\n").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(line);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+    
+    /**
+     * 关闭当前段并返回它，之后追加的消息写入新段；当前没有段时返回 null
+     */
+    public synchronized Path roll() throws IOException {
+        if (channel == null) {
+            return null;
+        }
+        channel.force(false);
+        channel.close();
+        channel = null;
+        return currentSegment;
+    }
+    
+    /**
+     * 段内消息已全部落库
+     */
+    public void delete(Path segment) {
+        try {
+            Files.deleteIfExists(segment);
+        } catch (IOException e) {
+            System.err.println("聊天日志段删除失败: " + segment + ", " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 段内部分消息已落库或已移入死信后，用剩下的消息重写该段（先写临时文件再原子替换）
+     */
+    public void rewrite(Path segment, List<Message> messages) throws IOException {
+        Path tmp = segment.resolveSibling(segment.getFileName() + ".tmp");
+        StringBuilder content = new StringBuilder();
+        for (Message message : messages) {
+            content.append(objectMapper.writeValueAsString(message)).append('\n');
+        }
+        Files.writeString(tmp, content, StandardCharsets.UTF_8);
+        Files.move(tmp, segment, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * 追加到死信文件（每行一条 JSON），不再自动重试
+     */
+    public synchronized void deadLetter(Message message) throws IOException {
+        Files.writeString(directory.resolve(DEAD_LETTER_FILE), objectMapper.writeValueAsString(message) + "\n",
+                StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+    
+    /**
+     * 启动时列出上次遗留的段文件（按文件名即创建顺序排序）
+     */
+    public List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+    
+    /**
+     * 读取段内的消息，崩溃时写了一半的最后一行会被跳过
+     */
+    public List<Message> read(Path segment) throws IOException {
+        List<Message> messages = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    messages.add(objectMapper.readValue(line, Message.class));
+                } catch (IOException e) {
+                    System.err.println("聊天日志跳过损坏的记录: " + segment);
+                }
+            }
+        }
+        return messages;
+    }
+    
+    private void openSegment() throws IOException {
+        String name = String.format("chat-%013d-%06d%s", System.currentTimeMillis(), segmentSeq++ % 1_000_000, SEGMENT_SUFFIX);
+        currentSegment = directory.resolve(name);
+        channel = FileChannel.open(currentSegment,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
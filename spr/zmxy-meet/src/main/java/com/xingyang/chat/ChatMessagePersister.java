@@ -0,0 +1,526 @@
+package com.xingyang.chat;
+
+import com.xingyang.entity.Message;
+import com.xingyang.mapper.MessageMapper;
+import com.xingyang.service.ConversationService;
+import com.xingyang.websocket.ChatMessageRouter;
+import com.xingyang.websocket.WebSocketSessionRegistry;
+import com.xingyang.websocket.protocol.ChatFrame;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * 聊天消息异步批量落库（write-behind）
+ * 发送时分配ID、写本地日志后立即返回，后台按时间间隔或条数成组写入 tb_message 并更新会话摘要；
+ * 每次落库后把本节点最小的未落库ID报告给 MessageIdGenerator，用于计算全局已落库水位。
+ * 写入失败的段按退避间隔重试，重试 max-attempts 次后二分定位出错的消息移入死信，不会一直堵住后面的消息
+ */
+@Component
+public class ChatMessagePersister {
+    
+    /**
+     * 一个已关闭的日志段及其中尚未落库的消息
+     */
+    private static final class PendingSegment {
+        private final Path segment;
+        private List<Message> messages;
+        private long lowest;
+        private int attempts;
+        private long nextAttemptAt;
+        
+        PendingSegment(Path segment, List<Message> messages) {
+            this.segment = segment;
+            setMessages(messages);
+        }
+        
+        void setMessages(List<Message> messages) {
+            this.messages = messages;
+            this.lowest = messages.stream().mapToLong(Message::getId).min().orElse(Long.MAX_VALUE);
+        }
+    }
+    
+    private final ChatMessageJournal journal;
+    private final MessageIdGenerator idGenerator;
+    private final MessageMapper messageMapper;
+    private final ConversationService conversationService;
+    private final ChatMessageRouter messageRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService flusher;
+    // 未读数推送不占用落库线程
+    private final ExecutorService unreadPusher;
+    // 等待推送未读数的接收方，落库线程只往里加，推送线程成批取走，同一个人多批消息只推一次
+    private final Set<Long> unreadPushQueue = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean unreadPushScheduled = new AtomicBoolean();
+    private final String pendingOwner;
+    
+    private final int batchSize;
+    private final int maxPending;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+    
+    private List<Message> buffer = new ArrayList<>();
+    private long bufferLowest = Long.MAX_VALUE;
+    private final Deque<PendingSegment> failedSegments = new ConcurrentLinkedDeque<>();
+    // 缓冲区 + 失败待重试的消息数，submit 不加锁判断积压
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    // 已分配ID、还没进缓冲区的消息；分配ID时持读锁，上报未落库位置时持写锁，上报不会漏掉它们
+    private final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<>();
+    private final ReentrantReadWriteLock reportLock = new ReentrantReadWriteLock();
+    // Redis 中是否可能登记着本节点的未落库位置
+    private volatile boolean registered;
+    // 启动时日志里的最大ID，计数器推到它之后才能分配新ID；0 表示已完成
+    private volatile long idFloor;
+    private final Object idFloorLock = new Object();
+    
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    
+    public ChatMessagePersister(ChatMessageJournal journal,
+                                MessageIdGenerator idGenerator,
+                                WebSocketSessionRegistry sessionRegistry,
+                                MessageMapper messageMapper,
+                                ConversationService conversationService,
+                                ChatMessageRouter messageRouter,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${chat.persist.flush-interval-ms:50}") long flushIntervalMs,
+                                @Value("${chat.persist.batch-size:500}") int batchSize,
+                                @Value("${chat.persist.max-pending:100000}") int maxPending,
+                                @Value("${chat.persist.max-attempts:5}") int maxAttempts,
+                                @Value("${chat.persist.retry-backoff-ms:1000}") long retryBackoffMs) {
+        this.journal = journal;
+        this.idGenerator = idGenerator;
+        this.messageMapper = messageMapper;
+        this.conversationService = conversationService;
+        this.messageRouter = messageRouter;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMs = retryBackoffMs;
+        this.pendingOwner = "persist:" + sessionRegistry.getNodeId();
+        
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "chat-persist");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        this.unreadPusher = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "chat-unread-push");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * 启动时把上次遗留在日志里的段放进重试队列，由后台落库线程补写；
+     * 数据库不可用时照常启动，按退避间隔重试，不阻塞应用启动
+     */
+    @PostConstruct
+    public void recover() {
+        long maxId = 0;
+        try {
+            for (Path segment : journal.listSegments()) {
+                List<Message> messages = journal.read(segment);
+                for (Message message : messages) {
+                    maxId = Math.max(maxId, message.getId());
+                }
+                failedSegments.addLast(new PendingSegment(segment, messages));
+                pendingCount.addAndGet(messages.size());
+                System.out.println("聊天日志待恢复: " + segment.getFileName() + ", " + messages.size() + " 条");
+            }
+        } catch (Exception e) {
+            // 段文件还在，下次启动再恢复
+            System.err.println("聊天日志读取失败: " + e.getMessage());
+        }
+        if (!failedSegments.isEmpty()) {
+            registered = true;
+        }
+        idFloor = maxId;
+        ensureIdFloor();
+    }
+    
+    /**
+     * 计数器必须先越过日志里的ID：否则 Redis 数据丢失时新消息可能拿到相同的ID，补写时被当成已存在而丢掉
+     */
+    private boolean ensureIdFloor() {
+        synchronized (idFloorLock) {
+            if (idFloor == 0) {
+                return true;
+            }
+            try {
+                idGenerator.ensureAtLeast(idFloor);
+                idFloor = 0;
+                return true;
+            } catch (Exception e) {
+                System.err.println("消息ID计数器推进失败: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+    
+    /**
+     * 提交一条消息：分配ID和时间并写入本地日志，返回 false 表示积压过多暂不接收
+     */
+    public boolean submit(Message message) {
+        if (idFloor != 0 && !ensureIdFloor()) {
+            return false;
+        }
+        if (pendingCount.incrementAndGet() > maxPending) {
+            pendingCount.decrementAndGet();
+            return false;
+        }
+        
+        // 分配ID不占用缓冲区锁，各个发送线程并行访问 Redis
+        reportLock.readLock().lock();
+        try {
+            message.setId(idGenerator.nextId(pendingOwner));
+            inFlight.add(message.getId());
+            registered = true;
+        } catch (RuntimeException e) {
+            pendingCount.decrementAndGet();
+            throw e;
+        } finally {
+            reportLock.readLock().unlock();
+        }
+        message.setCreateTime(LocalDateTime.now().withNano(0));
+        message.setDeleted(0);
+        
+        // 写日志和放入缓冲区必须一起完成，否则日志段可能在两步之间被切走，段删除后这条消息就没有日志了
+        boolean full;
+        synchronized (this) {
+            try {
+                journal.append(message);
+            } catch (Exception e) {
+                inFlight.remove(message.getId());
+                pendingCount.decrementAndGet();
+                System.err.println("聊天日志写入失败: " + e.getMessage());
+                return false;
+            }
+            buffer.add(message);
+            bufferLowest = Math.min(bufferLowest, message.getId());
+            inFlight.remove(message.getId());
+            full = buffer.size() >= batchSize;
+        }
+        if (full) {
+            flusher.execute(this::flush);
+        }
+        return true;
+    }
+    
+    /**
+     * 成组落库：先重试到期的失败段，再处理当前缓冲区；失败段没写进去也不影响缓冲区落库
+     */
+    private void flush() {
+        try {
+            retryFailed();
+            
+            PendingSegment pending;
+            synchronized (this) {
+                if (buffer.isEmpty()) {
+                    return;
+                }
+                pending = new PendingSegment(journal.roll(), buffer);
+                buffer = new ArrayList<>();
+                bufferLowest = Long.MAX_VALUE;
+            }
+            
+            try {
+                writeBatch(pending.messages, false);
+                journal.delete(pending.segment);
+                pendingCount.addAndGet(-pending.messages.size());
+            } catch (DuplicateKeyException e) {
+                retryLater(pending, pending.messages);
+                // ID 计数器落后于 tb_message（Redis 数据丢失），先把计数器推到最大ID之后再重试
+                idGenerator.ensureAtLeast(messageMapper.selectMaxId());
+                throw e;
+            } catch (Exception e) {
+                retryLater(pending, pending.messages);
+                throw e;
+            }
+        } catch (Exception e) {
+            System.err.println("聊天消息批量落库失败: " + e.getMessage());
+        } finally {
+            reportPending();
+        }
+    }
+    
+    /**
+     * 按顺序重试到期的失败段；上次失败时事务可能其实已提交，已写入的消息跳过，会话未读数也不重复累加。
+     * 重试 max-attempts 次后改为二分写入，定位到单条仍失败（且不是数据库不可用）的消息移入死信
+     */
+    private void retryFailed() {
+        long now = System.currentTimeMillis();
+        PendingSegment pending;
+        while ((pending = failedSegments.peekFirst()) != null && pending.nextAttemptAt <= now) {
+            int before = pending.messages.size();
+            List<Message> remaining;
+            if (pending.attempts >= maxAttempts) {
+                remaining = writeIsolating(pending.messages);
+            } else {
+                try {
+                    writeBatch(pending.messages, true);
+                    remaining = List.of();
+                } catch (Exception e) {
+                    System.err.println("聊天消息重试落库失败: " + pending.segment + ", 第 " + (pending.attempts + 1)
+                            + " 次, " + e.getMessage());
+                    remaining = pending.messages;
+                }
+            }
+            pendingCount.addAndGet(remaining.size() - before);
+            if (!remaining.isEmpty()) {
+                retryLater(pending, remaining);
+                // 多半是数据库还不可用，后面的段等下一轮
+                return;
+            }
+            journal.delete(pending.segment);
+            failedSegments.pollFirst();
+        }
+    }
+    
+    /**
+     * 段留在重试队列里，按失败次数翻倍退避（最多一分钟）；消息变少时同步重写日志段
+     */
+    private void retryLater(PendingSegment pending, List<Message> remaining) {
+        if (remaining.size() < pending.messages.size()) {
+            try {
+                journal.rewrite(pending.segment, remaining);
+            } catch (Exception e) {
+                // 旧段里多出来的消息在重启恢复时会被当成已存在跳过或再次移入死信
+                System.err.println("聊天日志段重写失败: " + pending.segment + ", " + e.getMessage());
+            }
+            pending.setMessages(remaining);
+        }
+        pending.attempts++;
+        long backoff = retryBackoffMs << Math.min(pending.attempts - 1, 6);
+        pending.nextAttemptAt = System.currentTimeMillis() + Math.min(backoff, 60_000L);
+        if (!failedSegments.contains(pending)) {
+            failedSegments.addLast(pending);
+        }
+        retried.increment();
+    }
+    
+    /**
+     * 整组写入失败时对半拆开分别写入，单条仍失败时移入死信；
+     * 数据库不可用时不再拆分，返回没能写入、需要继续重试的消息
+     */
+    private List<Message> writeIsolating(List<Message> messages) {
+        try {
+            writeBatch(messages, true);
+            return List.of();
+        } catch (Exception e) {
+            if (isUnavailable(e)) {
+                System.err.println("聊天消息重试落库失败，数据库不可用: " + e.getMessage());
+                return messages;
+            }
+            if (messages.size() == 1) {
+                deadLetter(messages.get(0), e);
+                return List.of();
+            }
+            int mid = messages.size() / 2;
+            List<Message> remaining = new ArrayList<>(writeIsolating(messages.subList(0, mid)));
+            remaining.addAll(writeIsolating(messages.subList(mid, messages.size())));
+            return remaining;
+        }
+    }
+    
+    private void deadLetter(Message message, Exception cause) {
+        try {
+            journal.deadLetter(message);
+        } catch (Exception e) {
+            System.err.println("聊天消息写入死信文件失败: id=" + message.getId() + ", " + e.getMessage());
+        }
+        deadLettered.increment();
+        System.err.println("聊天消息多次落库失败，移入死信: id=" + message.getId() + ", senderId="
+                + message.getSenderId() + ", receiverId=" + message.getReceiverId() + ", " + cause.getMessage());
+    }
+    
+    /**
+     * 连接、事务、锁超时等暂时性错误说明数据库不可用，不是某条消息本身的问题
+     */
+    private static boolean isUnavailable(Exception e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof TransactionException;
+    }
+    
+    /**
+     * 向 Redis 报告本节点最小的未落库ID（失败段、缓冲区、已分配ID还没进缓冲区的消息）；仍有积压时每次调用同时刷新心跳
+     */
+    private void reportPending() {
+        reportLock.writeLock().lock();
+        try {
+            long lowest;
+            synchronized (this) {
+                lowest = bufferLowest;
+                Long first = inFlight.isEmpty() ? null : inFlight.first();
+                if (first != null) {
+                    lowest = Math.min(lowest, first);
+                }
+            }
+            for (PendingSegment failed : failedSegments) {
+                lowest = Math.min(lowest, failed.lowest);
+            }
+            if (lowest == Long.MAX_VALUE && !registered) {
+                return;
+            }
+            idGenerator.updatePending(pendingOwner, lowest == Long.MAX_VALUE ? null : lowest);
+            registered = lowest != Long.MAX_VALUE;
+        } catch (Exception e) {
+            System.err.println("未落库位置上报失败: " + e.getMessage());
+        } finally {
+            reportLock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * 落库统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", pendingCount.get());
+        stats.put("failedSegments", failedSegments.size());
+        stats.put("retried", retried.sum());
+        stats.put("deadLettered", deadLettered.sum());
+        return stats;
+    }
+    
+    /**
+     * 写入一组消息并更新会话摘要，返回实际写入的条数；
+     * skipExisting 时先过滤掉已存在的ID，写入和会话未读累加在同一事务内，重试不会重复计数
+     */
+    private int writeBatch(List<Message> messages, boolean skipExisting) {
+        if (messages.isEmpty()) {
+            return 0;
+        }
+        // 升级前写入的日志里没有会话键，落库前统一补上
+        for (Message message : messages) {
+            if (message.getConversationKey() == null) {
+                message.setConversationKey(Message.conversationKey(message.getSenderId(), message.getReceiverId()));
+            }
+        }
+        List<Message> written = transactionTemplate.execute(status -> {
+            List<Message> missing = skipExisting ? filterExisting(messages) : messages;
+            for (int from = 0; from < missing.size(); from += batchSize) {
+                messageMapper.insertBatch(missing.subList(from, Math.min(from + batchSize, missing.size())));
+            }
+            if (!missing.isEmpty()) {
+                conversationService.recordMessages(missing);
+            }
+            return missing;
+        });
+        if (written == null || written.isEmpty()) {
+            return 0;
+        }
+        pushUnreadCounts(written);
+        return written.size();
+    }
+    
+    /**
+     * 事务提交后把本批消息的接收方交给推送线程，落库线程不等待 Redis 和数据库查询
+     */
+    private void pushUnreadCounts(List<Message> messages) {
+        for (Message message : messages) {
+            if (!message.getReceiverId().equals(message.getSenderId())) {
+                unreadPushQueue.add(message.getReceiverId());
+            }
+        }
+        scheduleUnreadPush();
+    }
+    
+    private void scheduleUnreadPush() {
+        if (unreadPushQueue.isEmpty() || !unreadPushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            unreadPusher.execute(this::drainUnreadPushes);
+        } catch (RejectedExecutionException e) {
+            // 停机中，不再推送
+            unreadPushScheduled.set(false);
+        }
+    }
+    
+    /**
+     * 成批推送私信未读总数：一次 MGET 过滤出在线的人，一次分组查询统计他们的未读数；
+     * 推送失败不影响落库结果，客户端下次拉取时会拿到正确的未读数
+     */
+    private void drainUnreadPushes() {
+        try {
+            while (!unreadPushQueue.isEmpty()) {
+                List<Long> receivers = new ArrayList<>(batchSize);
+                Iterator<Long> it = unreadPushQueue.iterator();
+                while (it.hasNext() && receivers.size() < batchSize) {
+                    receivers.add(it.next());
+                    it.remove();
+                }
+                try {
+                    Set<Long> online = messageRouter.onlineUsers(receivers);
+                    if (online.isEmpty()) {
+                        continue;
+                    }
+                    Map<Long, Long> totals = conversationService.getTotalUnread(online);
+                    totals.forEach((receiverId, total) -> messageRouter.sendToUser(receiverId,
+                            new ChatFrame.UnreadCount(ChatFrame.UnreadCount.MESSAGE, total)));
+                } catch (Exception e) {
+                    System.err.println("推送私信未读数失败: " + receivers.size() + " 人, " + e.getMessage());
+                }
+            }
+        } finally {
+            unreadPushScheduled.set(false);
+            // 清空标记之前新加入的接收方由这里补一次调度
+            scheduleUnreadPush();
+        }
+    }
+    
+    private List<Message> filterExisting(List<Message> messages) {
+        Set<Long> existing = new HashSet<>();
+        for (int from = 0; from < messages.size(); from += batchSize) {
+            List<Long> ids = messages.subList(from, Math.min(from + batchSize, messages.size())).stream()
+                    .map(Message::getId)
+                    .collect(Collectors.toList());
+            existing.addAll(messageMapper.selectExistingIds(ids));
+        }
+        if (existing.isEmpty()) {
+            return messages;
+        }
+        System.out.println("聊天消息已存在，跳过 " + existing.size() + " 条");
+        return messages.stream()
+                .filter(m -> !existing.contains(m.getId()))
+                .collect(Collectors.toList());
+    }
+    
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        unreadPusher.shutdownNow();
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        // 停机前最后落库一次，失败的留在日志中下次启动恢复
+        flush();
+    }
+}
@@ -0,0 +1,128 @@
+package com.xingyang.chat;
+
+import com.xingyang.mapper.MessageMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 聊天消息ID生成器（Redis INCR），消息在写入 MySQL 之前就能拿到全局递增的ID
+ * 分配出去但还没落库的ID按持有者登记在 chat:message:pending（持有者 -> 最小未落库ID），
+ * 由此得出全局已落库水位：小于等于水位的ID要么已经写入 tb_message，要么永远不会再出现
+ */
+@Component
+public class MessageIdGenerator {
+    
+    private static final String ID_KEY = "chat:message:id";
+    
+    private static final String PENDING_KEY = "chat:message:pending";
+    private static final String HEARTBEAT_KEY = "chat:message:pending:heartbeat";
+    
+    /**
+     * 分配ID并登记为未落库；持有者已有更小的未落库ID时保留原值
+     */
+    private static final DefaultRedisScript<Long> NEXT_ID_SCRIPT = new DefaultRedisScript<>(
+            "local id = redis.call('INCR', KEYS[1])\n" +
+            "redis.call('ZADD', KEYS[2], 'NX', id, ARGV[1])\n" +
+            "redis.call('ZADD', KEYS[3], ARGV[2], ARGV[1])\n" +
+            "return id",
+            Long.class);
+    
+    /**
+     * 更新持有者的最小未落库ID，ARGV[2] 为空表示全部落库
+     */
+    private static final DefaultRedisScript<Long> UPDATE_PENDING_SCRIPT = new DefaultRedisScript<>(
+            "if ARGV[2] == '' then\n" +
+            "  redis.call('ZREM', KEYS[1], ARGV[1])\n" +
+            "  redis.call('ZREM', KEYS[2], ARGV[1])\n" +
+            "else\n" +
+            "  redis.call('ZADD', KEYS[1], ARGV[2], ARGV[1])\n" +
+            "  redis.call('ZADD', KEYS[2], ARGV[3], ARGV[1])\n" +
+            "end\n" +
+            "return 1",
+            Long.class);
+    
+    /**
+     * 已落库水位：最小未落库ID - 1，没有未落库ID时为当前计数器；
+     * 心跳超时的持有者（节点已宕机）不再参与计算，它的消息在重启时从本地日志补写
+     */
+    private static final DefaultRedisScript<Long> PERSISTED_WATERMARK_SCRIPT = new DefaultRedisScript<>(
+            "local stale = redis.call('ZRANGEBYSCORE', KEYS[3], '-inf', ARGV[1])\n" +
+            "for _, owner in ipairs(stale) do\n" +
+            "  redis.call('ZREM', KEYS[2], owner)\n" +
+            "  redis.call('ZREM', KEYS[3], owner)\n" +
+            "end\n" +
+            "local lowest = redis.call('ZRANGE', KEYS[2], 0, 0, 'WITHSCORES')\n" +
+            "if #lowest > 0 then\n" +
+            "  return tonumber(lowest[2]) - 1\n" +
+            "end\n" +
+            "return tonumber(redis.call('GET', KEYS[1]) or '0')",
+            Long.class);
+    
+    private static final DefaultRedisScript<Long> ENSURE_AT_LEAST_SCRIPT = new DefaultRedisScript<>(
+            "local cur = tonumber(redis.call('GET', KEYS[1]) or '0')\n" +
+            "if tonumber(ARGV[1]) > cur then\n" +
+            "  redis.call('SET', KEYS[1], ARGV[1])\n" +
+            "  return tonumber(ARGV[1])\n" +
+            "end\n" +
+            "return cur",
+            Long.class);
+    
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MessageMapper messageMapper;
+    private final long pendingTimeoutMs;
+    
+    public MessageIdGenerator(StringRedisTemplate stringRedisTemplate, MessageMapper messageMapper,
+                              @Value("${chat.persist.pending-timeout-ms:60000}") long pendingTimeoutMs) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.messageMapper = messageMapper;
+        this.pendingTimeoutMs = pendingTimeoutMs;
+    }
+    
+    /**
+     * 启动时保证计数器不小于 tb_message 现有的最大ID（Redis 数据丢失或首次部署时）
+     */
+    @PostConstruct
+    public void init() {
+        ensureAtLeast(messageMapper.selectMaxId());
+    }
+    
+    /**
+     * 分配一个ID，并把它记在 owner 名下直到 owner 报告已落库
+     */
+    public long nextId(String owner) {
+        Long id = stringRedisTemplate.execute(NEXT_ID_SCRIPT, List.of(ID_KEY, PENDING_KEY, HEARTBEAT_KEY),
+                owner, String.valueOf(System.currentTimeMillis()));
+        if (id == null) {
+            throw new IllegalStateException("消息ID生成失败");
+        }
+        return id;
+    }
+    
+    /**
+     * owner 报告自己最小的未落库ID，null 表示已全部落库；有未落库消息时需定期调用作为心跳
+     */
+    public void updatePending(String owner, Long lowestPendingId) {
+        stringRedisTemplate.execute(UPDATE_PENDING_SCRIPT, List.of(PENDING_KEY, HEARTBEAT_KEY), owner,
+                lowestPendingId == null ? "" : String.valueOf(lowestPendingId),
+                String.valueOf(System.currentTimeMillis()));
+    }
+    
+    /**
+     * 全局已落库水位，离线补发的 ACK 水位不能超过它
+     */
+    public long persistedWatermark() {
+        Long watermark = stringRedisTemplate.execute(PERSISTED_WATERMARK_SCRIPT,
+                List.of(ID_KEY, PENDING_KEY, HEARTBEAT_KEY),
+                String.valueOf(System.currentTimeMillis() - pendingTimeoutMs));
+        return watermark == null ? 0 : watermark;
+    }
+    
+    public void ensureAtLeast(long id) {
+        stringRedisTemplate.execute(ENSURE_AT_LEAST_SCRIPT, List.of(ID_KEY), String.valueOf(id));
+    }
+}
@@ -0,0 +1,34 @@
+package com.xingyang.common;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 游标分页结果，nextCursor 为 null 表示没有更多数据
+ */
+@Data
+public class CursorPage<T> {
+    private List<T> list;
+    private String nextCursor;
+    private Boolean hasMore;
+    
+    /**
+     * 根据多查询的一条记录判断是否还有下一页
+     *
+     * @param rows     按顺序查询出的 size + 1 条记录
+     * @param size     本页大小
+     * @param cursorOf 由本页最后一条记录生成游标
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int size, Function<T, String> cursorOf) {
+        CursorPage<T> page = new CursorPage<>();
+        boolean hasMore = rows.size() > size;
+        List<T> list = hasMore ? new ArrayList<>(rows.subList(0, size)) : rows;
+        page.setList(list);
+        page.setHasMore(hasMore);
+        page.setNextCursor(hasMore && !list.isEmpty() ? cursorOf.apply(list.get(list.size() - 1)) : null);
+        return page;
+    }
+}
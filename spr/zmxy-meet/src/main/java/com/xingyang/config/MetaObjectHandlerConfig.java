@@ -11,12 +11,19 @@ public class MetaObjectHandlerConfig implements MetaObjectHandler {
     
     @Override
     public void insertFill(MetaObject metaObject) {
-        this.strictInsertFill(metaObject, "createTime", LocalDateTime.class, LocalDateTime.now());
-        this.strictInsertFill(metaObject, "updateTime", LocalDateTime.class, LocalDateTime.now());
+        this.strictInsertFill(metaObject, "createTime", LocalDateTime.class, now());
+        this.strictInsertFill(metaObject, "updateTime", LocalDateTime.class, now());
     }
     
     @Override
     public void updateFill(MetaObject metaObject) {
-        this.strictUpdateFill(metaObject, "updateTime", LocalDateTime.class, LocalDateTime.now());
+        this.strictUpdateFill(metaObject, "updateTime", LocalDateTime.class, now());
+    }
+    
+    /**
+     * 精确到秒，和 datetime 列保存的值一致（游标分页依赖 create_time 比较）
+     */
+    private LocalDateTime now() {
+        return LocalDateTime.now().withNano(0);
     }
 }
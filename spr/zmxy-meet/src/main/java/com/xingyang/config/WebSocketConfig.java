@@ -18,6 +18,7 @@ public class WebSocketConfig implements WebSocketConfigurer {
     
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // 子协议由 ChatWebSocketHandler#getSubProtocols 声明，默认握手处理器据此协商
         registry.addHandler(chatWebSocketHandler, "/ws/chat")
                 .setAllowedOrigins("*");
     }
@@ -2,19 +2,27 @@ package com.xingyang.controller;
 
 import com.xingyang.common.Result;
 import com.xingyang.entity.Circle;
+import com.xingyang.entity.CircleMessage;
+import com.xingyang.service.CircleChatService;
 import com.xingyang.service.CircleService;
+import com.xingyang.util.CursorUtil;
+import com.xingyang.util.MessageContentUtil;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/circles")
 public class CircleController {
     
     private final CircleService circleService;
+    private final CircleChatService circleChatService;
     
-    public CircleController(CircleService circleService) {
+    public CircleController(CircleService circleService, CircleChatService circleChatService) {
         this.circleService = circleService;
+        this.circleChatService = circleChatService;
     }
     
     /**
@@ -37,4 +45,92 @@ public class CircleController {
         }
         return Result.success(circle);
     }
+    
+    /**
+     * 加入圈子
+     */
+    @PostMapping("/{id}/join")
+    public Result<Void> join(@PathVariable Long id, Authentication authentication) {
+        Long userId = (Long) authentication.getPrincipal();
+        if (circleService.getById(id) == null) {
+            return Result.error("圈子不存在");
+        }
+        if (!circleService.join(id, userId)) {
+            return Result.error("已经是圈子成员");
+        }
+        return Result.success(null);
+    }
+    
+    /**
+     * 退出圈子
+     */
+    @PostMapping("/{id}/leave")
+    public Result<Void> leave(@PathVariable Long id, Authentication authentication) {
+        Long userId = (Long) authentication.getPrincipal();
+        if (!circleService.leave(id, userId)) {
+            return Result.error("不是圈子成员");
+        }
+        return Result.success(null);
+    }
+    
+    /**
+     * 获取圈子群聊消息，beforeId 为上一页最早一条消息的ID
+     */
+    @GetMapping("/{id}/messages")
+    public Result<List<CircleMessage>> getMessages(
+            @PathVariable Long id,
+            @RequestParam(name = "beforeId", required = false) Long beforeId,
+            @RequestParam(name = "size", defaultValue = "50") int size,
+            Authentication authentication) {
+        Long userId = (Long) authentication.getPrincipal();
+        if (!circleChatService.isMember(id, userId)) {
+            return Result.error(403, "不是圈子成员");
+        }
+        return Result.success(circleChatService.getHistory(id, beforeId, CursorUtil.clampSize(size)));
+    }
+    
+    /**
+     * 发送圈子群聊消息
+     */
+    @PostMapping("/{id}/messages")
+    public Result<CircleMessage> sendMessage(
+            @PathVariable Long id,
+            @RequestBody Map<String, String> request,
+            Authentication authentication) {
+        Long userId = (Long) authentication.getPrincipal();
+        String content = request.get("content");
+        String contentError = MessageContentUtil.validate(content);
+        if (contentError != null) {
+            return Result.error(contentError);
+        }
+        CircleMessage message = circleChatService.sendMessage(id, userId, content);
+        if (message == null) {
+            return Result.error(403, "不是圈子成员");
+        }
+        return Result.success(message);
+    }
+    
+    /**
+     * 更新圈子群聊已读位置
+     */
+    @PostMapping("/{id}/read")
+    public Result<Void> markRead(
+            @PathVariable Long id,
+            @RequestParam(name = "messageId") Long messageId,
+            Authentication authentication) {
+        Long userId = (Long) authentication.getPrincipal();
+        if (!circleChatService.markRead(id, userId, messageId)) {
+            return Result.error(403, "不是圈子成员");
+        }
+        return Result.success(null);
+    }
+    
+    /**
+     * 获取我所在各圈子的未读数
+     */
+    @GetMapping("/unread")
+    public Result<Map<Long, Integer>> getUnreadCounts(Authentication authentication) {
+        Long userId = (Long) authentication.getPrincipal();
+        return Result.success(circleChatService.getUnreadCounts(userId));
+    }
 }
@@ -34,12 +34,16 @@ public class CommentController {
         try {
             List<Comment> comments = commentService.getPostComments(postId);
 
+            // 一次性获取所有评论者信息
+            Map<Long, User> userMap = userService.getUserMap(
+                    comments.stream().map(Comment::getUserId).collect(Collectors.toSet()));
+
             // 构建评论树结构
             Map<Long, Map<String, Object>> commentMap = new HashMap<>();
             List<Map<String, Object>> topComments = comments.stream()
                     .filter(c -> c.getParentCommentId() == null)
                     .map(c -> {
-                        Map<String, Object> map = buildCommentMap(c);
+                        Map<String, Object> map = buildCommentMap(c, userMap);
                         commentMap.put(c.getId(), map);
                         return map;
                     })
@@ -53,7 +57,7 @@ public class CommentController {
                         if (parentMap != null) {
                             @SuppressWarnings("unchecked")
                             List<Map<String, Object>> replies = (List<Map<String, Object>>) parentMap.get("replies");
-                            replies.add(buildCommentMap(reply));
+                            replies.add(buildCommentMap(reply, userMap));
                             parentMap.put("replyCount", replies.size());
                         }
                     });
@@ -88,7 +92,7 @@ public class CommentController {
             }
 
             Comment comment = commentService.addComment(postId, user.getId(), content);
-            Map<String, Object> result = buildCommentMap(comment);
+            Map<String, Object> result = buildCommentMap(comment, Map.of(user.getId(), user));
             result.put("username", user.getUsername());
 
             return Result.success(result);
@@ -121,7 +125,7 @@ public class CommentController {
             }
 
             Comment comment = commentService.replyComment(commentId, user.getId(), content);
-            Map<String, Object> result = buildCommentMap(comment);
+            Map<String, Object> result = buildCommentMap(comment, Map.of(user.getId(), user));
             result.put("username", user.getUsername());
 
             return Result.success(result);
@@ -159,9 +163,9 @@ public class CommentController {
     }
 
     /**
-     * 构建评论Map
+     * 构建评论Map，用户信息从预先批量查询的 userMap 中获取
      */
-    private Map<String, Object> buildCommentMap(Comment comment) {
+    private Map<String, Object> buildCommentMap(Comment comment, Map<Long, User> userMap) {
         Map<String, Object> map = new HashMap<>();
         map.put("id", comment.getId());
         map.put("postId", comment.getPostId());
@@ -173,13 +177,9 @@ public class CommentController {
         map.put("replyCount", 0);
 
         // 获取用户名
-        try {
-            User user = userService.getById(comment.getUserId());
-            if (user != null) {
-                map.put("username", user.getUsername());
-            }
-        } catch (Exception e) {
-            map.put("username", "未知用户");
+        User user = userMap.get(comment.getUserId());
+        if (user != null) {
+            map.put("username", user.getUsername());
         }
 
         return map;
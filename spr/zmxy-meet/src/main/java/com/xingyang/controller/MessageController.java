@@ -1,14 +1,20 @@
 package com.xingyang.controller;
 
+import com.xingyang.common.CursorPage;
 import com.xingyang.common.Result;
 
 import com.xingyang.dto.ConversationResponse;
 import com.xingyang.dto.MessageResponse;
 import com.xingyang.dto.SendMessageRequest;
+import com.xingyang.entity.Conversation;
 import com.xingyang.entity.Message;
 import com.xingyang.entity.User;
+import com.xingyang.service.ConversationService;
 import com.xingyang.service.MessageService;
 import com.xingyang.service.UserService;
+import com.xingyang.util.CursorUtil;
+import com.xingyang.websocket.ChatMessageRouter;
+import com.xingyang.websocket.protocol.ChatFrame;
 import lombok.Data;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
@@ -22,60 +28,46 @@ public class MessageController {
     
     private final MessageService messageService;
     private final UserService userService;
+    private final ConversationService conversationService;
+    private final ChatMessageRouter messageRouter;
     
-    public MessageController(MessageService messageService, UserService userService) {
+    public MessageController(MessageService messageService, UserService userService,
+                             ConversationService conversationService, ChatMessageRouter messageRouter) {
         this.messageService = messageService;
         this.userService = userService;
+        this.conversationService = conversationService;
+        this.messageRouter = messageRouter;
     }
     
     /**
      * 获取会话列表
      */
     @GetMapping("/conversations")
-    public Result<List<ConversationResponse>> getConversations(Authentication authentication) {
+    public Result<List<ConversationResponse>> getConversations(
+            @RequestParam(name = "size", defaultValue = "100") int size,
+            Authentication authentication) {
         Long userId = (Long) authentication.getPrincipal();
         
-        // 获取与当前用户相关的所有消息
-        List<Message> messages = messageService.lambdaQuery()
-                .and(wrapper -> wrapper
-                        .eq(Message::getSenderId, userId)
-                        .or()
-                        .eq(Message::getReceiverId, userId))
-                .orderByDesc(Message::getCreateTime)
-                .list();
-        
-        // 按对话人分组，取每个对话的最后一条消息
-        Map<Long, Message> conversationMap = new LinkedHashMap<>();
-        for (Message message : messages) {
-            Long otherId = message.getSenderId().equals(userId) 
-                    ? message.getReceiverId() 
-                    : message.getSenderId();
-            
-            if (!conversationMap.containsKey(otherId)) {
-                conversationMap.put(otherId, message);
-            }
-        }
+        // 直接读取会话摘要表，不再扫描全部消息
+        List<Conversation> conversationList = conversationService.getUserConversations(userId, CursorUtil.clampSize(size));
+        
+        // 批量获取对话人信息
+        Map<Long, User> userMap = userService.getUserMap(
+                conversationList.stream().map(Conversation::getPeerId).collect(Collectors.toList()));
         
         // 构建会话列表
         List<ConversationResponse> conversations = new ArrayList<>();
-        for (Map.Entry<Long, Message> entry : conversationMap.entrySet()) {
-            Long otherId = entry.getKey();
-            Message lastMessage = entry.getValue();
-            
-            User otherUser = userService.getById(otherId);
+        for (Conversation conversation : conversationList) {
+            User otherUser = userMap.get(conversation.getPeerId());
             if (otherUser != null) {
                 ConversationResponse conv = new ConversationResponse();
-                conv.setUserId(otherId);
+                conv.setUserId(conversation.getPeerId());
                 conv.setUsername(otherUser.getUsername());
                 conv.setNickname(otherUser.getNickname());
                 conv.setAvatarUrl(otherUser.getAvatarUrl());
-                conv.setLastMessage(lastMessage.getContent());
-                conv.setLastMessageTime(lastMessage.getCreateTime().toString());
-                conv.setUnreadCount(messageService.lambdaQuery()
-                        .eq(Message::getSenderId, otherId)
-                        .eq(Message::getReceiverId, userId)
-                        .eq(Message::getIsRead, false)
-                        .count().intValue());
+                conv.setLastMessage(conversation.getLastMessage());
+                conv.setLastMessageTime(conversation.getLastMessageTime().toString());
+                conv.setUnreadCount(conversation.getUnreadCount());
                 
                 conversations.add(conv);
             }
@@ -99,43 +91,49 @@ public class MessageController {
         List<Message> messages = messageService.getChatHistory(userId, otherUserId, page, size);
         
         // 获取发送者和接收者信息
-        User currentUser = userService.getById(userId);
-        User otherUser = userService.getById(otherUserId);
+        Map<Long, User> userMap = userService.getUserMap(List.of(userId, otherUserId));
+        User currentUser = userMap.get(userId);
+        User otherUser = userMap.get(otherUserId);
         
-        List<MessageResponse> responses = messages.stream().map(msg -> {
-            MessageResponse response = new MessageResponse();
-            response.setId(msg.getId());
-            response.setSenderId(msg.getSenderId());
-            response.setReceiverId(msg.getReceiverId());
-            response.setContent(msg.getContent());
-            response.setType(msg.getType());
-            response.setMediaUrls(msg.getMediaUrls());
-            response.setIsRead(msg.getIsRead());
-            response.setCreateTime(msg.getCreateTime().toString());
-            
-            // 设置发送者信息
-            if (msg.getSenderId().equals(userId)) {
-                response.setSenderName(currentUser.getUsername());
-                response.setSenderAvatar(currentUser.getAvatarUrl());
-            } else {
-                response.setSenderName(otherUser.getUsername());
-                response.setSenderAvatar(otherUser.getAvatarUrl());
-            }
-            
-            return response;
-        }).collect(Collectors.toList());
+        List<MessageResponse> responses = toMessageResponses(messages, userId, otherUserId, currentUser, otherUser);
         
         // 标记消息为已读
-        messageService.lambdaUpdate()
-                .eq(Message::getSenderId, otherUserId)
-                .eq(Message::getReceiverId, userId)
-                .eq(Message::getIsRead, false)
-                .set(Message::getIsRead, true)
-                .update();
+        markReadAndNotify(userId, otherUserId);
         
         return Result.success(responses);
     }
     
+    /**
+     * 游标方式获取聊天历史，从最新消息往前翻页
+     */
+    @GetMapping("/history/{otherUserId}/cursor")
+    public Result<CursorPage<MessageResponse>> getChatHistoryByCursor(
+            @PathVariable Long otherUserId,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", defaultValue = "50") int size,
+            Authentication authentication) {
+        
+        Long userId = (Long) authentication.getPrincipal();
+        
+        CursorPage<Message> page = messageService.getChatHistoryByCursor(userId, otherUserId, cursor, size);
+        
+        Map<Long, User> userMap = userService.getUserMap(List.of(userId, otherUserId));
+        User currentUser = userMap.get(userId);
+        User otherUser = userMap.get(otherUserId);
+        
+        CursorPage<MessageResponse> result = new CursorPage<>();
+        result.setList(toMessageResponses(page.getList(), userId, otherUserId, currentUser, otherUser));
+        result.setNextCursor(page.getNextCursor());
+        result.setHasMore(page.getHasMore());
+        
+        // 打开会话（第一页）时标记消息为已读
+        if (cursor == null || cursor.isBlank()) {
+            markReadAndNotify(userId, otherUserId);
+        }
+        
+        return Result.success(result);
+    }
+    
     /**
      * 发送消息
      */
@@ -154,7 +152,7 @@ public class MessageController {
         message.setMediaUrls(request.getMediaUrls());
         message.setIsRead(false);
         
-        messageService.save(message);
+        messageService.sendMessage(message);
         
         // 返回消息详情
         User sender = userService.getById(senderId);
@@ -180,13 +178,51 @@ public class MessageController {
     public Result<Integer> getUnreadCount(Authentication authentication) {
         Long userId = (Long) authentication.getPrincipal();
         
-        int count = messageService.lambdaQuery()
-                .eq(Message::getReceiverId, userId)
-                .eq(Message::getIsRead, false)
-                .count().intValue();
+        // 各会话未读数之和
+        int count = (int) conversationService.getTotalUnread(userId);
         
         return Result.success(count);
     }
+    
+    /**
+     * 更新已读位置，并通过 WebSocket 通知对方
+     */
+    private void markReadAndNotify(Long userId, Long otherUserId) {
+        Long readUpTo = messageService.markConversationRead(userId, otherUserId, null);
+        if (readUpTo != null) {
+            messageRouter.sendToUser(otherUserId, new ChatFrame.ReadNotice(userId, readUpTo));
+        }
+    }
+    
+    private List<MessageResponse> toMessageResponses(List<Message> messages, Long userId, Long otherUserId,
+                                                     User currentUser, User otherUser) {
+        // 已读状态由双方会话的已读位置推导：我发的看对方的位置，对方发的看我的位置
+        Conversation mine = conversationService.getConversation(userId, otherUserId);
+        Conversation theirs = conversationService.getConversation(otherUserId, userId);
+        long myReadId = mine != null ? mine.getLastReadMessageId() : 0L;
+        long theirReadId = theirs != null ? theirs.getLastReadMessageId() : 0L;
+        
+        return messages.stream().map(msg -> {
+            MessageResponse response = new MessageResponse();
+            response.setId(msg.getId());
+            response.setSenderId(msg.getSenderId());
+            response.setReceiverId(msg.getReceiverId());
+            response.setContent(msg.getContent());
+            response.setType(msg.getType());
+            response.setMediaUrls(msg.getMediaUrls());
+            response.setIsRead(msg.getId() <= (msg.getSenderId().equals(userId) ? theirReadId : myReadId));
+            response.setCreateTime(msg.getCreateTime().toString());
+            
+            // 设置发送者信息
+            if (msg.getSenderId().equals(userId)) {
+                response.setSenderName(currentUser.getUsername());
+                response.setSenderAvatar(currentUser.getAvatarUrl());
+            } else {
+                response.setSenderName(otherUser.getUsername());
+                response.setSenderAvatar(otherUser.getAvatarUrl());
+            }
+            
+            return response;
+        }).collect(Collectors.toList());
+    }
 }
-
-
@@ -1,5 +1,6 @@
 package com.xingyang.controller;
 
+import com.xingyang.common.CursorPage;
 import com.xingyang.common.Result;
 import com.xingyang.entity.Notification;
 import com.xingyang.service.NotificationService;
@@ -22,10 +23,13 @@ public class NotificationController {
      * 获取通知列表
      */
     @GetMapping
-    public Result<List<Notification>> getNotifications(Authentication authentication) {
+    public Result<List<Notification>> getNotifications(
+            @RequestParam(name = "size", defaultValue = "50") int size,
+            Authentication authentication) {
         try {
             Long userId = Long.parseLong(authentication.getName());
-            List<Notification> notifications = notificationService.getUserNotifications(userId);
+            // 只返回最新一页，更早的通知走 /cursor 翻页
+            List<Notification> notifications = notificationService.getUserNotifications(userId, size);
             return Result.success(notifications);
         } catch (Exception e) {
             e.printStackTrace();
@@ -33,6 +37,23 @@ public class NotificationController {
         }
     }
     
+    /**
+     * 游标分页获取通知列表
+     */
+    @GetMapping("/cursor")
+    public Result<CursorPage<Notification>> getNotificationsByCursor(
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", defaultValue = "20") int size,
+            Authentication authentication) {
+        try {
+            Long userId = Long.parseLong(authentication.getName());
+            return Result.success(notificationService.getUserNotificationsByCursor(userId, cursor, size));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Result.error("获取通知失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 获取未读数量
      */
@@ -56,9 +77,10 @@ public class NotificationController {
      * 标记为已读
      */
     @PutMapping("/{id}/read")
-    public Result<Void> markAsRead(@PathVariable Long id) {
+    public Result<Void> markAsRead(@PathVariable Long id, Authentication authentication) {
         try {
-            notificationService.markAsRead(id);
+            Long userId = Long.parseLong(authentication.getName());
+            notificationService.markAsRead(userId, id);
             return Result.success(null);
         } catch (Exception e) {
             e.printStackTrace();
@@ -1,9 +1,11 @@
 package com.xingyang.controller;
 
+import com.xingyang.common.CursorPage;
 import com.xingyang.common.Result;
 import com.xingyang.dto.CreatePostRequest;
 import com.xingyang.entity.Post;
 import com.xingyang.entity.User;
+import com.xingyang.service.FeedTimelineService;
 import com.xingyang.service.PostService;
 import com.xingyang.service.UserService;
 import org.springframework.security.core.Authentication;
@@ -17,10 +19,13 @@ public class PostController {
     
     private final PostService postService;
     private final UserService userService;
+    private final FeedTimelineService feedTimelineService;
     
-    public PostController(PostService postService, UserService userService) {
+    public PostController(PostService postService, UserService userService,
+                          FeedTimelineService feedTimelineService) {
         this.postService = postService;
         this.userService = userService;
+        this.feedTimelineService = feedTimelineService;
     }
     
     /**
@@ -56,6 +61,27 @@ public class PostController {
         }
     }
     
+    /**
+     * 游标方式获取动态流，不做 COUNT 查询，适合无限滚动
+     */
+    @GetMapping("/feed/cursor")
+    public Result<CursorPage<Post>> getFeedPostsByCursor(
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", defaultValue = "20") int size,
+            Authentication authentication) {
+        if (authentication == null || authentication.getPrincipal() == null) {
+            return Result.success(CursorPage.<Post>of(List.of(), size, p -> null));
+        }
+        
+        try {
+            Long userId = (Long) authentication.getPrincipal();
+            return Result.success(postService.getFeedPostsByCursor(userId, cursor, size));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Result.error("获取动态列表失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 创建动态
      */
@@ -79,7 +105,10 @@ public class PostController {
         post.setCommentsCount(0);
         post.setSharesCount(0);
         
-        postService.save(post);
+        postService.publishPost(post);
+        
+        // 推送到粉丝时间线
+        feedTimelineService.onPostCreated(post);
         
         return Result.success(post);
     }
@@ -140,7 +169,9 @@ public class PostController {
             return Result.error("无权删除此动态");
         }
         
-        postService.removeById(id);
+        if (postService.deletePost(post)) {
+            feedTimelineService.onPostDeleted(post);
+        }
         return Result.success(null);
     }
     
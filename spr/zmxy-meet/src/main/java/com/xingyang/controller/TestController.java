@@ -1,5 +1,9 @@
 package com.xingyang.controller;
 
+import com.xingyang.cache.UserProfileCache;
+import com.xingyang.chat.ChatMessagePersister;
+import com.xingyang.event.DomainEventBus;
+import com.xingyang.websocket.OutboundSessionManager;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -12,6 +16,19 @@ import java.util.Map;
 @RequestMapping("/api/test")
 public class TestController {
     
+    private final UserProfileCache userProfileCache;
+    private final OutboundSessionManager outboundSessionManager;
+    private final DomainEventBus domainEventBus;
+    private final ChatMessagePersister chatMessagePersister;
+    
+    public TestController(UserProfileCache userProfileCache, OutboundSessionManager outboundSessionManager,
+                          DomainEventBus domainEventBus, ChatMessagePersister chatMessagePersister) {
+        this.userProfileCache = userProfileCache;
+        this.outboundSessionManager = outboundSessionManager;
+        this.domainEventBus = domainEventBus;
+        this.chatMessagePersister = chatMessagePersister;
+    }
+    
     @GetMapping("/hello")
     public String hello() {
         System.out.println("===== GET /api/test/hello 被调用 =====");
@@ -28,4 +45,36 @@ public class TestController {
             "receivedData", data
         );
     }
+    
+    /**
+     * 用户资料缓存命中统计
+     */
+    @GetMapping("/cache-stats")
+    public Map<String, Object> cacheStats() {
+        return userProfileCache.stats();
+    }
+    
+    /**
+     * WebSocket 发送队列统计
+     */
+    @GetMapping("/ws-stats")
+    public Map<String, Object> wsStats() {
+        return outboundSessionManager.stats();
+    }
+    
+    /**
+     * 领域事件处理统计（积压、重试、延迟）
+     */
+    @GetMapping("/event-stats")
+    public Map<String, Object> eventStats() {
+        return domainEventBus.stats();
+    }
+    
+    /**
+     * 聊天消息落库统计（积压、重试、死信）
+     */
+    @GetMapping("/persist-stats")
+    public Map<String, Object> persistStats() {
+        return chatMessagePersister.stats();
+    }
 }
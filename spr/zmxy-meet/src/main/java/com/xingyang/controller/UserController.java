@@ -1,13 +1,17 @@
 package com.xingyang.controller;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.xingyang.common.CursorPage;
 import com.xingyang.common.Result;
 import com.xingyang.dto.UserDTO;
 import com.xingyang.entity.Post;
 import com.xingyang.entity.User;
+import com.xingyang.entity.UserStats;
 import com.xingyang.service.PostService;
+import com.xingyang.service.RecommendationService;
 import com.xingyang.service.RelationService;
 import com.xingyang.service.UserService;
+import com.xingyang.service.UserStatsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -24,11 +28,16 @@ public class UserController {
     private final UserService userService;
     private final PostService postService;
     private final RelationService relationService;
+    private final UserStatsService userStatsService;
+    private final RecommendationService recommendationService;
     
-    public UserController(UserService userService, PostService postService, RelationService relationService) {
+    public UserController(UserService userService, PostService postService, RelationService relationService,
+                          UserStatsService userStatsService, RecommendationService recommendationService) {
         this.userService = userService;
         this.postService = postService;
         this.relationService = relationService;
+        this.userStatsService = userStatsService;
+        this.recommendationService = recommendationService;
     }
     
     /**
@@ -56,19 +65,16 @@ public class UserController {
     @GetMapping("/{id}/stats")
     public Result<Map<String, Object>> getUserStats(@PathVariable Long id) {
         try {
-            // 获取用户发布的帖子数
-            QueryWrapper<Post> postQuery = new QueryWrapper<>();
-            postQuery.eq("user_id", id).eq("deleted", 0);
-            long postsCount = postService.count(postQuery);
-            
-            // 获取粉丝数和关注数
-            long followersCount = relationService.getFollowersCount(id);
-            long followingCount = relationService.getFollowingCount(id);
+            // 帖子数、粉丝数、关注数由计数表维护，命中缓存时只读一个 Redis 哈希
+            UserStats userStats = userStatsService.getStats(id);
+            if (userStats == null) {
+                return Result.error("用户不存在");
+            }
             
             Map<String, Object> stats = new HashMap<>();
-            stats.put("postsCount", postsCount);
-            stats.put("followersCount", followersCount);
-            stats.put("followingCount", followingCount);
+            stats.put("postsCount", (long) userStats.getPostsCount());
+            stats.put("followersCount", (long) userStats.getFollowersCount());
+            stats.put("followingCount", (long) userStats.getFollowingCount());
             
             return Result.success(stats);
         } catch (Exception e) {
@@ -189,6 +195,23 @@ public class UserController {
         }
     }
     
+    /**
+     * 游标方式获取关注列表，按关注时间倒序，带当前用户是否已关注的标记
+     */
+    @GetMapping("/{id}/following/cursor")
+    public Result<CursorPage<UserDTO>> getFollowingPage(
+            @PathVariable Long id,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", defaultValue = "20") int size,
+            Authentication authentication) {
+        try {
+            return Result.success(relationService.getFollowingPage(id, viewerId(authentication), cursor, size));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Result.error("获取关注列表失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 获取粉丝列表
      */
@@ -203,13 +226,56 @@ public class UserController {
         }
     }
     
+    /**
+     * 游标方式获取粉丝列表，按关注时间倒序，带当前用户是否已关注（回关）的标记
+     */
+    @GetMapping("/{id}/followers/cursor")
+    public Result<CursorPage<UserDTO>> getFollowersPage(
+            @PathVariable Long id,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", defaultValue = "20") int size,
+            Authentication authentication) {
+        try {
+            return Result.success(relationService.getFollowersPage(id, viewerId(authentication), cursor, size));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Result.error("获取粉丝列表失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 可能认识的人：关注的人还关注了谁，按共同关注、共同圈子、同校区排序；只能查看自己的推荐
+     */
+    @GetMapping("/{id}/recommendations")
+    public Result<List<UserDTO>> getRecommendations(
+            @PathVariable Long id,
+            @RequestParam(name = "size", defaultValue = "20") int size,
+            Authentication authentication) {
+        try {
+            Long userId = viewerId(authentication);
+            if (userId == null) {
+                return Result.error("用户未登录");
+            }
+            if (!userId.equals(id)) {
+                return Result.error(403, "只能查看自己的推荐");
+            }
+            return Result.success(recommendationService.getRecommendations(userId, size));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Result.error("获取推荐用户失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 获取用户点赞的帖子列表
      */
     @GetMapping("/{id}/liked-posts")
-    public Result<List<Post>> getUserLikedPosts(@PathVariable Long id) {
+    public Result<List<Post>> getUserLikedPosts(
+            @PathVariable Long id,
+            @RequestParam(name = "page", defaultValue = "1") int page,
+            @RequestParam(name = "size", defaultValue = "20") int size) {
         try {
-            List<Post> likedPosts = postService.getUserLikedPosts(id);
+            List<Post> likedPosts = postService.getUserLikedPosts(id, page, size);
             return Result.success(likedPosts);
         } catch (Exception e) {
             e.printStackTrace();
@@ -232,4 +298,14 @@ public class UserController {
             return Result.error("获取浏览历史失败: " + e.getMessage());
         }
     }
+    
+    /**
+     * 当前登录用户ID，未登录时为 null
+     */
+    private Long viewerId(Authentication authentication) {
+        if (authentication != null && authentication.getPrincipal() instanceof Long userId) {
+            return userId;
+        }
+        return null;
+    }
 }
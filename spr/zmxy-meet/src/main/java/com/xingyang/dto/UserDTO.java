@@ -14,6 +14,7 @@ public class UserDTO {
     private String campus;
     private LocalDateTime createTime;
     private LocalDateTime updateTime;
+    private Boolean followedByMe;  // 当前用户是否关注了此人，仅关注/粉丝分页列表填充
     
     public static UserDTO fromEntity(com.xingyang.entity.User user) {
         if (user == null) {
@@ -0,0 +1,25 @@
+package com.xingyang.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@TableName("tb_circle_member")
+public class CircleMember {
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    private Long circleId;
+    
+    private Long userId;
+    
+    private String role;  // admin, member
+    
+    private Long lastReadMessageId;  // 圈子消息已读位置
+    
+    private LocalDateTime joinTime;
+    
+    @TableLogic
+    private Integer deleted;
+}
@@ -0,0 +1,31 @@
+package com.xingyang.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 圈子群聊消息，每条消息只存一行，成员的已读状态记录在 tb_circle_member.last_read_message_id
+ */
+@Data
+@TableName("tb_circle_message")
+public class CircleMessage {
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    private Long circleId;
+    
+    private Long senderId;
+    
+    private String content;
+    
+    private String type;  // text, image, video
+    
+    private String mediaUrls;  // JSON 数组
+    
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createTime;
+    
+    @TableLogic
+    private Integer deleted;
+}
@@ -0,0 +1,33 @@
+package com.xingyang.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 会话摘要，每个 (owner, peer) 一行，发送消息和标记已读时维护
+ */
+@Data
+@TableName("tb_conversation")
+public class Conversation {
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    private Long ownerId;  // 会话所属用户ID
+    
+    private Long peerId;  // 对话人ID
+    
+    private Long lastMessageId;
+    
+    private String lastMessage;  // 最后一条消息内容（截断）
+    
+    private String lastMessageType;  // text, image, video
+    
+    private LocalDateTime lastMessageTime;
+    
+    private Integer unreadCount;  // owner 未读的 peer 消息数
+    
+    private Long lastReadMessageId;  // owner 已读到的消息ID
+    
+    private LocalDateTime updateTime;
+}
@@ -14,6 +14,8 @@ public class Message {
     
     private Long receiverId;
     
+    private String conversationKey;  // 会话键：较小用户ID_较大用户ID，双向消息相同
+    
     private String content;
     
     private String type;  // text, image, video
@@ -27,4 +29,11 @@ public class Message {
     
     @TableLogic
     private Integer deleted;
+    
+    /**
+     * 两个用户之间的会话键，与发送方向无关
+     */
+    public static String conversationKey(Long userId1, Long userId2) {
+        return Math.min(userId1, userId2) + "_" + Math.max(userId1, userId2);
+    }
 }
@@ -22,9 +22,13 @@ public class Notification {
     
     private Boolean isRead;  // 是否已读
     
+    private Integer aggregateCount;  // 聚合的通知条数（触发人数）
+    
     @TableField(fill = FieldFill.INSERT)
     private LocalDateTime createTime;
     
+    private LocalDateTime updateTime;  // 最近一次聚合时间
+    
     @TableLogic
     private Integer deleted;
 }
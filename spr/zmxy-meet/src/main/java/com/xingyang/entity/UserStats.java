@@ -0,0 +1,23 @@
+package com.xingyang.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 用户计数（动态数、粉丝数、关注数），与发帖/删帖、关注/取关在同一事务中增减
+ */
+@Data
+@TableName("tb_user_stats")
+public class UserStats {
+    @TableId(type = IdType.INPUT)
+    private Long userId;
+    
+    private Integer postsCount;
+    
+    private Integer followersCount;
+    
+    private Integer followingCount;
+    
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,18 @@
+package com.xingyang.event;
+
+/**
+ * 领域事件，由业务写操作在事务提交后发布，occurredAt 用于统计处理延迟
+ */
+public sealed interface DomainEvent permits DomainEvent.PostLiked, DomainEvent.PostCommented, DomainEvent.UserFollowed {
+    
+    long occurredAt();
+    
+    record PostLiked(Long postId, Long userId, long occurredAt) implements DomainEvent {
+    }
+    
+    record PostCommented(Long postId, Long commentId, Long userId, long occurredAt) implements DomainEvent {
+    }
+    
+    record UserFollowed(Long followerId, Long followedId, long occurredAt) implements DomainEvent {
+    }
+}
@@ -0,0 +1,418 @@
+package com.xingyang.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xingyang.websocket.WebSocketSessionRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ClassUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内领域事件总线：事务提交后发布，由固定数量的分发线程成批交给各处理器，失败按指数退避重试，
+ * 重试后仍失败时对半拆分这一批，只有真正出错的事件算失败，同批其他事件照常处理
+ * event.transport=memory 时走有界内存队列（满了在调用线程直接处理，起到背压作用），重启会丢失未处理的事件；
+ * event.transport=redis 时写入 Redis Stream（events:domain），各节点同一个消费组消费，
+ * 每条消息所有处理器都成功才 ACK；部分处理器失败时把已成功的处理器记在 events:domain:done:{id}，
+ * 消息空闲超过 claim-idle-ms 后由其他线程认领，只重做失败的处理器
+ */
+@Component
+public class DomainEventBus {
+
+    private static final String STREAM_KEY = "events:domain";
+    private static final String GROUP = "domain-handlers";
+    private static final String DONE_PREFIX = "events:domain:done:";
+
+    private static final Map<String, Class<? extends DomainEvent>> TYPES = Map.of(
+            "PostLiked", DomainEvent.PostLiked.class,
+            "PostCommented", DomainEvent.PostCommented.class,
+            "UserFollowed", DomainEvent.UserFollowed.class);
+
+    private final List<DomainEventHandler> handlers;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean useStream;
+    private final String consumerName;
+    private final BlockingQueue<DomainEvent> queue;
+    private final ExecutorService dispatchers;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long backoffMs;
+    private final long streamMaxLength;
+    private final long claimIdleMs;
+    private final int maxDeliveries;
+    private volatile boolean running = true;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder handled = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder inline = new LongAdder();
+    private final AtomicLong lastLagMs = new AtomicLong();
+    private final AtomicLong maxLagMs = new AtomicLong();
+
+    public DomainEventBus(List<DomainEventHandler> handlers,
+                          StringRedisTemplate stringRedisTemplate,
+                          ObjectMapper objectMapper,
+                          WebSocketSessionRegistry sessionRegistry,
+                          @Value("${event.transport:memory}") String transport,
+                          @Value("${event.dispatcher-threads:2}") int threads,
+                          @Value("${event.queue-capacity:10000}") int queueCapacity,
+                          @Value("${event.batch-size:100}") int batchSize,
+                          @Value("${event.retry.max-attempts:3}") int maxAttempts,
+                          @Value("${event.retry.backoff-ms:200}") long backoffMs,
+                          @Value("${event.stream.max-length:100000}") long streamMaxLength,
+                          @Value("${event.stream.claim-idle-ms:60000}") long claimIdleMs,
+                          @Value("${event.stream.max-deliveries:10}") int maxDeliveries) {
+        this.handlers = handlers;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.useStream = "redis".equalsIgnoreCase(transport);
+        this.consumerName = sessionRegistry.getNodeId();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMs = backoffMs;
+        this.streamMaxLength = streamMaxLength;
+        this.claimIdleMs = claimIdleMs;
+        this.maxDeliveries = maxDeliveries;
+
+        if (useStream) {
+            createGroup();
+        }
+        AtomicInteger counter = new AtomicInteger();
+        this.dispatchers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "event-dispatch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < threads; i++) {
+            dispatchers.execute(useStream ? this::consumeStream : this::consumeQueue);
+        }
+        System.out.println("领域事件总线已启动: transport=" + (useStream ? "redis" : "memory") + ", threads=" + threads);
+    }
+
+    /**
+     * 发布事件；在事务中调用时等提交后再投递，回滚的操作不会产生事件
+     */
+    public void publish(DomainEvent event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(event);
+                }
+            });
+        } else {
+            send(event);
+        }
+    }
+
+    private void send(DomainEvent event) {
+        published.increment();
+        if (useStream) {
+            try {
+                Map<String, String> fields = Map.of(
+                        "type", event.getClass().getSimpleName(),
+                        "payload", objectMapper.writeValueAsString(event));
+                stringRedisTemplate.opsForStream().add(StreamRecords.string(fields).withStreamKey(STREAM_KEY));
+                if (published.sum() % 1000 == 0) {
+                    stringRedisTemplate.opsForStream().trim(STREAM_KEY, streamMaxLength, true);
+                }
+                return;
+            } catch (Exception e) {
+                System.err.println("领域事件写入 Redis Stream 失败，改为本地处理: " + e.getMessage());
+            }
+        }
+        if (!queue.offer(event)) {
+            // 队列满时在调用线程处理，拖慢生产者而不是丢事件
+            inline.increment();
+            dispatch(List.of(event));
+        }
+    }
+
+    private void consumeQueue() {
+        while (running || !queue.isEmpty()) {
+            try {
+                DomainEvent first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<DomainEvent> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void consumeStream() {
+        long lastClaim = 0;
+        while (running) {
+            try {
+                List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().read(
+                        Consumer.from(GROUP, consumerName),
+                        StreamReadOptions.empty().count(batchSize).block(Duration.ofSeconds(2)),
+                        StreamOffset.create(STREAM_KEY, ReadOffset.lastConsumed()));
+                if (records != null && !records.isEmpty()) {
+                    processRecords(records, false);
+                }
+                if (System.currentTimeMillis() - lastClaim >= claimIdleMs) {
+                    lastClaim = System.currentTimeMillis();
+                    claimStale();
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                System.err.println("领域事件消费失败: " + e.getMessage());
+                sleep(backoffMs);
+            }
+        }
+    }
+
+    /**
+     * 认领空闲过久的未确认消息（处理失败或所在节点已下线），投递次数过多的直接丢弃
+     */
+    private void claimStale() {
+        PendingMessages pending = stringRedisTemplate.opsForStream()
+                .pending(STREAM_KEY, GROUP, Range.unbounded(), batchSize);
+        List<RecordId> stale = new ArrayList<>();
+        for (PendingMessage message : pending) {
+            if (message.getElapsedTimeSinceLastDelivery().toMillis() < claimIdleMs) {
+                continue;
+            }
+            if (message.getTotalDeliveryCount() >= maxDeliveries) {
+                System.err.println("领域事件多次处理失败，丢弃: " + message.getIdAsString());
+                stringRedisTemplate.opsForStream().acknowledge(STREAM_KEY, GROUP, message.getId());
+                stringRedisTemplate.delete(DONE_PREFIX + message.getIdAsString());
+                failed.increment();
+            } else {
+                stale.add(message.getId());
+            }
+        }
+        if (!stale.isEmpty()) {
+            List<MapRecord<String, Object, Object>> claimed = stringRedisTemplate.opsForStream()
+                    .claim(STREAM_KEY, GROUP, consumerName, Duration.ofMillis(claimIdleMs), stale.toArray(new RecordId[0]));
+            if (!claimed.isEmpty()) {
+                processRecords(claimed, true);
+            }
+        }
+    }
+
+    private void processRecords(List<MapRecord<String, Object, Object>> records, boolean redelivered) {
+        List<RecordId> ids = new ArrayList<>(records.size());
+        List<DomainEvent> events = new ArrayList<>(records.size());
+        List<RecordId> ack = new ArrayList<>();
+        for (MapRecord<String, Object, Object> record : records) {
+            try {
+                Class<? extends DomainEvent> type = TYPES.get(String.valueOf(record.getValue().get("type")));
+                events.add(objectMapper.readValue(String.valueOf(record.getValue().get("payload")), type));
+                ids.add(record.getId());
+            } catch (Exception e) {
+                System.err.println("无法解析的领域事件，丢弃: " + record.getId() + ", " + e.getMessage());
+                ack.add(record.getId());
+            }
+        }
+
+        // 重新认领的消息跳过上次已经成功的处理器
+        Map<RecordId, Set<String>> done = redelivered ? loadDone(ids) : Map.of();
+        Map<RecordId, Set<String>> succeeded = new HashMap<>();
+        Set<RecordId> incomplete = new HashSet<>();
+        if (!events.isEmpty()) {
+            recordLag(events);
+        }
+        for (DomainEventHandler handler : handlers) {
+            String name = handlerName(handler);
+            List<DomainEvent> todo = new ArrayList<>(events.size());
+            List<RecordId> todoIds = new ArrayList<>(events.size());
+            for (int i = 0; i < events.size(); i++) {
+                if (!done.getOrDefault(ids.get(i), Set.of()).contains(name)) {
+                    todo.add(events.get(i));
+                    todoIds.add(ids.get(i));
+                }
+            }
+            if (todo.isEmpty()) {
+                continue;
+            }
+            Set<DomainEvent> failedEvents = handleIsolating(handler, todo, maxAttempts);
+            for (int i = 0; i < todo.size(); i++) {
+                if (failedEvents.contains(todo.get(i))) {
+                    incomplete.add(todoIds.get(i));
+                } else {
+                    succeeded.computeIfAbsent(todoIds.get(i), id -> new HashSet<>()).add(name);
+                }
+            }
+        }
+        handled.add(events.size());
+
+        // 全部成功才确认；失败的留在待确认列表，只记下哪些处理器已经成功，空闲超时后再被认领
+        List<RecordId> cleanup = new ArrayList<>();
+        for (RecordId id : ids) {
+            if (!incomplete.contains(id)) {
+                ack.add(id);
+                if (done.containsKey(id)) {
+                    cleanup.add(id);
+                }
+            } else if (succeeded.containsKey(id)) {
+                markDone(id, succeeded.get(id));
+            }
+        }
+        if (!ack.isEmpty()) {
+            stringRedisTemplate.opsForStream().acknowledge(STREAM_KEY, GROUP, ack.toArray(new RecordId[0]));
+        }
+        if (!cleanup.isEmpty()) {
+            stringRedisTemplate.delete(cleanup.stream().map(id -> DONE_PREFIX + id.getValue()).toList());
+        }
+    }
+
+    private Map<RecordId, Set<String>> loadDone(List<RecordId> ids) {
+        Map<RecordId, Set<String>> done = new HashMap<>();
+        for (RecordId id : ids) {
+            Set<String> names = stringRedisTemplate.opsForSet().members(DONE_PREFIX + id.getValue());
+            if (names != null && !names.isEmpty()) {
+                done.put(id, names);
+            }
+        }
+        return done;
+    }
+
+    private void markDone(RecordId id, Set<String> names) {
+        try {
+            String key = DONE_PREFIX + id.getValue();
+            stringRedisTemplate.opsForSet().add(key, names.toArray(new String[0]));
+            // 比消息可能被重新投递的总时长更久
+            stringRedisTemplate.expire(key, Duration.ofMillis(claimIdleMs * (maxDeliveries + 1L)));
+        } catch (Exception e) {
+            // 记不下来只是重做时这些处理器再执行一次
+            System.err.println("领域事件处理进度记录失败: " + id + ", " + e.getMessage());
+        }
+    }
+
+    /**
+     * 把一批事件交给所有处理器，每个处理器独立重试、独立定位失败的事件
+     */
+    private void dispatch(List<DomainEvent> events) {
+        recordLag(events);
+        for (DomainEventHandler handler : handlers) {
+            handleIsolating(handler, events, maxAttempts);
+        }
+        handled.add(events.size());
+    }
+
+    /**
+     * 处理器按整批执行，失败时按退避重试 attempts 次；仍失败且多于一条时对半拆开分别处理（每半只试一次，
+     * 拆到单条时再完整重试），返回最终失败的事件（按引用区分，内容相同的两条事件各算各的）
+     */
+    private Set<DomainEvent> handleIsolating(DomainEventHandler handler, List<DomainEvent> events, int attempts) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                handler.handle(events);
+                return Set.of();
+            } catch (Exception e) {
+                if (attempt < attempts) {
+                    retried.increment();
+                    sleep(backoffMs << (attempt - 1));
+                    continue;
+                }
+                if (events.size() == 1) {
+                    System.err.println("领域事件处理失败: " + handlerName(handler) + ", " + events.get(0)
+                            + ", " + e.getMessage());
+                    failed.increment();
+                    Set<DomainEvent> failedEvents = Collections.newSetFromMap(new IdentityHashMap<>());
+                    failedEvents.add(events.get(0));
+                    return failedEvents;
+                }
+                break;
+            }
+        }
+        int mid = events.size() / 2;
+        List<DomainEvent> left = events.subList(0, mid);
+        List<DomainEvent> right = events.subList(mid, events.size());
+        Set<DomainEvent> failedEvents = Collections.newSetFromMap(new IdentityHashMap<>());
+        failedEvents.addAll(handleIsolating(handler, left, left.size() == 1 ? maxAttempts : 1));
+        failedEvents.addAll(handleIsolating(handler, right, right.size() == 1 ? maxAttempts : 1));
+        return failedEvents;
+    }
+
+    private void recordLag(List<DomainEvent> events) {
+        long lag = System.currentTimeMillis() - events.get(0).occurredAt();
+        lastLagMs.set(lag);
+        maxLagMs.accumulateAndGet(lag, Math::max);
+    }
+
+    private static String handlerName(DomainEventHandler handler) {
+        return ClassUtils.getUserClass(handler).getSimpleName();
+    }
+
+    private void createGroup() {
+        try {
+            stringRedisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands()
+                    .xGroupCreate(STREAM_KEY.getBytes(StandardCharsets.UTF_8), GROUP, ReadOffset.from("0"), true));
+        } catch (Exception e) {
+            // 消费组已存在（BUSYGROUP）不算错误
+            String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            if (message == null || !message.contains("BUSYGROUP")) {
+                System.err.println("创建领域事件消费组失败: " + message);
+            }
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 事件处理统计，lag 为事件发生到开始处理的间隔
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("transport", useStream ? "redis" : "memory");
+        stats.put("queueSize", queue.size());
+        stats.put("published", published.sum());
+        stats.put("handled", handled.sum());
+        stats.put("retried", retried.sum());
+        stats.put("failed", failed.sum());
+        stats.put("inline", inline.sum());
+        stats.put("lastLagMs", lastLagMs.get());
+        stats.put("maxLagMs", maxLagMs.get());
+        if (useStream) {
+            try {
+                stats.put("streamPending", stringRedisTemplate.opsForStream()
+                        .pending(STREAM_KEY, GROUP).getTotalPendingMessages());
+            } catch (Exception e) {
+                stats.put("streamPending", -1);
+            }
+        }
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        dispatchers.shutdown();
+        // 内存队列里剩下的事件在退出前处理完
+        dispatchers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,13 @@
+package com.xingyang.event;
+
+import java.util.List;
+
+/**
+ * 领域事件处理器，注册为 Bean 后由 DomainEventBus 成批调用
+ * 抛出异常时整批重试，仍失败时拆成更小的批次再调用，直到定位出失败的事件；
+ * 同一批可能被调用多次，实现应把一批的写操作放在同一个事务里
+ */
+public interface DomainEventHandler {
+    
+    void handle(List<DomainEvent> events);
+}
@@ -0,0 +1,81 @@
+package com.xingyang.event;
+
+import com.xingyang.entity.Post;
+import com.xingyang.mapper.PostMapper;
+import com.xingyang.service.NotificationService;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 点赞、评论、关注事件转成通知
+ * 一批内同一接收者、类型、关联对象的事件先合并成一次写入，整批在一个事务里提交
+ */
+@Component
+public class NotificationEventHandler implements DomainEventHandler {
+    
+    private record Draft(Long userId, String type, String content, Long relatedId) {
+    }
+    
+    private final NotificationService notificationService;
+    private final PostMapper postMapper;
+    private final TransactionTemplate transactionTemplate;
+    
+    public NotificationEventHandler(NotificationService notificationService,
+                                    PostMapper postMapper,
+                                    TransactionTemplate transactionTemplate) {
+        this.notificationService = notificationService;
+        this.postMapper = postMapper;
+        this.transactionTemplate = transactionTemplate;
+    }
+    
+    @Override
+    public void handle(List<DomainEvent> events) {
+        // 一次查出本批涉及的动态作者
+        Set<Long> postIds = new HashSet<>();
+        for (DomainEvent event : events) {
+            if (event instanceof DomainEvent.PostLiked liked) {
+                postIds.add(liked.postId());
+            } else if (event instanceof DomainEvent.PostCommented commented) {
+                postIds.add(commented.postId());
+            }
+        }
+        Map<Long, Long> postOwners = postIds.isEmpty() ? Map.of() : postMapper.selectBatchIds(postIds).stream()
+                .collect(Collectors.toMap(Post::getId, Post::getUserId));
+        
+        // 合并后的通知 -> 去重后的触发者，最近的排在最后
+        Map<Draft, LinkedHashSet<Long>> drafts = new LinkedHashMap<>();
+        for (DomainEvent event : events) {
+            Draft draft = null;
+            Long senderId = null;
+            if (event instanceof DomainEvent.PostLiked liked) {
+                Long ownerId = postOwners.get(liked.postId());
+                senderId = liked.userId();
+                draft = ownerId != null ? new Draft(ownerId, "like", "有人点赞了你的动态", liked.postId()) : null;
+            } else if (event instanceof DomainEvent.PostCommented commented) {
+                Long ownerId = postOwners.get(commented.postId());
+                senderId = commented.userId();
+                draft = ownerId != null ? new Draft(ownerId, "comment", "有人评论了你的动态", commented.postId()) : null;
+            } else if (event instanceof DomainEvent.UserFollowed followed) {
+                senderId = followed.followerId();
+                draft = new Draft(followed.followedId(), "follow", "有人关注了你", null);
+            }
+            // 不通知自己
+            if (draft == null || draft.userId().equals(senderId)) {
+                continue;
+            }
+            LinkedHashSet<Long> senders = drafts.computeIfAbsent(draft, d -> new LinkedHashSet<>());
+            senders.remove(senderId);
+            senders.add(senderId);
+        }
+        if (drafts.isEmpty()) {
+            return;
+        }
+        
+        transactionTemplate.executeWithoutResult(status -> drafts.forEach((draft, senders) ->
+                notificationService.createNotification(draft.userId(), draft.type(), draft.content(),
+                        draft.relatedId(), new ArrayList<>(senders))));
+    }
+}
@@ -3,7 +3,12 @@ package com.xingyang.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.xingyang.entity.Circle;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
 
 @Mapper
 public interface CircleMapper extends BaseMapper<Circle> {
+    
+    @Update("UPDATE tb_circle SET members_count = GREATEST(members_count + #{delta}, 0) WHERE id = #{circleId}")
+    int adjustMembersCount(@Param("circleId") Long circleId, @Param("delta") int delta);
 }
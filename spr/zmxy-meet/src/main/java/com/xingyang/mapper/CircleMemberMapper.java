@@ -0,0 +1,58 @@
+package com.xingyang.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.xingyang.entity.CircleMember;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+import java.util.Map;
+
+@Mapper
+public interface CircleMemberMapper extends BaseMapper<CircleMember> {
+    
+    @Select("SELECT user_id FROM tb_circle_member WHERE circle_id = #{circleId} AND deleted = 0")
+    List<Long> selectUserIds(@Param("circleId") Long circleId);
+    
+    /**
+     * 加入圈子，已读位置从当前最新一条消息开始，不把加入前的历史算作未读
+     */
+    @Insert("INSERT INTO tb_circle_member (circle_id, user_id, role, last_read_message_id, join_time, deleted) " +
+            "SELECT #{circleId}, #{userId}, 'member', IFNULL(MAX(id), 0), NOW(), 0 " +
+            "FROM tb_circle_message WHERE circle_id = #{circleId}")
+    int insertMember(@Param("circleId") Long circleId, @Param("userId") Long userId);
+    
+    /**
+     * 退出后重新加入：恢复逻辑删除的成员记录（(circle_id, user_id) 唯一）
+     */
+    @Update("UPDATE tb_circle_member SET deleted = 0, role = 'member', join_time = NOW(), " +
+            "last_read_message_id = (SELECT IFNULL(MAX(id), 0) FROM tb_circle_message WHERE circle_id = #{circleId}) " +
+            "WHERE circle_id = #{circleId} AND user_id = #{userId} AND deleted = 1")
+    int restoreMember(@Param("circleId") Long circleId, @Param("userId") Long userId);
+    
+    @Update("UPDATE tb_circle_member SET deleted = 1 " +
+            "WHERE circle_id = #{circleId} AND user_id = #{userId} AND deleted = 0")
+    int removeMember(@Param("circleId") Long circleId, @Param("userId") Long userId);
+    
+    /**
+     * 已读位置只前进不后退
+     */
+    @Update("UPDATE tb_circle_member SET last_read_message_id = #{messageId} " +
+            "WHERE circle_id = #{circleId} AND user_id = #{userId} AND deleted = 0 " +
+            "AND last_read_message_id < #{messageId}")
+    int advanceReadCursor(@Param("circleId") Long circleId,
+                          @Param("userId") Long userId,
+                          @Param("messageId") Long messageId);
+    
+    /**
+     * 用户所在每个圈子的未读数，只统计已读位置之后的消息（走 (circle_id, id) 索引范围）
+     */
+    @Select("SELECT m.circle_id AS circleId, " +
+            "(SELECT COUNT(*) FROM tb_circle_message c " +
+            " WHERE c.circle_id = m.circle_id AND c.id > m.last_read_message_id AND c.deleted = 0) AS unreadCount " +
+            "FROM tb_circle_member m WHERE m.user_id = #{userId} AND m.deleted = 0")
+    List<Map<String, Object>> selectUnreadCounts(@Param("userId") Long userId);
+}
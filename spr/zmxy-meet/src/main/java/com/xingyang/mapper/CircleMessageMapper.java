@@ -0,0 +1,17 @@
+package com.xingyang.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.xingyang.entity.CircleMessage;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+@Mapper
+public interface CircleMessageMapper extends BaseMapper<CircleMessage> {
+    
+    /**
+     * 圈子最新一条消息的ID，没有消息时返回 null（走 (circle_id, id) 索引，不过滤已删除的消息）
+     */
+    @Select("SELECT MAX(id) FROM tb_circle_message WHERE circle_id = #{circleId}")
+    Long selectMaxId(@Param("circleId") Long circleId);
+}
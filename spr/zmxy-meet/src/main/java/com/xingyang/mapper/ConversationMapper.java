@@ -0,0 +1,69 @@
+package com.xingyang.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.xingyang.entity.Conversation;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface ConversationMapper extends BaseMapper<Conversation> {
+    
+    /**
+     * 写入或更新会话摘要；乱序到达的旧消息不会覆盖更新的最后一条消息
+     */
+    @Insert("INSERT INTO tb_conversation (owner_id, peer_id, last_message_id, last_message, last_message_type, " +
+            "last_message_time, unread_count) " +
+            "VALUES (#{ownerId}, #{peerId}, #{messageId}, #{content}, #{type}, #{createTime}, #{unreadDelta}) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "last_message = IF(VALUES(last_message_id) > last_message_id, VALUES(last_message), last_message), " +
+            "last_message_type = IF(VALUES(last_message_id) > last_message_id, VALUES(last_message_type), last_message_type), " +
+            "last_message_time = IF(VALUES(last_message_id) > last_message_id, VALUES(last_message_time), last_message_time), " +
+            "last_message_id = GREATEST(last_message_id, VALUES(last_message_id)), " +
+            "unread_count = unread_count + VALUES(unread_count)")
+    int upsert(@Param("ownerId") Long ownerId,
+               @Param("peerId") Long peerId,
+               @Param("messageId") Long messageId,
+               @Param("content") String content,
+               @Param("type") String type,
+               @Param("createTime") LocalDateTime createTime,
+               @Param("unreadDelta") int unreadDelta);
+    
+    /**
+     * 已读位置前进到 messageId；读到最后一条消息时未读数清零，否则只数剩余的几条
+     */
+    @Update("UPDATE tb_conversation SET " +
+            "unread_count = IF(#{messageId} >= last_message_id, 0, " +
+            "(SELECT COUNT(*) FROM tb_message WHERE conversation_key = #{conversationKey} AND sender_id = #{peerId} " +
+            "AND id > #{messageId} AND deleted = 0)), " +
+            "last_read_message_id = GREATEST(last_read_message_id, #{messageId}) " +
+            "WHERE owner_id = #{ownerId} AND peer_id = #{peerId} AND last_read_message_id < #{messageId}")
+    int advanceReadCursor(@Param("ownerId") Long ownerId,
+                          @Param("peerId") Long peerId,
+                          @Param("conversationKey") String conversationKey,
+                          @Param("messageId") Long messageId);
+    
+    @Select("SELECT IFNULL(SUM(unread_count), 0) FROM tb_conversation WHERE owner_id = #{ownerId}")
+    Long sumUnread(@Param("ownerId") Long ownerId);
+    
+    /**
+     * 批量统计未读总数，一次分组查询；结果只填 ownerId 和 unreadCount，没有会话的用户不返回
+     */
+    @Select("<script>" +
+            "SELECT owner_id, SUM(unread_count) AS unread_count FROM tb_conversation " +
+            "WHERE owner_id IN <foreach collection='ownerIds' item='id' open='(' separator=',' close=')'>#{id}</foreach> " +
+            "GROUP BY owner_id" +
+            "</script>")
+    List<Conversation> sumUnreadByOwners(@Param("ownerIds") Collection<Long> ownerIds);
+    
+    /**
+     * 离线补发的起点：有未读的会话中最小的已读位置；没有未读时为最新一条消息
+     */
+    @Select("SELECT IFNULL(MIN(IF(unread_count > 0, last_read_message_id, NULL)), IFNULL(MAX(last_message_id), 0)) " +
+            "FROM tb_conversation WHERE owner_id = #{ownerId}")
+    Long selectReplayStartId(@Param("ownerId") Long ownerId);
+}
@@ -2,6 +2,74 @@ package com.xingyang.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.xingyang.entity.Message;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
 
 public interface MessageMapper extends BaseMapper<Message> {
+    
+    /**
+     * 多行批量写入，ID 已预先分配；重复ID直接报错，由调用方先用 selectExistingIds 过滤
+     */
+    @Insert("<script>" +
+            "INSERT INTO tb_message (id, sender_id, receiver_id, conversation_key, content, type, media_urls, is_read, create_time, deleted) VALUES " +
+            "<foreach collection='messages' item='m' separator=','>" +
+            "(#{m.id}, #{m.senderId}, #{m.receiverId}, #{m.conversationKey}, #{m.content}, #{m.type}, #{m.mediaUrls}, #{m.isRead}, #{m.createTime}, 0)" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("messages") List<Message> messages);
+    
+    /**
+     * 会话历史按页（偏移量）查询，走 (conversation_key, id) 索引
+     */
+    @Select("SELECT * FROM tb_message WHERE conversation_key = #{conversationKey} AND deleted = 0 " +
+            "ORDER BY id LIMIT #{offset}, #{limit}")
+    List<Message> selectHistoryPage(@Param("conversationKey") String conversationKey,
+                                    @Param("offset") long offset,
+                                    @Param("limit") int limit);
+    
+    /**
+     * 会话历史从 beforeId 往前取一页（beforeId 为空时从最新一条开始）
+     */
+    @Select("<script>" +
+            "SELECT * FROM tb_message WHERE conversation_key = #{conversationKey} AND deleted = 0 " +
+            "<if test='beforeId != null'>AND id &lt; #{beforeId} </if>" +
+            "ORDER BY id DESC LIMIT #{limit}" +
+            "</script>")
+    List<Message> selectHistoryBefore(@Param("conversationKey") String conversationKey,
+                                      @Param("beforeId") Long beforeId,
+                                      @Param("limit") int limit);
+    
+    /**
+     * 离线补发：idx_receiver 二级索引隐含主键，receiver_id = ? AND id > ? 是一次索引范围扫描
+     */
+    @Select("SELECT * FROM tb_message WHERE receiver_id = #{receiverId} AND id > #{afterId} AND deleted = 0 " +
+            "ORDER BY id LIMIT #{limit}")
+    List<Message> selectUndelivered(@Param("receiverId") Long receiverId,
+                                    @Param("afterId") Long afterId,
+                                    @Param("limit") int limit);
+    
+    /**
+     * 按会话已读位置查询未读消息，只扫描有未读的会话，每个会话是一次 (conversation_key, id) 范围扫描
+     */
+    @Select("SELECT m.* FROM tb_conversation c " +
+            "JOIN tb_message m ON m.conversation_key = CONCAT(LEAST(c.owner_id, c.peer_id), '_', GREATEST(c.owner_id, c.peer_id)) " +
+            "AND m.id > c.last_read_message_id AND m.sender_id = c.peer_id AND m.deleted = 0 " +
+            "WHERE c.owner_id = #{userId} AND c.unread_count > 0 " +
+            "ORDER BY m.id DESC")
+    List<Message> selectUnreadByReadCursor(@Param("userId") Long userId);
+    
+    /**
+     * 给定ID中已经存在的（含逻辑删除的行）
+     */
+    @Select("<script>" +
+            "SELECT id FROM tb_message WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<Long> selectExistingIds(@Param("ids") List<Long> ids);
+    
+    @Select("SELECT IFNULL(MAX(id), 0) FROM tb_message")
+    Long selectMaxId();
 }
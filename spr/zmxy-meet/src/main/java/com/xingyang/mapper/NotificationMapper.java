@@ -3,7 +3,34 @@ package com.xingyang.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.xingyang.entity.Notification;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
 
 @Mapper
 public interface NotificationMapper extends BaseMapper<Notification> {
+    
+    /**
+     * 标记单条已读，只允许接收者操作；返回 1 表示本次从未读变为已读
+     */
+    @Update("UPDATE tb_notification SET is_read = 1 " +
+            "WHERE id = #{id} AND user_id = #{userId} AND is_read = 0 AND deleted = 0")
+    int markRead(@Param("userId") Long userId, @Param("id") Long id);
+    
+    /**
+     * 一条语句把用户的未读通知全部置为已读，走 (user_id, is_read) 索引
+     */
+    @Update("UPDATE tb_notification SET is_read = 1 WHERE user_id = #{userId} AND is_read = 0 AND deleted = 0")
+    int markAllRead(@Param("userId") Long userId);
+    
+    /**
+     * 聚合到已有的未读通知：人数加 count（窗口内新出现的触发者数）、更新最近的触发者；已读或已删除的通知不再聚合，返回 0
+     * MySQL 按顺序执行 SET，content 中的 aggregate_count 已是累加后的值
+     */
+    @Update("UPDATE tb_notification SET aggregate_count = aggregate_count + #{count}, " +
+            "content = CONCAT(aggregate_count, #{contentSuffix}), sender_id = #{senderId}, update_time = NOW() " +
+            "WHERE id = #{id} AND is_read = 0 AND deleted = 0")
+    int aggregate(@Param("id") Long id,
+                  @Param("senderId") Long senderId,
+                  @Param("contentSuffix") String contentSuffix,
+                  @Param("count") int count);
 }
@@ -2,6 +2,44 @@ package com.xingyang.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.xingyang.entity.Post;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Map;
 
 public interface PostMapper extends BaseMapper<Post> {
+    
+    /**
+     * 原子增减评论数，不会小于 0
+     */
+    @Update("UPDATE tb_post SET comments_count = GREATEST(IFNULL(comments_count, 0) + #{delta}, 0) " +
+            "WHERE id = #{postId}")
+    int incrementCommentsCount(@Param("postId") Long postId, @Param("delta") int delta);
+    
+    /**
+     * 按 ID 区间用 tb_comment 的真实数量校正评论数，返回被修正的行数
+     */
+    @Update("UPDATE tb_post p " +
+            "LEFT JOIN (SELECT post_id, COUNT(*) AS cnt FROM tb_comment " +
+            "           WHERE deleted = 0 AND post_id BETWEEN #{fromId} AND #{toId} GROUP BY post_id) c " +
+            "ON p.id = c.post_id " +
+            "SET p.comments_count = IFNULL(c.cnt, 0) " +
+            "WHERE p.id BETWEEN #{fromId} AND #{toId} AND p.deleted = 0 " +
+            "AND IFNULL(p.comments_count, -1) <> IFNULL(c.cnt, 0)")
+    int reconcileCommentsCount(@Param("fromId") Long fromId, @Param("toId") Long toId);
+    
+    /**
+     * 批量累加点赞数增量（key 为帖子ID，value 为增量），不会小于 0
+     */
+    @Update("<script>" +
+            "UPDATE tb_post SET likes_count = GREATEST(IFNULL(likes_count, 0) + CASE id " +
+            "<foreach collection='deltas' index='postId' item='delta'>WHEN #{postId} THEN #{delta} </foreach>" +
+            "ELSE 0 END, 0) " +
+            "WHERE id IN <foreach collection='deltas' index='postId' open='(' separator=',' close=')'>#{postId}</foreach>" +
+            "</script>")
+    int incrementLikesCountBatch(@Param("deltas") Map<Long, Integer> deltas);
+    
+    @Select("SELECT IFNULL(MAX(id), 0) FROM tb_post")
+    Long selectMaxId();
 }
@@ -3,7 +3,28 @@ package com.xingyang.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.xingyang.entity.Relation;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.ResultType;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.util.List;
 
 @Mapper
 public interface RelationMapper extends BaseMapper<Relation> {
+    
+    @Select("SELECT user_id_a FROM tb_relation WHERE user_id_b = #{userId} AND deleted = 0")
+    List<Long> selectFollowerIds(Long userId);
+    
+    @Select("SELECT user_id_b FROM tb_relation WHERE user_id_a = #{userId} AND deleted = 0")
+    List<Long> selectFollowingIds(Long userId);
+    
+    /**
+     * 流式读取全部关注关系（MySQL 逐行返回），用于预热关注关系邻接表
+     */
+    @Select("SELECT user_id_a, user_id_b FROM tb_relation WHERE relation_type = 'follow' AND deleted = 0")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    @ResultType(Relation.class)
+    void streamFollowEdges(ResultHandler<Relation> handler);
 }
@@ -0,0 +1,55 @@
+package com.xingyang.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.xingyang.entity.UserStats;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface UserStatsMapper extends BaseMapper<UserStats> {
+    
+    /**
+     * 增减计数，不会小于 0；行不存在时返回 0
+     */
+    @Update("UPDATE tb_user_stats SET " +
+            "posts_count = GREATEST(posts_count + #{postsDelta}, 0), " +
+            "followers_count = GREATEST(followers_count + #{followersDelta}, 0), " +
+            "following_count = GREATEST(following_count + #{followingDelta}, 0) " +
+            "WHERE user_id = #{userId}")
+    int increment(@Param("userId") Long userId,
+                  @Param("postsDelta") int postsDelta,
+                  @Param("followersDelta") int followersDelta,
+                  @Param("followingDelta") int followingDelta);
+    
+    /**
+     * 从 tb_post、tb_relation 重新统计并写入（不存在时插入，存在时覆盖）
+     */
+    @Insert("<script>" +
+            "INSERT INTO tb_user_stats (user_id, posts_count, followers_count, following_count) " +
+            "SELECT u.user_id, " +
+            "(SELECT COUNT(*) FROM tb_post p WHERE p.user_id = u.user_id AND p.deleted = 0), " +
+            "(SELECT COUNT(*) FROM tb_relation r WHERE r.user_id_b = u.user_id AND r.deleted = 0), " +
+            "(SELECT COUNT(*) FROM tb_relation r WHERE r.user_id_a = u.user_id AND r.deleted = 0) " +
+            "FROM (<foreach collection='userIds' item='id' separator=' UNION ALL '>SELECT #{id} AS user_id</foreach>) u " +
+            "ON DUPLICATE KEY UPDATE posts_count = VALUES(posts_count), " +
+            "followers_count = VALUES(followers_count), following_count = VALUES(following_count)" +
+            "</script>")
+    int rebuild(@Param("userIds") Collection<Long> userIds);
+    
+    /**
+     * ID 区间内计数与实际数量不一致的用户
+     */
+    @Select("SELECT s.user_id FROM tb_user_stats s " +
+            "WHERE s.user_id BETWEEN #{fromId} AND #{toId} AND (" +
+            "s.posts_count <> (SELECT COUNT(*) FROM tb_post p WHERE p.user_id = s.user_id AND p.deleted = 0) " +
+            "OR s.followers_count <> (SELECT COUNT(*) FROM tb_relation r WHERE r.user_id_b = s.user_id AND r.deleted = 0) " +
+            "OR s.following_count <> (SELECT COUNT(*) FROM tb_relation r WHERE r.user_id_a = s.user_id AND r.deleted = 0))")
+    List<Long> selectDriftedUserIds(@Param("fromId") Long fromId, @Param("toId") Long toId);
+    
+    @Select("SELECT IFNULL(MAX(user_id), 0) FROM tb_user_stats")
+    long selectMaxUserId();
+}
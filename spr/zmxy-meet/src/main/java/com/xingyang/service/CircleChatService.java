@@ -0,0 +1,31 @@
+package com.xingyang.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.xingyang.entity.CircleMessage;
+
+import java.util.List;
+import java.util.Map;
+
+public interface CircleChatService extends IService<CircleMessage> {
+    /**
+     * 发送圈子消息：只写一行，并分发给在线成员；非成员返回 null
+     */
+    CircleMessage sendMessage(Long circleId, Long senderId, String content);
+    
+    /**
+     * 圈子消息历史，beforeId 为空时从最新开始，按ID倒序
+     */
+    List<CircleMessage> getHistory(Long circleId, Long beforeId, int size);
+    
+    /**
+     * 更新成员的已读位置，不超过圈子最新一条消息；非成员返回 false
+     */
+    boolean markRead(Long circleId, Long userId, Long messageId);
+    
+    /**
+     * 用户所在各圈子的未读数（key 为圈子ID）
+     */
+    Map<Long, Integer> getUnreadCounts(Long userId);
+    
+    boolean isMember(Long circleId, Long userId);
+}
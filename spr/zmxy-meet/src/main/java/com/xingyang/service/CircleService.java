@@ -4,4 +4,14 @@ import com.baomidou.mybatisplus.extension.service.IService;
 import com.xingyang.entity.Circle;
 
 public interface CircleService extends IService<Circle> {
+    
+    /**
+     * 加入圈子，返回 false 表示已经是成员
+     */
+    boolean join(Long circleId, Long userId);
+    
+    /**
+     * 退出圈子，返回 false 表示不是成员
+     */
+    boolean leave(Long circleId, Long userId);
 }
@@ -0,0 +1,48 @@
+package com.xingyang.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.xingyang.entity.Conversation;
+import com.xingyang.entity.Message;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface ConversationService extends IService<Conversation> {
+    /**
+     * 消息保存后更新双方的会话摘要（接收方未读数 +1）
+     */
+    void recordMessage(Message message);
+    
+    /**
+     * 批量版本：同一会话的多条消息合并为一次更新
+     */
+    void recordMessages(List<Message> messages);
+    
+    /**
+     * owner 已读到 peer 会话的 messageId（为空时表示读到最新），返回新的已读位置；会话不存在或位置没有前进时返回 null
+     */
+    Long markRead(Long ownerId, Long peerId, Long messageId);
+    
+    Conversation getConversation(Long ownerId, Long peerId);
+    
+    /**
+     * 所有会话未读数之和
+     */
+    long getTotalUnread(Long ownerId);
+    
+    /**
+     * 批量版本：每个用户所有会话未读数之和，没有会话的用户为 0
+     */
+    Map<Long, Long> getTotalUnread(Collection<Long> ownerIds);
+    
+    /**
+     * 没有送达水位时离线补发的起点消息ID
+     */
+    long getReplayStartId(Long ownerId);
+    
+    /**
+     * 获取用户的会话列表，按最后一条消息倒序
+     */
+    List<Conversation> getUserConversations(Long ownerId, int limit);
+}
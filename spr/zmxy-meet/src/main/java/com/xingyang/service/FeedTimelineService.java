@@ -0,0 +1,52 @@
+package com.xingyang.service;
+
+import com.xingyang.entity.Post;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 首页时间线服务（Redis 有序集合，写扩散 + 大V读扩散）
+ */
+public interface FeedTimelineService {
+
+    /**
+     * 时间线中的一条：帖子ID 和发布时间（精确到秒，来自有序集合分数）
+     */
+    record TimelineEntry(Long postId, LocalDateTime createTime) {
+    }
+
+    /**
+     * 帖子发布后推送到粉丝时间线
+     */
+    void onPostCreated(Post post);
+
+    /**
+     * 帖子删除后从发件箱和作者时间线中移除
+     */
+    void onPostDeleted(Post post);
+
+    /**
+     * 关注关系变化后使用户时间线失效，下次读取时重建
+     */
+    void invalidateTimeline(Long userId);
+
+    /**
+     * 读取时间线某一页的帖子ID（按发布时间倒序）
+     * 返回 Optional.empty() 表示该用户时间线没有任何内容，调用方应回退到公共动态
+     */
+    Optional<List<Long>> getTimelinePostIds(Long userId, int page, int size);
+
+    /**
+     * 游标方式读取时间线：返回 (beforeTime, beforeId) 之后的最多 limit 条
+     * beforeTime 为 null 时从最新开始；条目可能指向已删除的帖子，调用方用它们的位置继续翻页
+     */
+    Optional<List<TimelineEntry>> getTimelineEntries(Long userId, LocalDateTime beforeTime, Long beforeId, int limit);
+
+    /**
+     * 从用户时间线中移除已删除的帖子ID
+     */
+    void pruneTimeline(Long userId, Collection<Long> postIds);
+}
@@ -1,6 +1,7 @@
 package com.xingyang.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.xingyang.common.CursorPage;
 import com.xingyang.entity.Message;
 
 import java.util.List;
@@ -8,4 +9,21 @@ import java.util.List;
 public interface MessageService extends IService<Message> {
     List<Message> getUnreadMessages(Long userId);
     List<Message> getChatHistory(Long userId1, Long userId2, int page, int size);
+    CursorPage<Message> getChatHistoryByCursor(Long userId1, Long userId2, String cursor, int size);
+    
+    /**
+     * 获取 afterId 之后发给 receiverId 的未读消息（按ID升序，最多 limit 条）
+     */
+    List<Message> getUndeliveredMessages(Long receiverId, Long afterId, int limit);
+    
+    /**
+     * 保存消息并更新双方会话摘要
+     */
+    void sendMessage(Message message);
+    
+    /**
+     * userId 已读 otherUserId 的消息到 upToMessageId（为空时读到最新），只更新会话的已读位置，
+     * 返回新的已读位置，位置没有前进时返回 null
+     */
+    Long markConversationRead(Long userId, Long otherUserId, Long upToMessageId);
 }
@@ -1,6 +1,7 @@
 package com.xingyang.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.xingyang.common.CursorPage;
 import com.xingyang.entity.Notification;
 
 import java.util.List;
@@ -12,14 +13,25 @@ public interface NotificationService extends IService<Notification> {
     void createNotification(Long userId, String type, String content, Long relatedId, Long senderId);
     
     /**
-     * 获取用户通知列表
+     * 创建通知，senderIds 为合并进来的触发者（去重，最后一个是最近的触发者）；
+     * 可聚合的类型按窗口内不同的触发人数显示
      */
-    List<Notification> getUserNotifications(Long userId);
+    void createNotification(Long userId, String type, String content, Long relatedId, List<Long> senderIds);
     
     /**
-     * 标记为已读
+     * 获取用户最新的 limit 条通知
      */
-    void markAsRead(Long notificationId);
+    List<Notification> getUserNotifications(Long userId, int limit);
+    
+    /**
+     * 游标分页获取用户通知列表
+     */
+    CursorPage<Notification> getUserNotificationsByCursor(Long userId, String cursor, int size);
+    
+    /**
+     * 标记为已读（只能标记自己的通知）
+     */
+    void markAsRead(Long userId, Long notificationId);
     
     /**
      * 标记全部为已读
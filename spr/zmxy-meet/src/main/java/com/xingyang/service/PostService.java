@@ -1,14 +1,26 @@
 package com.xingyang.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.xingyang.common.CursorPage;
 import com.xingyang.entity.Post;
 
 import java.util.List;
 
 public interface PostService extends IService<Post> {
+    /**
+     * 发布动态，同一事务中增加作者的动态数
+     */
+    void publishPost(Post post);
+    
+    /**
+     * 删除动态，同一事务中减少作者的动态数；返回是否删除成功
+     */
+    boolean deletePost(Post post);
+    
     List<Post> getFeedPosts(Long userId, int page, int size);
+    CursorPage<Post> getFeedPostsByCursor(Long userId, String cursor, int size);
     void likePost(Long postId, Long userId);
     void unlikePost(Long postId, Long userId);
     boolean isLiked(Long postId, Long userId);
-    List<Post> getUserLikedPosts(Long userId);
+    List<Post> getUserLikedPosts(Long userId, int page, int size);
 }
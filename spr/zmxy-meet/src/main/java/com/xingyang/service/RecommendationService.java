@@ -0,0 +1,32 @@
+package com.xingyang.service;
+
+import com.xingyang.dto.UserDTO;
+
+import java.util.List;
+
+/**
+ * "可能认识的人"推荐：关注的人还关注了谁（二度关系），按共同关注数、共同圈子、同校区加权，
+ * 每个用户的前 K 名缓存在 Redis 有序集合中
+ */
+public interface RecommendationService {
+
+    /**
+     * 读取推荐列表，已关注的人会被过滤掉；缓存不存在时现算一次，没有关注任何人时直接返回空列表
+     */
+    List<UserDTO> getRecommendations(Long userId, int size);
+
+    /**
+     * 关注列表发生变化，它和它的粉丝等下一次增量任务重算；在事务中调用时提交后再标记
+     */
+    void markDirty(Long userId);
+
+    /**
+     * 重算被标记的用户，返回重算的人数
+     */
+    int refreshDirty();
+
+    /**
+     * 重算所有关注过别人的用户，并重新加载圈子和校区数据，返回重算的人数
+     */
+    int refreshAll();
+}
@@ -1,6 +1,7 @@
 package com.xingyang.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.xingyang.common.CursorPage;
 import com.xingyang.dto.UserDTO;
 import com.xingyang.entity.Relation;
 
@@ -41,4 +42,14 @@ public interface RelationService extends IService<Relation> {
      * 获取粉丝列表
      */
     List<UserDTO> getFollowersList(Long userId);
+    
+    /**
+     * 游标分页获取关注列表，按关注时间倒序；viewerId 为当前用户（可为空），用于标记是否已关注列表中的人
+     */
+    CursorPage<UserDTO> getFollowingPage(Long userId, Long viewerId, String cursor, int size);
+    
+    /**
+     * 游标分页获取粉丝列表，按关注时间倒序
+     */
+    CursorPage<UserDTO> getFollowersPage(Long userId, Long viewerId, String cursor, int size);
 }
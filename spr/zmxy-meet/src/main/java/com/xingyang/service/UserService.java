@@ -3,7 +3,15 @@ package com.xingyang.service;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.xingyang.entity.User;
 
+import java.util.Collection;
+import java.util.Map;
+
 public interface UserService extends IService<User> {
     User findByUsername(String username);
     User findByEmail(String email);
+    
+    /**
+     * 批量获取用户（一次 listByIds），用于组装响应时替代逐条 getById
+     */
+    Map<Long, User> getUserMap(Collection<Long> userIds);
 }
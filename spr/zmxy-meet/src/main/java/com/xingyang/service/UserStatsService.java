@@ -0,0 +1,21 @@
+package com.xingyang.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.xingyang.entity.UserStats;
+
+public interface UserStatsService extends IService<UserStats> {
+    /**
+     * 获取用户计数：先读 Redis，再读 tb_user_stats，都没有时从明细表统计一次；用户不存在时返回 null
+     */
+    UserStats getStats(Long userId);
+    
+    /**
+     * 增减用户计数，需要在发帖/删帖、关注/取关的同一事务中调用；Redis 在提交后更新
+     */
+    void adjust(Long userId, int postsDelta, int followersDelta, int followingDelta);
+    
+    /**
+     * 校正 ID 区间内与明细表不一致的计数，返回修正的用户数
+     */
+    int reconcile(Long fromId, Long toId);
+}
@@ -0,0 +1,90 @@
+package com.xingyang.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.xingyang.cache.CircleMemberCache;
+import com.xingyang.entity.CircleMessage;
+import com.xingyang.mapper.CircleMemberMapper;
+import com.xingyang.mapper.CircleMessageMapper;
+import com.xingyang.service.CircleChatService;
+import com.xingyang.websocket.ChatMessageRouter;
+import com.xingyang.websocket.protocol.ChatFrame;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class CircleChatServiceImpl extends ServiceImpl<CircleMessageMapper, CircleMessage> implements CircleChatService {
+    
+    @Autowired
+    private CircleMemberMapper circleMemberMapper;
+    
+    @Autowired
+    private CircleMemberCache circleMemberCache;
+    
+    @Autowired
+    private ChatMessageRouter chatMessageRouter;
+    
+    @Override
+    public CircleMessage sendMessage(Long circleId, Long senderId, String content) {
+        if (!isMember(circleId, senderId)) {
+            return null;
+        }
+        
+        CircleMessage message = new CircleMessage();
+        message.setCircleId(circleId);
+        message.setSenderId(senderId);
+        message.setContent(content);
+        message.setType("text");
+        save(message);
+        
+        // 发送者自己发的消息视为已读
+        circleMemberMapper.advanceReadCursor(circleId, senderId, message.getId());
+        
+        chatMessageRouter.broadcastToCircle(circleId, senderId, new ChatFrame.CircleDeliver(
+                circleId, message.getId(), senderId, content,
+                message.getCreateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+        return message;
+    }
+    
+    @Override
+    public List<CircleMessage> getHistory(Long circleId, Long beforeId, int size) {
+        LambdaQueryWrapper<CircleMessage> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(CircleMessage::getCircleId, circleId)
+               .lt(beforeId != null, CircleMessage::getId, beforeId)
+               .orderByDesc(CircleMessage::getId)
+               .last("LIMIT " + size);
+        return list(wrapper);
+    }
+    
+    @Override
+    public boolean markRead(Long circleId, Long userId, Long messageId) {
+        if (!isMember(circleId, userId)) {
+            return false;
+        }
+        // 已读位置不能越过圈子最新消息，否则之后的新消息都不会计入未读
+        Long maxId = baseMapper.selectMaxId(circleId);
+        if (maxId != null && messageId != null) {
+            circleMemberMapper.advanceReadCursor(circleId, userId, Math.min(messageId, maxId));
+        }
+        return true;
+    }
+    
+    @Override
+    public Map<Long, Integer> getUnreadCounts(Long userId) {
+        Map<Long, Integer> result = new LinkedHashMap<>();
+        for (Map<String, Object> row : circleMemberMapper.selectUnreadCounts(userId)) {
+            result.put(((Number) row.get("circleId")).longValue(), ((Number) row.get("unreadCount")).intValue());
+        }
+        return result;
+    }
+    
+    @Override
+    public boolean isMember(Long circleId, Long userId) {
+        return circleMemberCache.isMember(circleId, userId);
+    }
+}
@@ -1,11 +1,50 @@
 package com.xingyang.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.xingyang.cache.CircleMemberCache;
 import com.xingyang.entity.Circle;
 import com.xingyang.mapper.CircleMapper;
+import com.xingyang.mapper.CircleMemberMapper;
 import com.xingyang.service.CircleService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class CircleServiceImpl extends ServiceImpl<CircleMapper, Circle> implements CircleService {
+    
+    @Autowired
+    private CircleMemberMapper circleMemberMapper;
+    
+    @Autowired
+    private CircleMemberCache circleMemberCache;
+    
+    @Override
+    @Transactional
+    public boolean join(Long circleId, Long userId) {
+        if (circleMemberMapper.restoreMember(circleId, userId) == 0) {
+            try {
+                circleMemberMapper.insertMember(circleId, userId);
+            } catch (DuplicateKeyException e) {
+                // 已经是成员（或并发加入）
+                return false;
+            }
+        }
+        baseMapper.adjustMembersCount(circleId, 1);
+        // 提交后失效各节点的成员缓存，群聊立即对新成员生效
+        circleMemberCache.invalidate(circleId);
+        return true;
+    }
+    
+    @Override
+    @Transactional
+    public boolean leave(Long circleId, Long userId) {
+        if (circleMemberMapper.removeMember(circleId, userId) == 0) {
+            return false;
+        }
+        baseMapper.adjustMembersCount(circleId, -1);
+        circleMemberCache.invalidate(circleId);
+        return true;
+    }
 }
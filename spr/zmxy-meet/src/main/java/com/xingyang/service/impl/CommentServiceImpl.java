@@ -2,13 +2,14 @@ package com.xingyang.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.xingyang.entity.Comment;
-import com.xingyang.entity.Post;
+import com.xingyang.event.DomainEvent;
+import com.xingyang.event.DomainEventBus;
 import com.xingyang.mapper.CommentMapper;
+import com.xingyang.mapper.PostMapper;
 import com.xingyang.service.CommentService;
-import com.xingyang.service.NotificationService;
-import com.xingyang.service.PostService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -17,10 +18,10 @@ import java.util.List;
 public class CommentServiceImpl extends ServiceImpl<CommentMapper, Comment> implements CommentService {
 
     @Autowired
-    private NotificationService notificationService;
+    private DomainEventBus eventBus;
 
     @Autowired
-    private PostService postService;
+    private PostMapper postMapper;
 
     @Override
     public List<Comment> getPostComments(Long postId) {
@@ -28,6 +29,7 @@ public class CommentServiceImpl extends ServiceImpl<CommentMapper, Comment> impl
     }
 
     @Override
+    @Transactional
     public Comment addComment(Long postId, Long userId, String content) {
         Comment comment = new Comment();
         comment.setPostId(postId);
@@ -37,22 +39,16 @@ public class CommentServiceImpl extends ServiceImpl<CommentMapper, Comment> impl
         comment.setDeleted(0);
 
         save(comment);
+        postMapper.incrementCommentsCount(postId, 1);
 
-        // 创建通知（不通知自己）
-        Post post = postService.getById(postId);
-        if (post != null && !post.getUserId().equals(userId)) {
-            notificationService.createNotification(
-                    post.getUserId(),
-                    "comment",
-                    "有人评论了你的动态",
-                    postId,
-                    userId);
-        }
+        // 事务提交后发布事件，通知由事件处理器异步生成
+        eventBus.publish(new DomainEvent.PostCommented(postId, comment.getId(), userId, System.currentTimeMillis()));
 
         return comment;
     }
 
     @Override
+    @Transactional
     public Comment replyComment(Long commentId, Long userId, String content) {
         Comment comment = new Comment();
         comment.setParentCommentId(commentId);
@@ -68,10 +64,14 @@ public class CommentServiceImpl extends ServiceImpl<CommentMapper, Comment> impl
         }
 
         save(comment);
+        if (comment.getPostId() != null) {
+            postMapper.incrementCommentsCount(comment.getPostId(), 1);
+        }
         return comment;
     }
 
     @Override
+    @Transactional
     public boolean deleteComment(Long commentId, Long userId) {
         Comment comment = getById(commentId);
         if (comment == null) {
@@ -89,6 +89,10 @@ public class CommentServiceImpl extends ServiceImpl<CommentMapper, Comment> impl
                 .eq("deleted", 0)
                 .set("deleted", 1);
 
-        return update(updateWrapper);
+        boolean deleted = update(updateWrapper);
+        if (deleted && comment.getPostId() != null) {
+            postMapper.incrementCommentsCount(comment.getPostId(), -1);
+        }
+        return deleted;
     }
 }
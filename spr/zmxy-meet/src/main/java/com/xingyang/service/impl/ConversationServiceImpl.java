@@ -0,0 +1,106 @@
+package com.xingyang.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.xingyang.entity.Conversation;
+import com.xingyang.entity.Message;
+import com.xingyang.mapper.ConversationMapper;
+import com.xingyang.service.ConversationService;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class ConversationServiceImpl extends ServiceImpl<ConversationMapper, Conversation> implements ConversationService {
+    
+    private static final int PREVIEW_LENGTH = 200;
+    
+    @Override
+    public void recordMessage(Message message) {
+        recordMessages(List.of(message));
+    }
+    
+    @Override
+    public void recordMessages(List<Message> messages) {
+        // 按 (发送者, 接收者) 合并，只保留最新一条消息并累计条数
+        Map<List<Long>, Message> latest = new LinkedHashMap<>();
+        Map<List<Long>, Integer> counts = new LinkedHashMap<>();
+        for (Message message : messages) {
+            List<Long> pair = List.of(message.getSenderId(), message.getReceiverId());
+            latest.merge(pair, message, (a, b) -> b.getId() > a.getId() ? b : a);
+            counts.merge(pair, 1, Integer::sum);
+        }
+        
+        for (Map.Entry<List<Long>, Message> entry : latest.entrySet()) {
+            Message message = entry.getValue();
+            String preview = message.getContent();
+            if (preview != null && preview.length() > PREVIEW_LENGTH) {
+                preview = preview.substring(0, PREVIEW_LENGTH);
+            }
+            
+            // 发送方的会话不增加未读，接收方的会话未读累加
+            baseMapper.upsert(message.getSenderId(), message.getReceiverId(), message.getId(),
+                    preview, message.getType(), message.getCreateTime(), 0);
+            if (!message.getSenderId().equals(message.getReceiverId())) {
+                baseMapper.upsert(message.getReceiverId(), message.getSenderId(), message.getId(),
+                        preview, message.getType(), message.getCreateTime(), counts.get(entry.getKey()));
+            }
+        }
+    }
+    
+    @Override
+    public Long markRead(Long ownerId, Long peerId, Long messageId) {
+        Conversation conversation = getConversation(ownerId, peerId);
+        if (conversation == null) {
+            return null;
+        }
+        long readUpTo = messageId != null ? Math.min(messageId, conversation.getLastMessageId()) : conversation.getLastMessageId();
+        if (readUpTo <= conversation.getLastReadMessageId()) {
+            return null;
+        }
+        return baseMapper.advanceReadCursor(ownerId, peerId, Message.conversationKey(ownerId, peerId), readUpTo) > 0 ? readUpTo : null;
+    }
+    
+    @Override
+    public Conversation getConversation(Long ownerId, Long peerId) {
+        return lambdaQuery()
+                .eq(Conversation::getOwnerId, ownerId)
+                .eq(Conversation::getPeerId, peerId)
+                .one();
+    }
+    
+    @Override
+    public long getTotalUnread(Long ownerId) {
+        return baseMapper.sumUnread(ownerId);
+    }
+    
+    @Override
+    public Map<Long, Long> getTotalUnread(Collection<Long> ownerIds) {
+        Map<Long, Long> totals = new HashMap<>();
+        ownerIds.forEach(id -> totals.put(id, 0L));
+        if (!ownerIds.isEmpty()) {
+            for (Conversation row : baseMapper.sumUnreadByOwners(ownerIds)) {
+                totals.put(row.getOwnerId(), row.getUnreadCount().longValue());
+            }
+        }
+        return totals;
+    }
+    
+    @Override
+    public long getReplayStartId(Long ownerId) {
+        return baseMapper.selectReplayStartId(ownerId);
+    }
+    
+    @Override
+    public List<Conversation> getUserConversations(Long ownerId, int limit) {
+        LambdaQueryWrapper<Conversation> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(Conversation::getOwnerId, ownerId)
+               .orderByDesc(Conversation::getLastMessageId)
+               .last("LIMIT " + limit);
+        return list(wrapper);
+    }
+}
@@ -0,0 +1,411 @@
+package com.xingyang.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.xingyang.cache.FollowGraphCache;
+import com.xingyang.entity.Post;
+import com.xingyang.entity.Relation;
+import com.xingyang.mapper.PostMapper;
+import com.xingyang.mapper.RelationMapper;
+import com.xingyang.service.FeedTimelineService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Service
+public class FeedTimelineServiceImpl implements FeedTimelineService {
+
+    private static final String TIMELINE_KEY_PREFIX = "feed:timeline:";
+    private static final String OUTBOX_KEY_PREFIX = "feed:outbox:";
+    private static final String PULL_KEY_PREFIX = "feed:pull:";
+    private static final String CELEBRITIES_KEY = "feed:celebrities";
+
+    /**
+     * 占位成员：保证空时间线/空拉取列表在 Redis 中也存在，避免每次读取都重建
+     */
+    private static final String PLACEHOLDER = "0";
+
+    private static final String PUBLIC = "public";
+
+    private static final int PUSH_BATCH_SIZE = 500;
+
+    /**
+     * 仅向已存在的时间线推送，并裁剪到最大长度；不存在的时间线在读取时再重建
+     */
+    private static final DefaultRedisScript<Long> PUSH_SCRIPT = new DefaultRedisScript<>(
+            "local pushed = 0\n" +
+            "for _, key in ipairs(KEYS) do\n" +
+            "  if redis.call('EXISTS', key) == 1 then\n" +
+            "    redis.call('ZADD', key, ARGV[1], ARGV[2])\n" +
+            "    redis.call('ZREMRANGEBYRANK', key, 0, -(tonumber(ARGV[3]) + 1))\n" +
+            "    pushed = pushed + 1\n" +
+            "  end\n" +
+            "end\n" +
+            "return pushed",
+            Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final PostMapper postMapper;
+    private final RelationMapper relationMapper;
+    private final FollowGraphCache followGraph;
+
+    @Value("${feed.fanout-threshold:1000}")
+    private long fanoutThreshold;
+
+    @Value("${feed.timeline-max-size:800}")
+    private int timelineMaxSize;
+
+    @Value("${feed.timeline-ttl-days:7}")
+    private long timelineTtlDays;
+
+    public FeedTimelineServiceImpl(StringRedisTemplate stringRedisTemplate,
+                                   PostMapper postMapper,
+                                   RelationMapper relationMapper,
+                                   FollowGraphCache followGraph) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.postMapper = postMapper;
+        this.relationMapper = relationMapper;
+        this.followGraph = followGraph;
+    }
+
+    @Override
+    public void onPostCreated(Post post) {
+        if (post == null || post.getId() == null || !isPublic(post)) {
+            return;
+        }
+
+        Long authorId = post.getUserId();
+        String score = String.valueOf(toScore(post.getCreateTime()));
+        String member = post.getId().toString();
+
+        long followersCount;
+        if (followGraph.isReady()) {
+            followersCount = followGraph.followerCount(authorId);
+        } else {
+            LambdaQueryWrapper<Relation> wrapper = new LambdaQueryWrapper<>();
+            wrapper.eq(Relation::getUserIdB, authorId)
+                   .eq(Relation::getDeleted, 0);
+            followersCount = relationMapper.selectCount(wrapper);
+        }
+
+        if (followersCount >= fanoutThreshold) {
+            // 大V：只写发件箱，粉丝读取时再拉取
+            Long added = stringRedisTemplate.opsForSet().add(CELEBRITIES_KEY, authorId.toString());
+            if (added != null && added > 0) {
+                // 刚成为大V，粉丝缓存的拉取列表需要重新计算
+                List<String> pullKeys = followerIds(authorId).stream()
+                        .map(this::pullKey)
+                        .collect(Collectors.toList());
+                for (int i = 0; i < pullKeys.size(); i += PUSH_BATCH_SIZE) {
+                    stringRedisTemplate.delete(pullKeys.subList(i, Math.min(i + PUSH_BATCH_SIZE, pullKeys.size())));
+                }
+            }
+            if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(outboxKey(authorId)))) {
+                loadOutbox(authorId);
+            } else {
+                push(List.of(outboxKey(authorId)), score, member);
+            }
+            push(List.of(timelineKey(authorId)), score, member);
+            return;
+        }
+
+        // 普通用户：写扩散到所有粉丝以及自己的时间线
+        List<String> keys = new ArrayList<>();
+        keys.add(timelineKey(authorId));
+        for (Long followerId : followerIds(authorId)) {
+            keys.add(timelineKey(followerId));
+        }
+        for (int i = 0; i < keys.size(); i += PUSH_BATCH_SIZE) {
+            push(keys.subList(i, Math.min(i + PUSH_BATCH_SIZE, keys.size())), score, member);
+        }
+    }
+
+    @Override
+    public void onPostDeleted(Post post) {
+        if (post == null || post.getId() == null) {
+            return;
+        }
+        // 粉丝时间线中的残留ID在读取时会被逻辑删除过滤掉
+        String member = post.getId().toString();
+        stringRedisTemplate.opsForZSet().remove(outboxKey(post.getUserId()), member);
+        stringRedisTemplate.opsForZSet().remove(timelineKey(post.getUserId()), member);
+    }
+
+    @Override
+    public void invalidateTimeline(Long userId) {
+        stringRedisTemplate.delete(List.of(timelineKey(userId), pullKey(userId)));
+    }
+
+    @Override
+    public Optional<List<Long>> getTimelinePostIds(Long userId, int page, int size) {
+        int safePage = Math.max(page, 1);
+        int safeSize = Math.max(size, 1);
+        long end = (long) safePage * safeSize;
+
+        List<String> sources = prepareSources(userId);
+        if (isTimelineEmpty(sources)) {
+            return Optional.empty();
+        }
+
+        List<TypedTuple<String>> candidates = new ArrayList<>();
+        for (String key : sources) {
+            Set<TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet().reverseRangeWithScores(key, 0, end - 1);
+            if (tuples != null) {
+                candidates.addAll(tuples);
+            }
+        }
+
+        List<Long> merged = merge(candidates, null, null);
+        int from = (int) Math.min((long) (safePage - 1) * safeSize, merged.size());
+        int to = (int) Math.min(end, merged.size());
+        return Optional.of(new ArrayList<>(merged.subList(from, to)));
+    }
+
+    @Override
+    public Optional<List<TimelineEntry>> getTimelineEntries(Long userId, LocalDateTime beforeTime, Long beforeId, int limit) {
+        List<String> sources = prepareSources(userId);
+        if (isTimelineEmpty(sources)) {
+            return Optional.empty();
+        }
+
+        double max = beforeTime != null ? toScore(beforeTime) : Double.POSITIVE_INFINITY;
+        List<TypedTuple<String>> candidates = new ArrayList<>();
+        for (String key : sources) {
+            // 同一分数的成员可能跨页，多取与游标同分的数量
+            long ties = 0;
+            if (beforeTime != null) {
+                Long count = stringRedisTemplate.opsForZSet().count(key, max, max);
+                ties = count != null ? count : 0;
+            }
+            Set<TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet()
+                    .reverseRangeByScoreWithScores(key, Double.NEGATIVE_INFINITY, max, 0, limit + ties);
+            if (tuples != null) {
+                candidates.addAll(tuples);
+            }
+        }
+
+        return Optional.of(mergeEntries(candidates, beforeTime != null ? max : null, beforeId).stream()
+                .limit(limit)
+                .map(e -> new TimelineEntry(e[1], toTime(e[0])))
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public void pruneTimeline(Long userId, Collection<Long> postIds) {
+        if (postIds.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.opsForZSet().remove(timelineKey(userId), postIds.stream().map(String::valueOf).toArray());
+    }
+
+    /**
+     * 确保时间线和大V发件箱已加载，返回本次读取需要合并的 key（第一个为用户时间线）
+     */
+    private List<String> prepareSources(Long userId) {
+        String timelineKey = timelineKey(userId);
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(timelineKey))) {
+            rebuildTimeline(userId);
+        }
+
+        List<String> sources = new ArrayList<>();
+        sources.add(timelineKey);
+        for (Long authorId : getPullAuthors(userId)) {
+            String outboxKey = outboxKey(authorId);
+            if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(outboxKey))) {
+                loadOutbox(authorId);
+            }
+            sources.add(outboxKey);
+        }
+
+        Duration ttl = Duration.ofDays(timelineTtlDays);
+        stringRedisTemplate.expire(timelineKey, ttl);
+        stringRedisTemplate.expire(pullKey(userId), ttl);
+        return sources;
+    }
+
+    /**
+     * 时间线只有占位成员且没有关注大V，视为没有内容
+     */
+    private boolean isTimelineEmpty(List<String> sources) {
+        if (sources.size() > 1) {
+            return false;
+        }
+        Long size = stringRedisTemplate.opsForZSet().zCard(sources.get(0));
+        return size == null || size <= 1;
+    }
+
+    /**
+     * 按 (分数, ID) 倒序合并去重，并过滤掉游标之前（含游标）的成员
+     */
+    private List<Long> merge(List<TypedTuple<String>> candidates, Double maxScore, Long beforeId) {
+        return mergeEntries(candidates, maxScore, beforeId).stream()
+                .map(e -> e[1])
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 合并后的 (分数, 帖子ID)，按分数、ID 倒序去重
+     */
+    private List<long[]> mergeEntries(List<TypedTuple<String>> candidates, Double maxScore, Long beforeId) {
+        Set<Long> seen = new HashSet<>();
+        Comparator<long[]> order = Comparator.<long[]>comparingLong(e -> e[0])
+                .thenComparingLong(e -> e[1])
+                .reversed();
+        return candidates.stream()
+                .filter(t -> t.getValue() != null && !PLACEHOLDER.equals(t.getValue()))
+                .map(t -> new long[]{t.getScore() != null ? t.getScore().longValue() : 0L, Long.parseLong(t.getValue())})
+                .filter(e -> maxScore == null || e[0] < maxScore
+                        || (e[0] == maxScore.longValue() && (beforeId == null || e[1] < beforeId)))
+                .sorted(order)
+                .filter(e -> seen.add(e[1]))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 冷启动：从关注关系和 MySQL 重建用户时间线
+     */
+    private void rebuildTimeline(Long userId) {
+        List<Long> followingIds = followingIds(userId);
+        Set<Long> celebrityIds = filterCelebrities(followingIds);
+
+        List<Long> authorIds = new ArrayList<>();
+        authorIds.add(userId);
+        followingIds.stream()
+                .filter(id -> !celebrityIds.contains(id))
+                .forEach(authorIds::add);
+
+        writeZSet(timelineKey(userId), loadRecentPublicPosts(authorIds));
+        writePullSet(userId, celebrityIds);
+    }
+
+    /**
+     * 获取需要读扩散的大V列表，缺失时重新计算
+     */
+    private Set<Long> getPullAuthors(Long userId) {
+        String pullKey = pullKey(userId);
+        Set<String> members = stringRedisTemplate.opsForSet().members(pullKey);
+        if (members == null || members.isEmpty()) {
+            Set<Long> celebrityIds = filterCelebrities(followingIds(userId));
+            writePullSet(userId, celebrityIds);
+            return celebrityIds;
+        }
+        return members.stream()
+                .filter(m -> !PLACEHOLDER.equals(m))
+                .map(Long::valueOf)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * 粉丝/关注列表优先读进程内邻接表，预热完成前查 MySQL
+     */
+    private List<Long> followerIds(Long userId) {
+        if (followGraph.isReady()) {
+            return Arrays.stream(followGraph.followers(userId)).boxed().collect(Collectors.toList());
+        }
+        return relationMapper.selectFollowerIds(userId);
+    }
+
+    private List<Long> followingIds(Long userId) {
+        if (followGraph.isReady()) {
+            return Arrays.stream(followGraph.following(userId)).boxed().collect(Collectors.toList());
+        }
+        return relationMapper.selectFollowingIds(userId);
+    }
+
+    private Set<Long> filterCelebrities(List<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Set.of();
+        }
+        Map<Object, Boolean> flags = stringRedisTemplate.opsForSet()
+                .isMember(CELEBRITIES_KEY, userIds.stream().map(String::valueOf).toArray());
+        if (flags == null) {
+            return Set.of();
+        }
+        return flags.entrySet().stream()
+                .filter(e -> Boolean.TRUE.equals(e.getValue()))
+                .map(e -> Long.valueOf(e.getKey().toString()))
+                .collect(Collectors.toSet());
+    }
+
+    private void writePullSet(Long userId, Set<Long> celebrityIds) {
+        String pullKey = pullKey(userId);
+        String[] members = celebrityIds.isEmpty()
+                ? new String[]{PLACEHOLDER}
+                : celebrityIds.stream().map(String::valueOf).toArray(String[]::new);
+        stringRedisTemplate.delete(pullKey);
+        stringRedisTemplate.opsForSet().add(pullKey, members);
+        stringRedisTemplate.expire(pullKey, Duration.ofDays(timelineTtlDays));
+    }
+
+    private void loadOutbox(Long authorId) {
+        writeZSet(outboxKey(authorId), loadRecentPublicPosts(List.of(authorId)));
+    }
+
+    private List<Post> loadRecentPublicPosts(List<Long> authorIds) {
+        LambdaQueryWrapper<Post> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(Post::getId, Post::getCreateTime)
+               .in(Post::getUserId, authorIds)
+               .and(w -> w.eq(Post::getVisibility, PUBLIC).or().isNull(Post::getVisibility))
+               .orderByDesc(Post::getCreateTime)
+               .last("LIMIT " + timelineMaxSize);
+        return postMapper.selectList(wrapper);
+    }
+
+    /**
+     * 先写临时 key 再 RENAME，读取方不会看到写了一半的集合
+     */
+    private void writeZSet(String key, List<Post> posts) {
+        Set<TypedTuple<String>> tuples = new HashSet<>();
+        tuples.add(new DefaultTypedTuple<>(PLACEHOLDER, 0D));
+        for (Post post : posts) {
+            tuples.add(new DefaultTypedTuple<>(post.getId().toString(), (double) toScore(post.getCreateTime())));
+        }
+
+        String tmpKey = key + ":tmp:" + UUID.randomUUID();
+        stringRedisTemplate.opsForZSet().add(tmpKey, tuples);
+        stringRedisTemplate.rename(tmpKey, key);
+        stringRedisTemplate.expire(key, Duration.ofDays(timelineTtlDays));
+    }
+
+    private void push(List<String> keys, String score, String member) {
+        stringRedisTemplate.execute(PUSH_SCRIPT, keys, score, member, String.valueOf(timelineMaxSize));
+    }
+
+    private boolean isPublic(Post post) {
+        return post.getVisibility() == null || PUBLIC.equals(post.getVisibility());
+    }
+
+    /**
+     * 分数精确到秒，与 MySQL datetime 列一致，便于和游标比较
+     */
+    private long toScore(LocalDateTime time) {
+        LocalDateTime t = (time != null ? time : LocalDateTime.now()).truncatedTo(ChronoUnit.SECONDS);
+        return t.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private LocalDateTime toTime(long score) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(score), ZoneId.systemDefault());
+    }
+
+    private String timelineKey(Long userId) {
+        return TIMELINE_KEY_PREFIX + userId;
+    }
+
+    private String outboxKey(Long userId) {
+        return OUTBOX_KEY_PREFIX + userId;
+    }
+
+    private String pullKey(Long userId) {
+        return PULL_KEY_PREFIX + userId;
+    }
+}
@@ -1,36 +1,120 @@
 package com.xingyang.service.impl;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.xingyang.chat.MessageIdGenerator;
+import com.xingyang.common.CursorPage;
 import com.xingyang.entity.Message;
 import com.xingyang.mapper.MessageMapper;
+import com.xingyang.service.ConversationService;
 import com.xingyang.service.MessageService;
+import com.xingyang.util.CursorUtil;
+import com.xingyang.websocket.ChatMessageRouter;
+import com.xingyang.websocket.protocol.ChatFrame;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
 
 @Service
 public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message> implements MessageService {
     
+    @Autowired
+    private ConversationService conversationService;
+    
+    @Autowired
+    private MessageIdGenerator messageIdGenerator;
+    
+    @Autowired
+    private ChatMessageRouter messageRouter;
+    
     @Override
     public List<Message> getUnreadMessages(Long userId) {
-        LambdaQueryWrapper<Message> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(Message::getReceiverId, userId)
-               .eq(Message::getIsRead, false)
-               .orderByDesc(Message::getCreateTime);
-        return list(wrapper);
+        return baseMapper.selectUnreadByReadCursor(userId);
     }
     
     @Override
     public List<Message> getChatHistory(Long userId1, Long userId2, int page, int size) {
-        LambdaQueryWrapper<Message> wrapper = new LambdaQueryWrapper<>();
-        wrapper.and(w -> w
-            .and(w1 -> w1.eq(Message::getSenderId, userId1).eq(Message::getReceiverId, userId2))
-            .or(w2 -> w2.eq(Message::getSenderId, userId2).eq(Message::getReceiverId, userId1))
-        ).orderByAsc(Message::getCreateTime);  // 改为升序，最早的消息在前
+        // 按ID升序即按时间升序（ID单调递增），最早的消息在前
+        long offset = (long) (Math.max(page, 1) - 1) * size;
+        return baseMapper.selectHistoryPage(Message.conversationKey(userId1, userId2), offset, size);
+    }
+    
+    @Override
+    public CursorPage<Message> getChatHistoryByCursor(Long userId1, Long userId2, String cursor, int size) {
+        CursorUtil.Cursor c = CursorUtil.decode(cursor);
+        int limit = CursorUtil.clampSize(size);
+        
+        // 从最新消息往前翻，游标指向本页最早的一条消息；ID单调递增，只按ID比较即可走索引
+        List<Message> rows = baseMapper.selectHistoryBefore(Message.conversationKey(userId1, userId2),
+                c != null ? c.id() : null, limit + 1);
+        CursorPage<Message> page = CursorPage.of(rows, limit,
+                m -> CursorUtil.encode(m.getCreateTime(), m.getId()));
         
-        Page<Message> pageResult = page(new Page<>(page, size), wrapper);
-        return pageResult.getRecords();
+        // 页内按时间升序返回，和 getChatHistory 保持一致
+        List<Message> messages = new ArrayList<>(page.getList());
+        Collections.reverse(messages);
+        page.setList(messages);
+        return page;
+    }
+    
+    @Override
+    public List<Message> getUndeliveredMessages(Long receiverId, Long afterId, int limit) {
+        return baseMapper.selectUndelivered(receiverId, afterId, limit);
+    }
+    
+    @Override
+    @Transactional
+    public void sendMessage(Message message) {
+        // 与 WebSocket 异步落库共用同一个ID序列；事务结束前这个ID登记为未落库，离线补发水位不会越过它
+        String pendingOwner = "rest:" + UUID.randomUUID();
+        message.setId(messageIdGenerator.nextId(pendingOwner));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    // 会话未读已累加，把新的私信未读总数推给接收方
+                    pushUnreadCount(message.getReceiverId());
+                }
+                
+                @Override
+                public void afterCompletion(int status) {
+                    messageIdGenerator.updatePending(pendingOwner, null);
+                }
+            });
+        }
+        message.setConversationKey(Message.conversationKey(message.getSenderId(), message.getReceiverId()));
+        save(message);
+        conversationService.recordMessage(message);
+    }
+    
+    @Override
+    public Long markConversationRead(Long userId, Long otherUserId, Long upToMessageId) {
+        // 不再逐行更新 is_read，已读状态由会话的已读位置推导
+        Long readUpTo = conversationService.markRead(userId, otherUserId, upToMessageId);
+        // 同步自己其他在线端的私信未读数，省掉客户端轮询
+        if (readUpTo != null) {
+            pushUnreadCount(userId);
+        }
+        return readUpTo;
+    }
+    
+    /**
+     * 推送失败只记日志：消息已经保存，不能让调用方以为发送失败
+     */
+    private void pushUnreadCount(Long userId) {
+        try {
+            if (messageRouter.isOnline(userId)) {
+                messageRouter.sendToUser(userId, new ChatFrame.UnreadCount(
+                        ChatFrame.UnreadCount.MESSAGE, conversationService.getTotalUnread(userId)));
+            }
+        } catch (Exception e) {
+            System.err.println("私信未读数推送失败: " + e.getMessage());
+        }
     }
 }
@@ -2,67 +2,229 @@ package com.xingyang.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.xingyang.cache.NotificationAggregateWindow;
+import com.xingyang.cache.NotificationUnreadCounter;
+import com.xingyang.common.CursorPage;
 import com.xingyang.entity.Notification;
 import com.xingyang.mapper.NotificationMapper;
 import com.xingyang.service.NotificationService;
+import com.xingyang.util.CursorUtil;
+import com.xingyang.websocket.ChatMessageRouter;
+import com.xingyang.websocket.protocol.ChatFrame;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class NotificationServiceImpl extends ServiceImpl<NotificationMapper, Notification> implements NotificationService {
     
+    /**
+     * 可聚合的通知类型，以及聚合后的文案（前面拼上人数）
+     */
+    private static final Map<String, String> AGGREGATE_SUFFIXES = Map.of(
+            "like", " 人点赞了你的动态",
+            "comment", " 人评论了你的动态",
+            "follow", " 人关注了你");
+    
+    @Autowired
+    private NotificationUnreadCounter unreadCounter;
+    
+    @Autowired
+    private NotificationAggregateWindow aggregateWindow;
+    
+    @Autowired
+    private ChatMessageRouter messageRouter;
+    
     @Override
     public void createNotification(Long userId, String type, String content, Long relatedId, Long senderId) {
+        createNotification(userId, type, content, relatedId, senderId != null ? List.of(senderId) : List.of());
+    }
+    
+    @Override
+    public void createNotification(Long userId, String type, String content, Long relatedId, List<Long> senderIds) {
+        Long senderId = senderIds.isEmpty() ? null : senderIds.get(senderIds.size() - 1);
+        // 窗口内同一接收者、类型、关联对象的通知合并为一条，人数按窗口内不同的触发者计
+        String suffix = AGGREGATE_SUFFIXES.get(type);
+        if (suffix != null) {
+            Long aggregateId = aggregateWindow.current(userId, type, relatedId);
+            if (aggregateId != null) {
+                List<Long> added = aggregateWindow.addActors(userId, type, relatedId, senderIds);
+                if (added != null) {
+                    // 事务回滚时把这次新计入的人移出集合，重试时还能重新计入
+                    onRollback(() -> aggregateWindow.removeActors(userId, type, relatedId, added));
+                    if (added.isEmpty()) {
+                        // 都是窗口内已计入的人（重复点赞、连续评论）；聚合的通知还未读时不改人数也不再推送
+                        if (lambdaQuery().eq(Notification::getId, aggregateId)
+                                .eq(Notification::getIsRead, false)
+                                .exists()) {
+                            return;
+                        }
+                    } else if (baseMapper.aggregate(aggregateId, senderId, suffix, added.size()) > 0) {
+                        // 未读数不变，只推送更新后的人数和文案
+                        afterCommit(() -> pushAggregated(userId, aggregateId));
+                        return;
+                    }
+                }
+            }
+        }
+        
+        int count = Math.max(senderIds.size(), 1);
         Notification notification = new Notification();
         notification.setUserId(userId);
         notification.setType(type);
-        notification.setContent(content);
+        notification.setContent(suffix != null && count > 1 ? count + suffix : content);
         notification.setRelatedId(relatedId);
         notification.setSenderId(senderId);
         notification.setIsRead(false);
+        notification.setAggregateCount(count);
         notification.setDeleted(0);
         
         save(notification);
+        
+        // 在调用方事务中创建时，提交后再打开聚合窗口、加计数，回滚就不会指向不存在的通知或多算
+        afterCommit(() -> {
+            if (suffix != null) {
+                openWindow(userId, type, relatedId, notification.getId(), senderIds);
+            }
+            long unread = unreadCounter.increment(userId, 1);
+            push(userId, notification, unread);
+        });
     }
     
     @Override
-    public List<Notification> getUserNotifications(Long userId) {
+    public List<Notification> getUserNotifications(Long userId, int limit) {
+        return getUserNotificationsByCursor(userId, null, limit).getList();
+    }
+    
+    @Override
+    public CursorPage<Notification> getUserNotificationsByCursor(Long userId, String cursor, int size) {
+        CursorUtil.Cursor c = CursorUtil.decode(cursor);
+        int limit = CursorUtil.clampSize(size);
+        
+        // ID 自增，顺序与创建时间一致；只按 ID 翻页可以直接走 idx_user（隐含主键）范围扫描，不用排序
         LambdaQueryWrapper<Notification> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(Notification::getUserId, userId)
-               .eq(Notification::getDeleted, 0)
-               .orderByDesc(Notification::getCreateTime);
+        wrapper.eq(Notification::getUserId, userId);
+        if (c != null) {
+            wrapper.lt(Notification::getId, c.id());
+        }
+        wrapper.orderByDesc(Notification::getId)
+               .last("LIMIT " + (limit + 1));
         
-        return list(wrapper);
+        return CursorPage.of(list(wrapper), limit, n -> CursorUtil.encode(n.getCreateTime(), n.getId()));
     }
     
     @Override
-    public void markAsRead(Long notificationId) {
-        Notification notification = getById(notificationId);
-        if (notification != null) {
-            notification.setIsRead(true);
-            updateById(notification);
+    public void markAsRead(Long userId, Long notificationId) {
+        if (baseMapper.markRead(userId, notificationId) > 0) {
+            long unread = unreadCounter.decrement(userId, 1);
+            pushUnreadCount(userId, unread);
         }
     }
     
     @Override
     public void markAllAsRead(Long userId) {
-        LambdaQueryWrapper<Notification> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(Notification::getUserId, userId)
-               .eq(Notification::getIsRead, false);
-        
-        List<Notification> notifications = list(wrapper);
-        notifications.forEach(n -> n.setIsRead(true));
-        updateBatchById(notifications);
+        baseMapper.markAllRead(userId);
+        // 不直接置 0：UPDATE 之后新到的通知还是未读，删掉计数让下次读取时重新统计
+        unreadCounter.reset(userId);
+        pushUnreadCount(userId, -1);
     }
     
     @Override
     public long getUnreadCount(Long userId) {
-        LambdaQueryWrapper<Notification> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(Notification::getUserId, userId)
-               .eq(Notification::getIsRead, false)
-               .eq(Notification::getDeleted, 0);
-        
-        return count(wrapper);
+        return unreadCounter.get(userId, () -> lambdaQuery()
+                .eq(Notification::getUserId, userId)
+                .eq(Notification::getIsRead, false)
+                .count());
+    }
+    
+    /**
+     * 推送给在线的接收者；不在线时不推送，上线后从通知列表和未读数接口获取
+     * unread 为 -1 表示计数器不存在，需要重新统计
+     */
+    private void push(Long userId, Notification notification, long unread) {
+        try {
+            if (!messageRouter.isOnline(userId)) {
+                return;
+            }
+            messageRouter.sendToUser(userId, new ChatFrame.Notify(
+                    notification.getId(),
+                    notification.getType(),
+                    notification.getContent(),
+                    notification.getRelatedId() != null ? notification.getRelatedId() : 0,
+                    notification.getSenderId() != null ? notification.getSenderId() : 0,
+                    notification.getAggregateCount(),
+                    unread >= 0 ? unread : getUnreadCount(userId)));
+        } catch (Exception e) {
+            System.err.println("通知推送失败: " + e.getMessage());
+        }
+    }
+    
+    private void pushAggregated(Long userId, Long notificationId) {
+        try {
+            if (!messageRouter.isOnline(userId)) {
+                return;
+            }
+            Notification notification = getById(notificationId);
+            if (notification != null) {
+                push(userId, notification, -1);
+            }
+        } catch (Exception e) {
+            System.err.println("通知推送失败: " + e.getMessage());
+        }
+    }
+    
+    private void pushUnreadCount(Long userId, long unread) {
+        try {
+            if (messageRouter.isOnline(userId)) {
+                messageRouter.sendToUser(userId, new ChatFrame.UnreadCount(
+                        ChatFrame.UnreadCount.NOTIFICATION, unread >= 0 ? unread : getUnreadCount(userId)));
+            }
+        } catch (Exception e) {
+            System.err.println("未读数推送失败: " + e.getMessage());
+        }
+    }
+    
+    private void openWindow(Long userId, String type, Long relatedId, Long notificationId, List<Long> senderIds) {
+        try {
+            aggregateWindow.open(userId, type, relatedId, notificationId, senderIds);
+        } catch (Exception e) {
+            // 窗口没打开只是少合并一次，下一条通知会新开窗口
+            System.err.println("打开通知聚合窗口失败: " + e.getMessage());
+        }
+    }
+    
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+    
+    private void onRollback(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_ROLLED_BACK) {
+                        return;
+                    }
+                    try {
+                        action.run();
+                    } catch (Exception e) {
+                        System.err.println("撤销通知聚合失败: " + e.getMessage());
+                    }
+                }
+            });
+        }
     }
 }
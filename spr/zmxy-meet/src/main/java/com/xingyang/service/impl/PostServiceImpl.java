@@ -3,181 +3,211 @@ package com.xingyang.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import com.xingyang.entity.Comment;
+import com.xingyang.cache.PostLikeStore;
+import com.xingyang.common.CursorPage;
 import com.xingyang.entity.Post;
-import com.xingyang.mapper.CommentMapper;
+import com.xingyang.event.DomainEvent;
+import com.xingyang.event.DomainEventBus;
 import com.xingyang.mapper.PostMapper;
-import com.xingyang.service.NotificationService;
+import com.xingyang.service.FeedTimelineService;
 import com.xingyang.service.PostService;
+import com.xingyang.service.UserStatsService;
+import com.xingyang.util.CursorUtil;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class PostServiceImpl extends ServiceImpl<PostMapper, Post> implements PostService {
     
-    private final RedisTemplate<String, Object> redisTemplate;
+    /**
+     * 游标翻页时为跳过已删除帖子最多读取时间线的轮数
+     */
+    private static final int TIMELINE_MAX_ROUNDS = 5;
+    
+    private final PostLikeStore postLikeStore;
+    
+    @Autowired
+    private DomainEventBus eventBus;
     
     @Autowired
-    private CommentMapper commentMapper;
+    private FeedTimelineService feedTimelineService;
     
     @Autowired
-    private NotificationService notificationService;
+    private UserStatsService userStatsService;
+    
+    public PostServiceImpl(PostLikeStore postLikeStore) {
+        this.postLikeStore = postLikeStore;
+    }
+    
+    @Override
+    @Transactional
+    public void publishPost(Post post) {
+        save(post);
+        userStatsService.adjust(post.getUserId(), 1, 0, 0);
+    }
+    
+    @Override
+    @Transactional
+    public boolean deletePost(Post post) {
+        if (!removeById(post.getId())) {
+            return false;
+        }
+        userStatsService.adjust(post.getUserId(), -1, 0, 0);
+        return true;
+    }
     
-    public PostServiceImpl(RedisTemplate<String, Object> redisTemplate) {
-        this.redisTemplate = redisTemplate;
+    @Override
+    public List<Post> getFeedPosts(Long userId, int page, int size) {
+        // 从 Redis 时间线读取关注用户的动态
+        Optional<List<Long>> timeline = feedTimelineService.getTimelinePostIds(userId, page, size);
+        if (timeline.isEmpty()) {
+            // 没有关注任何人也没发过动态，回退到公共动态
+            return getPublicPosts(page, size);
+        }
+        
+        // 评论数由评论增删时增量维护，这里不再逐条 COUNT
+        return listInOrder(timeline.get());
+    }
+    
+    @Override
+    public CursorPage<Post> getFeedPostsByCursor(Long userId, String cursor, int size) {
+        CursorUtil.Cursor c = CursorUtil.decode(cursor);
+        int limit = CursorUtil.clampSize(size);
+        
+        // 多取一条用于判断是否还有下一页
+        Optional<List<FeedTimelineService.TimelineEntry>> timeline = feedTimelineService.getTimelineEntries(
+                userId, c != null ? c.createTime() : null, c != null ? c.id() : null, limit + 1);
+        
+        if (timeline.isPresent()) {
+            return pageTimeline(userId, timeline.get(), limit);
+        }
+        
+        // 回退到公共动态，按 (create_time, id) 做 keyset 查询，不需要 COUNT
+        LambdaQueryWrapper<Post> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(Post::getVisibility, "public");
+        if (c != null) {
+            wrapper.and(w -> w.lt(Post::getCreateTime, c.createTime())
+                    .or(w2 -> w2.eq(Post::getCreateTime, c.createTime()).lt(Post::getId, c.id())));
+        }
+        wrapper.orderByDesc(Post::getCreateTime)
+               .orderByDesc(Post::getId)
+               .last("LIMIT " + (limit + 1));
+        List<Post> posts = list(wrapper);
+        
+        return CursorPage.of(posts, limit, p -> CursorUtil.encode(p.getCreateTime(), p.getId()));
     }
     
     /**
-     * 动态更新帖子的真实评论数
+     * 时间线里可能残留已删除帖子的ID：跳过它们继续往后读，直到凑满 limit + 1 条或时间线读完；
+     * 读了 TIMELINE_MAX_ROUNDS 轮还没凑满时，用最后读到的时间线位置作为下一页游标
      */
-    private void updateRealCommentsCount(Post post) {
-        if (post != null) {
-            LambdaQueryWrapper<Comment> wrapper = new LambdaQueryWrapper<>();
-            wrapper.eq(Comment::getPostId, post.getId())
-                   .eq(Comment::getDeleted, 0);
-            long count = commentMapper.selectCount(wrapper);
-            post.setCommentsCount((int) count);
+    private CursorPage<Post> pageTimeline(Long userId, List<FeedTimelineService.TimelineEntry> window, int limit) {
+        List<Post> posts = new ArrayList<>();
+        FeedTimelineService.TimelineEntry last = null;
+        boolean ended = false;
+        for (int round = 0; ; round++) {
+            List<Long> ids = window.stream().map(FeedTimelineService.TimelineEntry::postId).collect(Collectors.toList());
+            List<Post> live = listInOrder(ids);
+            if (live.size() < ids.size()) {
+                Set<Long> liveIds = live.stream().map(Post::getId).collect(Collectors.toSet());
+                feedTimelineService.pruneTimeline(userId, ids.stream()
+                        .filter(id -> !liveIds.contains(id))
+                        .collect(Collectors.toList()));
+            }
+            posts.addAll(live);
+            if (window.size() < limit + 1) {
+                ended = true;
+                break;
+            }
+            last = window.get(window.size() - 1);
+            if (posts.size() > limit || round + 1 >= TIMELINE_MAX_ROUNDS) {
+                break;
+            }
+            window = feedTimelineService.getTimelineEntries(userId, last.createTime(), last.postId(), limit + 1)
+                    .orElse(List.of());
         }
+        
+        if (posts.size() > limit || ended) {
+            return CursorPage.of(posts, limit, p -> CursorUtil.encode(p.getCreateTime(), p.getId()));
+        }
+        CursorPage<Post> page = new CursorPage<>();
+        page.setList(posts);
+        page.setHasMore(true);
+        page.setNextCursor(CursorUtil.encode(last.createTime(), last.postId()));
+        return page;
     }
     
     /**
-     * 批量更新帖子的真实评论数
+     * 按给定ID顺序批量查询帖子，已删除的帖子会被过滤掉
      */
-    private void updateRealCommentsCount(List<Post> posts) {
-        if (posts != null) {
-            posts.forEach(this::updateRealCommentsCount);
+    private List<Post> listInOrder(List<Long> postIds) {
+        if (postIds.isEmpty()) {
+            return List.of();
         }
+        Map<Long, Post> postMap = listByIds(postIds).stream()
+                .collect(Collectors.toMap(Post::getId, Function.identity()));
+        return postIds.stream()
+                .map(postMap::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
     
-    @Override
-    public List<Post> getFeedPosts(Long userId, int page, int size) {
-        // TODO: 实现更复杂的 Feed 流算法（关注用户、圈子动态、推荐等）
+    /**
+     * 公共动态（按发布时间倒序）
+     */
+    private List<Post> getPublicPosts(int page, int size) {
         LambdaQueryWrapper<Post> wrapper = new LambdaQueryWrapper<>();
         wrapper.eq(Post::getVisibility, "public")
                .orderByDesc(Post::getCreateTime);
         
         Page<Post> pageResult = page(new Page<>(page, size), wrapper);
-        List<Post> posts = pageResult.getRecords();
-        
-        // 动态统计每个帖子的真实评论数
-        updateRealCommentsCount(posts);
-        
-        return posts;
-    }
-    
-    @Override
-    public Post getById(java.io.Serializable id) {
-        Post post = super.getById(id);
-        
-        // 动态统计真实评论数
-        updateRealCommentsCount(post);
-        
-        return post;
+        return pageResult.getRecords();
     }
     
     @Override
     public void likePost(Long postId, Long userId) {
-        String key = "post:like:" + postId + ":" + userId;
-        
-        // 检查是否已点赞
-        if (Boolean.TRUE.equals(redisTemplate.hasKey(key))) {
+        // 不存在或已删除的动态不记点赞，也不产生通知；只按主键判断存在，不加载正文
+        if (!lambdaQuery().eq(Post::getId, postId).exists()) {
             return;
         }
         
-        // 记录点赞
-        redisTemplate.opsForValue().set(key, "1");
-        
-        // 增加点赞数
-        Post post = getById(postId);
-        if (post != null) {
-            post.setLikesCount(post.getLikesCount() + 1);
-            updateById(post);
-            
-            // 创建通知（不通知自己）
-            if (!post.getUserId().equals(userId)) {
-                notificationService.createNotification(
-                    post.getUserId(),
-                    "like",
-                    "有人点赞了你的动态",
-                    postId,
-                    userId
-                );
-            }
+        // 点赞集合、用户点赞索引和计数增量在一个 Lua 脚本中原子更新，点赞数由定时任务批量写回
+        if (!postLikeStore.like(postId, userId)) {
+            return;
         }
+        
+        // 通知由事件处理器异步生成，不占用请求线程
+        eventBus.publish(new DomainEvent.PostLiked(postId, userId, System.currentTimeMillis()));
     }
     
     @Override
     public void unlikePost(Long postId, Long userId) {
-        String key = "post:like:" + postId + ":" + userId;
-        
-        // 检查是否已点赞
-        if (Boolean.FALSE.equals(redisTemplate.hasKey(key))) {
-            return;
-        }
-        
-        // 删除点赞记录
-        redisTemplate.delete(key);
-        
-        // 减少点赞数
-        Post post = getById(postId);
-        if (post != null && post.getLikesCount() > 0) {
-            post.setLikesCount(post.getLikesCount() - 1);
-            updateById(post);
-        }
+        postLikeStore.unlike(postId, userId);
     }
     
     @Override
     public boolean isLiked(Long postId, Long userId) {
-        String key = "post:like:" + postId + ":" + userId;
-        return Boolean.TRUE.equals(redisTemplate.hasKey(key));
+        return postLikeStore.isLiked(postId, userId);
     }
     
     @Override
-    public List<Post> getUserLikedPosts(Long userId) {
-        // 从Redis中获取用户点赞的所有帖子ID
-        String pattern = "post:like:*:" + userId;
-        var keys = redisTemplate.keys(pattern);
-        
-        if (keys == null || keys.isEmpty()) {
-            return List.of();
-        }
-        
-        // 提取帖子ID
-        List<Long> postIds = keys.stream()
-                .map(key -> {
-                    String keyStr = key.toString();
-                    // key格式: post:like:{postId}:{userId}
-                    String[] parts = keyStr.split(":");
-                    if (parts.length >= 3) {
-                        return Long.parseLong(parts[2]);
-                    }
-                    return null;
-                })
-                .filter(id -> id != null)
-                .toList();
-        
-        if (postIds.isEmpty()) {
-            return List.of();
-        }
-        
-        // 批量查询帖子
-        List<Post> posts = listByIds(postIds);
-        
-        // 更新评论数
-        updateRealCommentsCount(posts);
-        
-        // 按点赞时间排序（最新点赞的在前）
-        posts.sort((p1, p2) -> {
-            // 由于Redis没有存储点赞时间，这里按帖子创建时间降序排列
-            if (p1.getCreateTime() == null || p2.getCreateTime() == null) {
-                return 0;
-            }
-            return p2.getCreateTime().compareTo(p1.getCreateTime());
-        });
-        
-        return posts;
+    public List<Post> getUserLikedPosts(Long userId, int page, int size) {
+        // 从用户点赞索引（按点赞时间排序的 ZSET）中读取一页帖子ID
+        int safePage = Math.max(page, 1);
+        int safeSize = CursorUtil.clampSize(size);
+        List<Long> postIds = postLikeStore.getLikedPostIds(userId, (long) (safePage - 1) * safeSize, safeSize);
+        
+        // 批量查询帖子，保持点赞时间顺序（最新点赞的在前）
+        return listInOrder(postIds);
     }
 }
@@ -0,0 +1,386 @@
+package com.xingyang.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.xingyang.cache.FollowGraphCache;
+import com.xingyang.dto.UserDTO;
+import com.xingyang.entity.CircleMember;
+import com.xingyang.entity.User;
+import com.xingyang.mapper.CircleMemberMapper;
+import com.xingyang.mapper.UserMapper;
+import com.xingyang.service.RecommendationService;
+import com.xingyang.service.UserService;
+import com.xingyang.util.LongHashSet;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+@Service
+public class RecommendationServiceImpl implements RecommendationService {
+
+    private static final String KEY_PREFIX = "recommend:user:";
+    private static final String DIRTY_KEY = "recommend:dirty";
+
+    /**
+     * 占位成员：没有候选人的用户也写一个有序集合，避免每次读取都现算
+     */
+    private static final String PLACEHOLDER = "0";
+
+    /**
+     * fork/join 拆分到每个子任务不超过这么多用户时直接计算
+     */
+    private static final int LEAF_SIZE = 256;
+
+    /**
+     * 校区和圈子成员快照，全量任务时重新加载；圈子ID数组已排序，便于求交集
+     */
+    private record Profiles(Map<Long, String> campus, Map<Long, long[]> circles) {
+    }
+
+    private record Candidate(long userId, double score) {
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final FollowGraphCache followGraph;
+    private final UserMapper userMapper;
+    private final CircleMemberMapper circleMemberMapper;
+    private final UserService userService;
+    private final ForkJoinPool pool;
+    private final int topK;
+    private final int maxFanout;
+    private final int dirtyBatchSize;
+    private final double mutualWeight;
+    private final double circleWeight;
+    private final double campusWeight;
+    private final Duration ttl;
+
+    private volatile Profiles profiles;
+
+    public RecommendationServiceImpl(StringRedisTemplate stringRedisTemplate,
+                                     FollowGraphCache followGraph,
+                                     UserMapper userMapper,
+                                     CircleMemberMapper circleMemberMapper,
+                                     UserService userService,
+                                     @Value("${recommend.parallelism:4}") int parallelism,
+                                     @Value("${recommend.top-k:50}") int topK,
+                                     @Value("${recommend.max-fanout:1000}") int maxFanout,
+                                     @Value("${recommend.dirty-batch-size:1000}") int dirtyBatchSize,
+                                     @Value("${recommend.weight.mutual:1.0}") double mutualWeight,
+                                     @Value("${recommend.weight.circle:0.5}") double circleWeight,
+                                     @Value("${recommend.weight.campus:0.3}") double campusWeight,
+                                     @Value("${recommend.ttl-hours:48}") long ttlHours) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.followGraph = followGraph;
+        this.userMapper = userMapper;
+        this.circleMemberMapper = circleMemberMapper;
+        this.userService = userService;
+        this.pool = new ForkJoinPool(parallelism);
+        this.topK = topK;
+        this.maxFanout = maxFanout;
+        this.dirtyBatchSize = dirtyBatchSize;
+        this.mutualWeight = mutualWeight;
+        this.circleWeight = circleWeight;
+        this.campusWeight = campusWeight;
+        this.ttl = Duration.ofHours(ttlHours);
+    }
+
+    @Override
+    public List<UserDTO> getRecommendations(Long userId, int size) {
+        int limit = Math.max(1, Math.min(size, topK));
+
+        // 没有关注任何人（包括不存在的用户）就没有二度关系，不计算也不写缓存
+        if (followGraph.isReady() && followGraph.followingCount(userId) == 0) {
+            return List.of();
+        }
+
+        Set<String> members = stringRedisTemplate.opsForZSet().reverseRange(key(userId), 0, topK - 1);
+        if (members == null || members.isEmpty()) {
+            if (!followGraph.isReady()) {
+                return List.of();
+            }
+            List<Candidate> ranked = rank(userId, profiles());
+            write(userId, ranked);
+            members = new LinkedHashSet<>();
+            for (Candidate candidate : ranked) {
+                members.add(String.valueOf(candidate.userId()));
+            }
+        }
+
+        List<Long> ids = new ArrayList<>(limit);
+        for (String member : members) {
+            if (PLACEHOLDER.equals(member)) {
+                continue;
+            }
+            long id = Long.parseLong(member);
+            // 算好之后才关注的人不再推荐
+            if (followGraph.isReady() && followGraph.isFollowing(userId, id)) {
+                continue;
+            }
+            ids.add(id);
+            if (ids.size() >= limit) {
+                break;
+            }
+        }
+
+        Map<Long, User> userMap = userService.getUserMap(ids);
+        List<UserDTO> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            User user = userMap.get(id);
+            if (user != null && user.getDeleted() == 0) {
+                result.add(UserDTO.fromEntity(user));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void markDirty(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addDirty(userId);
+                }
+            });
+        } else {
+            addDirty(userId);
+        }
+    }
+
+    /**
+     * userId 的关注列表变了，它自己和它的粉丝（二度候选来自 userId 的关注）都要重算；
+     * 粉丝最多取 max-fanout 个，其余等全量任务
+     */
+    private void addDirty(long userId) {
+        long[] followers = followGraph.followers(userId);
+        int n = Math.min(followers.length, maxFanout);
+        String[] members = new String[n + 1];
+        members[0] = String.valueOf(userId);
+        for (int i = 0; i < n; i++) {
+            members[i + 1] = String.valueOf(followers[i]);
+        }
+        try {
+            stringRedisTemplate.opsForSet().add(DIRTY_KEY, members);
+        } catch (Exception e) {
+            System.err.println("标记推荐待重算失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public int refreshDirty() {
+        if (!followGraph.isReady()) {
+            return 0;
+        }
+        int total = 0;
+        List<String> popped;
+        while ((popped = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, dirtyBatchSize)) != null && !popped.isEmpty()) {
+            long[] userIds = popped.stream().mapToLong(Long::parseLong).toArray();
+            total += pool.invoke(new RefreshTask(userIds, 0, userIds.length, profiles()));
+        }
+        if (total > 0) {
+            System.out.println("推荐增量计算完成: " + total + " 人");
+        }
+        return total;
+    }
+
+    @Override
+    public int refreshAll() {
+        if (!followGraph.isReady()) {
+            System.out.println("关注关系邻接表未加载，跳过推荐全量计算");
+            return 0;
+        }
+        long start = System.currentTimeMillis();
+        Profiles snapshot = loadProfiles();
+        profiles = snapshot;
+        long[] userIds = followGraph.users();
+        int total = pool.invoke(new RefreshTask(userIds, 0, userIds.length, snapshot));
+        System.out.println("推荐全量计算完成: " + total + " 人, 耗时 " + (System.currentTimeMillis() - start) + "ms");
+        return total;
+    }
+
+    /**
+     * 二度关系打分取前 K 名：关注的人所关注的、自己还没关注的人，
+     * 共同关注数 * mutual + 共同圈子数 * circle + 同校区 campus
+     */
+    private List<Candidate> rank(long userId, Profiles profiles) {
+        long[] following = followGraph.following(userId);
+        if (following.length == 0) {
+            return List.of();
+        }
+        LongHashSet followed = new LongHashSet(following.length);
+        for (long id : following) {
+            followed.add(id);
+        }
+
+        Map<Long, Integer> mutual = new HashMap<>();
+        for (long id : following) {
+            long[] second = followGraph.following(id);
+            // 关注了大量账号的人贡献有限，只看前 max-fanout 个，避免单个用户拖慢整批
+            int n = Math.min(second.length, maxFanout);
+            for (int i = 0; i < n; i++) {
+                long candidate = second[i];
+                if (candidate != userId && !followed.contains(candidate)) {
+                    mutual.merge(candidate, 1, Integer::sum);
+                }
+            }
+        }
+
+        String campus = profiles.campus().get(userId);
+        long[] circles = profiles.circles().get(userId);
+        PriorityQueue<Candidate> heap = new PriorityQueue<>(topK + 1, Comparator.comparingDouble(Candidate::score));
+        for (Map.Entry<Long, Integer> entry : mutual.entrySet()) {
+            long candidate = entry.getKey();
+            double score = entry.getValue() * mutualWeight
+                    + sharedCount(circles, profiles.circles().get(candidate)) * circleWeight
+                    + (campus != null && campus.equals(profiles.campus().get(candidate)) ? campusWeight : 0);
+            if (heap.size() < topK) {
+                heap.add(new Candidate(candidate, score));
+            } else if (score > heap.peek().score()) {
+                heap.poll();
+                heap.add(new Candidate(candidate, score));
+            }
+        }
+
+        List<Candidate> ranked = new ArrayList<>(heap);
+        ranked.sort(Comparator.comparingDouble(Candidate::score).reversed());
+        return ranked;
+    }
+
+    /**
+     * 两个已排序数组的交集大小
+     */
+    private static int sharedCount(long[] a, long[] b) {
+        if (a == null || b == null) {
+            return 0;
+        }
+        int i = 0;
+        int j = 0;
+        int shared = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return shared;
+    }
+
+    private void write(long userId, List<Candidate> ranked) {
+        Set<TypedTuple<String>> tuples = new HashSet<>();
+        tuples.add(new DefaultTypedTuple<>(PLACEHOLDER, 0D));
+        for (Candidate candidate : ranked) {
+            tuples.add(new DefaultTypedTuple<>(String.valueOf(candidate.userId()), candidate.score()));
+        }
+
+        String key = key(userId);
+        String tmpKey = key + ":tmp:" + UUID.randomUUID();
+        stringRedisTemplate.opsForZSet().add(tmpKey, tuples);
+        stringRedisTemplate.rename(tmpKey, key);
+        stringRedisTemplate.expire(key, ttl);
+    }
+
+    private Profiles profiles() {
+        Profiles snapshot = profiles;
+        if (snapshot == null) {
+            synchronized (this) {
+                if (profiles == null) {
+                    profiles = loadProfiles();
+                }
+                snapshot = profiles;
+            }
+        }
+        return snapshot;
+    }
+
+    private Profiles loadProfiles() {
+        Map<Long, String> campus = new HashMap<>();
+        LambdaQueryWrapper<User> userQuery = new LambdaQueryWrapper<>();
+        userQuery.select(User::getId, User::getCampus)
+                 .isNotNull(User::getCampus);
+        for (User user : userMapper.selectList(userQuery)) {
+            if (!user.getCampus().isBlank()) {
+                campus.put(user.getId(), user.getCampus());
+            }
+        }
+
+        Map<Long, List<Long>> grouped = new HashMap<>();
+        LambdaQueryWrapper<CircleMember> memberQuery = new LambdaQueryWrapper<>();
+        memberQuery.select(CircleMember::getUserId, CircleMember::getCircleId);
+        for (CircleMember member : circleMemberMapper.selectList(memberQuery)) {
+            grouped.computeIfAbsent(member.getUserId(), id -> new ArrayList<>()).add(member.getCircleId());
+        }
+        Map<Long, long[]> circles = new HashMap<>(grouped.size() * 2);
+        grouped.forEach((userId, circleIds) -> {
+            long[] sorted = circleIds.stream().mapToLong(Long::longValue).sorted().toArray();
+            circles.put(userId, sorted);
+        });
+        return new Profiles(campus, circles);
+    }
+
+    private String key(long userId) {
+        return KEY_PREFIX + userId;
+    }
+
+    /**
+     * 把用户ID数组对半拆分并行计算，返回成功写入的人数
+     */
+    private final class RefreshTask extends RecursiveTask<Integer> {
+
+        private final long[] userIds;
+        private final int from;
+        private final int to;
+        private final Profiles snapshot;
+
+        RefreshTask(long[] userIds, int from, int to, Profiles snapshot) {
+            this.userIds = userIds;
+            this.from = from;
+            this.to = to;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from <= LEAF_SIZE) {
+                int done = 0;
+                for (int i = from; i < to; i++) {
+                    try {
+                        if (followGraph.followingCount(userIds[i]) == 0) {
+                            // 取关了所有人：删掉旧推荐，读取时也不会再算
+                            stringRedisTemplate.delete(key(userIds[i]));
+                            continue;
+                        }
+                        write(userIds[i], rank(userIds[i], snapshot));
+                        done++;
+                    } catch (Exception e) {
+                        System.err.println("推荐计算失败: userId=" + userIds[i] + ", " + e.getMessage());
+                    }
+                }
+                return done;
+            }
+            int mid = (from + to) >>> 1;
+            RefreshTask left = new RefreshTask(userIds, from, mid, snapshot);
+            left.fork();
+            int right = new RefreshTask(userIds, mid, to, snapshot).compute();
+            return left.join() + right;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
@@ -1,31 +1,56 @@
 package com.xingyang.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.xingyang.cache.FollowGraphCache;
+import com.xingyang.common.CursorPage;
 import com.xingyang.dto.UserDTO;
 import com.xingyang.entity.Relation;
 import com.xingyang.entity.User;
+import com.xingyang.event.DomainEvent;
+import com.xingyang.event.DomainEventBus;
 import com.xingyang.mapper.RelationMapper;
-import com.xingyang.service.NotificationService;
+import com.xingyang.service.FeedTimelineService;
+import com.xingyang.service.RecommendationService;
 import com.xingyang.service.RelationService;
 import com.xingyang.service.UserService;
+import com.xingyang.service.UserStatsService;
+import com.xingyang.util.CursorUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 public class RelationServiceImpl extends ServiceImpl<RelationMapper, Relation> implements RelationService {
     
     @Autowired
-    private NotificationService notificationService;
+    private DomainEventBus eventBus;
     
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private FeedTimelineService feedTimelineService;
+    
+    @Autowired
+    private FollowGraphCache followGraph;
+    
+    @Autowired
+    private UserStatsService userStatsService;
+    
+    @Autowired
+    private RecommendationService recommendationService;
+    
     @Override
+    @Transactional
     public void followUser(Long followerId, Long followedId) {
         // 检查是否已经关注
         if (isFollowing(followerId, followedId)) {
@@ -39,29 +64,52 @@ public class RelationServiceImpl extends ServiceImpl<RelationMapper, Relation> i
         relation.setDeleted(0);
         
         save(relation);
+        adjustFollowStats(followerId, followedId, 1);
+        followGraph.onFollow(followerId, followedId);
+        
+        // 关注列表变化，时间线下次读取时重建，推荐等增量任务重算
+        feedTimelineService.invalidateTimeline(followerId);
+        recommendationService.markDirty(followerId);
         
-        // 创建通知
-        notificationService.createNotification(
-            followedId,
-            "follow",
-            "有人关注了你",
-            null,
-            followerId
-        );
+        // 通知由事件处理器异步生成
+        eventBus.publish(new DomainEvent.UserFollowed(followerId, followedId, System.currentTimeMillis()));
     }
     
     @Override
+    @Transactional
     public void unfollowUser(Long followerId, Long followedId) {
         LambdaQueryWrapper<Relation> wrapper = new LambdaQueryWrapper<>();
         wrapper.eq(Relation::getUserIdA, followerId)
                .eq(Relation::getUserIdB, followedId)
                .eq(Relation::getDeleted, 0);
         
-        remove(wrapper);
+        if (remove(wrapper)) {
+            adjustFollowStats(followerId, followedId, -1);
+            followGraph.onUnfollow(followerId, followedId);
+        }
+        
+        feedTimelineService.invalidateTimeline(followerId);
+        recommendationService.markDirty(followerId);
+    }
+    
+    /**
+     * 两行计数按 userId 升序更新：A 关注 B 和 B 关注 A 同时发生时以相同顺序加行锁，不会互相等待死锁
+     */
+    private void adjustFollowStats(Long followerId, Long followedId, int delta) {
+        if (followerId < followedId) {
+            userStatsService.adjust(followerId, 0, 0, delta);
+            userStatsService.adjust(followedId, 0, delta, 0);
+        } else {
+            userStatsService.adjust(followedId, 0, delta, 0);
+            userStatsService.adjust(followerId, 0, 0, delta);
+        }
     }
     
     @Override
     public boolean isFollowing(Long followerId, Long followedId) {
+        if (followGraph.isReady()) {
+            return followGraph.isFollowing(followerId, followedId);
+        }
         LambdaQueryWrapper<Relation> wrapper = new LambdaQueryWrapper<>();
         wrapper.eq(Relation::getUserIdA, followerId)
                .eq(Relation::getUserIdB, followedId)
@@ -73,6 +121,9 @@ public class RelationServiceImpl extends ServiceImpl<RelationMapper, Relation> i
     @Override
     public long getFollowersCount(Long userId) {
         // 获取关注该用户的人数（粉丝数）
+        if (followGraph.isReady()) {
+            return followGraph.followerCount(userId);
+        }
         LambdaQueryWrapper<Relation> wrapper = new LambdaQueryWrapper<>();
         wrapper.eq(Relation::getUserIdB, userId)
                .eq(Relation::getDeleted, 0);
@@ -83,6 +134,9 @@ public class RelationServiceImpl extends ServiceImpl<RelationMapper, Relation> i
     @Override
     public long getFollowingCount(Long userId) {
         // 获取该用户关注的人数（关注数）
+        if (followGraph.isReady()) {
+            return followGraph.followingCount(userId);
+        }
         LambdaQueryWrapper<Relation> wrapper = new LambdaQueryWrapper<>();
         wrapper.eq(Relation::getUserIdA, userId)
                .eq(Relation::getDeleted, 0);
@@ -97,17 +151,11 @@ public class RelationServiceImpl extends ServiceImpl<RelationMapper, Relation> i
         wrapper.eq(Relation::getUserIdA, userId)
                .eq(Relation::getDeleted, 0);
         
-        List<Relation> relations = list(wrapper);
+        List<Long> userIds = list(wrapper).stream()
+                .map(Relation::getUserIdB)
+                .collect(Collectors.toList());
         
-        List<UserDTO> userList = new ArrayList<>();
-        for (Relation relation : relations) {
-            User user = userService.getById(relation.getUserIdB());
-            if (user != null && user.getDeleted() == 0) {
-                userList.add(UserDTO.fromEntity(user));
-            }
-        }
-        
-        return userList;
+        return toUserDTOs(userIds);
     }
     
     @Override
@@ -117,16 +165,101 @@ public class RelationServiceImpl extends ServiceImpl<RelationMapper, Relation> i
         wrapper.eq(Relation::getUserIdB, userId)
                .eq(Relation::getDeleted, 0);
         
-        List<Relation> relations = list(wrapper);
+        List<Long> userIds = list(wrapper).stream()
+                .map(Relation::getUserIdA)
+                .collect(Collectors.toList());
+        
+        return toUserDTOs(userIds);
+    }
+    
+    @Override
+    public CursorPage<UserDTO> getFollowingPage(Long userId, Long viewerId, String cursor, int size) {
+        return pageRelations(Relation::getUserIdA, Relation::getUserIdB, userId, viewerId, cursor, size);
+    }
+    
+    @Override
+    public CursorPage<UserDTO> getFollowersPage(Long userId, Long viewerId, String cursor, int size) {
+        return pageRelations(Relation::getUserIdB, Relation::getUserIdA, userId, viewerId, cursor, size);
+    }
+    
+    /**
+     * 按关系ID倒序（即关注时间倒序）翻页，走 idx_user_a / idx_user_b（隐含主键）范围扫描；
+     * 整页用户一次批量查询，是否已关注也按整页一次判断
+     */
+    private CursorPage<UserDTO> pageRelations(SFunction<Relation, Long> ownerColumn,
+                                              SFunction<Relation, Long> peerColumn,
+                                              Long userId, Long viewerId, String cursor, int size) {
+        CursorUtil.Cursor c = CursorUtil.decode(cursor);
+        int limit = CursorUtil.clampSize(size);
+        
+        LambdaQueryWrapper<Relation> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(Relation::getId, ownerColumn, peerColumn, Relation::getCreateTime)
+               .eq(ownerColumn, userId)
+               .eq(Relation::getDeleted, 0);
+        if (c != null) {
+            wrapper.lt(Relation::getId, c.id());
+        }
+        wrapper.orderByDesc(Relation::getId)
+               .last("LIMIT " + (limit + 1));
+        
+        CursorPage<Relation> relations = CursorPage.of(list(wrapper), limit,
+                r -> CursorUtil.encode(r.getCreateTime(), r.getId()));
+        List<Long> peerIds = relations.getList().stream()
+                .map(peerColumn)
+                .collect(Collectors.toList());
+        
+        List<UserDTO> users = toUserDTOs(peerIds);
+        Set<Long> followed = followedAmong(viewerId, peerIds);
+        for (UserDTO user : users) {
+            user.setFollowedByMe(followed.contains(user.getId()));
+        }
+        
+        CursorPage<UserDTO> page = new CursorPage<>();
+        page.setList(users);
+        page.setHasMore(relations.getHasMore());
+        page.setNextCursor(relations.getNextCursor());
+        return page;
+    }
+    
+    /**
+     * viewerId 关注了 userIds 中的哪些人：邻接表已加载时直接查内存，否则一次 IN 查询
+     */
+    private Set<Long> followedAmong(Long viewerId, List<Long> userIds) {
+        if (viewerId == null || userIds.isEmpty()) {
+            return Set.of();
+        }
+        if (followGraph.isReady()) {
+            Set<Long> followed = new HashSet<>();
+            for (Long id : userIds) {
+                if (followGraph.isFollowing(viewerId, id)) {
+                    followed.add(id);
+                }
+            }
+            return followed;
+        }
+        LambdaQueryWrapper<Relation> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(Relation::getUserIdB)
+               .eq(Relation::getUserIdA, viewerId)
+               .in(Relation::getUserIdB, userIds)
+               .eq(Relation::getDeleted, 0);
+        return list(wrapper).stream()
+                .map(Relation::getUserIdB)
+                .collect(Collectors.toSet());
+    }
+    
+    /**
+     * 按给定顺序批量组装用户信息，已注销的用户会被过滤掉
+     */
+    private List<UserDTO> toUserDTOs(List<Long> userIds) {
+        Map<Long, User> userMap = userService.getUserMap(userIds);
         
         List<UserDTO> userList = new ArrayList<>();
-        for (Relation relation : relations) {
-            User user = userService.getById(relation.getUserIdA());
+        for (Long id : userIds) {
+            User user = userMap.get(id);
             if (user != null && user.getDeleted() == 0) {
                 userList.add(UserDTO.fromEntity(user));
             }
         }
-        
         return userList;
     }
 }
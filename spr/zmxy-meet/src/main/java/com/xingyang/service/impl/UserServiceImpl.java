@@ -2,14 +2,48 @@ package com.xingyang.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.xingyang.cache.UserProfileCache;
 import com.xingyang.entity.User;
 import com.xingyang.mapper.UserMapper;
 import com.xingyang.service.UserService;
 import org.springframework.stereotype.Service;
 
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 @Service
 public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements UserService {
     
+    private final UserProfileCache userProfileCache;
+    
+    public UserServiceImpl(UserProfileCache userProfileCache) {
+        this.userProfileCache = userProfileCache;
+    }
+    
+    /**
+     * 按 ID 查询走两级缓存
+     */
+    @Override
+    public User getById(Serializable id) {
+        return userProfileCache.get(Long.valueOf(id.toString()));
+    }
+    
+    @Override
+    public boolean updateById(User entity) {
+        boolean updated = super.updateById(entity);
+        userProfileCache.invalidate(entity.getId());
+        return updated;
+    }
+    
+    @Override
+    public boolean removeById(Serializable id) {
+        boolean removed = super.removeById(id);
+        userProfileCache.invalidate(Long.valueOf(id.toString()));
+        return removed;
+    }
+    
     @Override
     public User findByUsername(String username) {
         LambdaQueryWrapper<User> wrapper = new LambdaQueryWrapper<>();
@@ -23,4 +57,12 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         wrapper.eq(User::getEmail, email);
         return getOne(wrapper);
     }
+    
+    @Override
+    public Map<Long, User> getUserMap(Collection<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        return userProfileCache.getAll(userIds);
+    }
 }
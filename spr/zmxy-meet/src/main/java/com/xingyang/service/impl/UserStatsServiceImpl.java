@@ -0,0 +1,109 @@
+package com.xingyang.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.xingyang.cache.UserStatsCache;
+import com.xingyang.entity.User;
+import com.xingyang.entity.UserStats;
+import com.xingyang.mapper.UserMapper;
+import com.xingyang.mapper.UserStatsMapper;
+import com.xingyang.service.UserStatsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+@Service
+public class UserStatsServiceImpl extends ServiceImpl<UserStatsMapper, UserStats> implements UserStatsService {
+    
+    @Autowired
+    private UserStatsCache statsCache;
+    
+    @Autowired
+    private UserMapper userMapper;
+    
+    @Override
+    public UserStats getStats(Long userId) {
+        try {
+            UserStats cached = statsCache.get(userId);
+            if (cached != null) {
+                return cached;
+            }
+        } catch (Exception e) {
+            System.err.println("读取用户计数缓存失败: " + e.getMessage());
+        }
+        
+        // 先放加载标记再读 MySQL，读取之后提交的增减不会被写回的旧值覆盖
+        boolean marked = false;
+        try {
+            statsCache.beginRebuild(userId);
+            marked = true;
+        } catch (Exception e) {
+            System.err.println("写入用户计数缓存失败: " + e.getMessage());
+        }
+        
+        UserStats stats = getById(userId);
+        if (stats == null) {
+            // 不存在的用户不建计数行
+            if (!userMapper.exists(new LambdaQueryWrapper<User>().eq(User::getId, userId))) {
+                return null;
+            }
+            // 第一次访问，从明细表统计一次
+            baseMapper.rebuild(List.of(userId));
+            stats = getById(userId);
+        }
+        if (!marked) {
+            return stats;
+        }
+        try {
+            return statsCache.finishRebuild(stats);
+        } catch (Exception e) {
+            System.err.println("写入用户计数缓存失败: " + e.getMessage());
+            return stats;
+        }
+    }
+    
+    @Override
+    public void adjust(Long userId, int postsDelta, int followersDelta, int followingDelta) {
+        if (baseMapper.increment(userId, postsDelta, followersDelta, followingDelta) > 0) {
+            afterCommit(() -> statsCache.adjust(userId, postsDelta, followersDelta, followingDelta));
+            return;
+        }
+        // 还没有计数行：在同一事务里统计，已经包含本次写入
+        baseMapper.rebuild(List.of(userId));
+        afterCommit(() -> statsCache.evict(List.of(userId)));
+    }
+    
+    @Override
+    public int reconcile(Long fromId, Long toId) {
+        List<Long> drifted = baseMapper.selectDriftedUserIds(fromId, toId);
+        if (drifted.isEmpty()) {
+            return 0;
+        }
+        baseMapper.rebuild(drifted);
+        statsCache.evict(drifted);
+        return drifted.size();
+    }
+    
+    private void afterCommit(Runnable action) {
+        Runnable safe = () -> {
+            try {
+                action.run();
+            } catch (Exception e) {
+                System.err.println("更新用户计数缓存失败: " + e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    safe.run();
+                }
+            });
+        } else {
+            safe.run();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.xingyang.task;
+
+import com.xingyang.mapper.PostMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定期用 tb_comment 校正 tb_post.comments_count，修复增量计数的偏差
+ */
+@Component
+public class CommentCountReconcileTask {
+    
+    private final PostMapper postMapper;
+    
+    @Value("${post.comments-count.reconcile-batch-size:5000}")
+    private long batchSize;
+    
+    public CommentCountReconcileTask(PostMapper postMapper) {
+        this.postMapper = postMapper;
+    }
+    
+    @Scheduled(cron = "${post.comments-count.reconcile-cron:0 30 3 * * ?}")
+    public void reconcile() {
+        long maxId = postMapper.selectMaxId();
+        int fixed = 0;
+        // 按 ID 区间分批执行，避免长时间锁表
+        for (long fromId = 1; fromId <= maxId; fromId += batchSize) {
+            fixed += postMapper.reconcileCommentsCount(fromId, fromId + batchSize - 1);
+        }
+        System.out.println("评论数校正完成，修正帖子数: " + fixed);
+    }
+}
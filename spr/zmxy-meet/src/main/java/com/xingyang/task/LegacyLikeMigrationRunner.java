@@ -0,0 +1,110 @@
+package com.xingyang.task;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.xingyang.cache.PostLikeStore;
+import com.xingyang.entity.Post;
+import com.xingyang.mapper.PostMapper;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 一次性迁移：把旧格式的点赞 key（post:like:{postId}:{userId}）转换为点赞集合和用户点赞索引
+ * 旧数据没有点赞时间，用帖子发布时间作为分数，与原来的排序方式一致
+ */
+@Component
+public class LegacyLikeMigrationRunner implements CommandLineRunner {
+    
+    private static final String LEGACY_PATTERN = "post:like:*";
+    private static final String DONE_KEY = "migration:post-like:done";
+    private static final String LOCK_KEY = "migration:post-like:lock";
+    private static final int BATCH_SIZE = 500;
+    
+    private final StringRedisTemplate stringRedisTemplate;
+    private final PostLikeStore postLikeStore;
+    private final PostMapper postMapper;
+    
+    public LegacyLikeMigrationRunner(StringRedisTemplate stringRedisTemplate,
+                                     PostLikeStore postLikeStore,
+                                     PostMapper postMapper) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.postLikeStore = postLikeStore;
+        this.postMapper = postMapper;
+    }
+    
+    @Override
+    public void run(String... args) {
+        try {
+            if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(DONE_KEY))) {
+                return;
+            }
+            // 多节点同时启动时只允许一个节点执行
+            if (!Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+                    .setIfAbsent(LOCK_KEY, "1", Duration.ofMinutes(10)))) {
+                return;
+            }
+            
+            int migrated = 0;
+            List<String> batch = new ArrayList<>();
+            ScanOptions options = ScanOptions.scanOptions().match(LEGACY_PATTERN).count(1000).build();
+            try (Cursor<String> cursor = stringRedisTemplate.scan(options)) {
+                while (cursor.hasNext()) {
+                    batch.add(cursor.next());
+                    if (batch.size() >= BATCH_SIZE) {
+                        migrated += migrateBatch(batch);
+                        batch.clear();
+                    }
+                }
+            }
+            migrated += migrateBatch(batch);
+            
+            stringRedisTemplate.opsForValue().set(DONE_KEY, LocalDateTime.now().toString());
+            stringRedisTemplate.delete(LOCK_KEY);
+            System.out.println("旧点赞数据迁移完成，共迁移: " + migrated);
+        } catch (Exception e) {
+            System.err.println("旧点赞数据迁移失败: " + e.getMessage());
+        }
+    }
+    
+    private int migrateBatch(List<String> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        
+        // key 格式: post:like:{postId}:{userId}
+        List<Long[]> pairs = new ArrayList<>();
+        for (String key : keys) {
+            String[] parts = key.split(":");
+            if (parts.length == 4) {
+                pairs.add(new Long[]{Long.parseLong(parts[2]), Long.parseLong(parts[3])});
+            }
+        }
+        
+        Set<Long> postIds = pairs.stream().map(p -> p[0]).collect(Collectors.toSet());
+        Map<Long, LocalDateTime> createTimes = new HashMap<>();
+        if (!postIds.isEmpty()) {
+            LambdaQueryWrapper<Post> wrapper = new LambdaQueryWrapper<>();
+            wrapper.select(Post::getId, Post::getCreateTime).in(Post::getId, postIds);
+            postMapper.selectList(wrapper).forEach(p -> createTimes.put(p.getId(), p.getCreateTime()));
+        }
+        
+        List<PostLikeStore.LikeRecord> likes = new ArrayList<>();
+        for (Long[] pair : pairs) {
+            LocalDateTime time = createTimes.get(pair[0]);
+            long likedAt = time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0L;
+            likes.add(new PostLikeStore.LikeRecord(pair[0], pair[1], likedAt));
+        }
+        
+        postLikeStore.importLikes(likes);
+        stringRedisTemplate.delete(keys);
+        return likes.size();
+    }
+}
@@ -0,0 +1,41 @@
+package com.xingyang.task;
+
+import com.xingyang.cache.PostLikeStore;
+import com.xingyang.mapper.PostMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 定期把 Redis 中累积的点赞数增量批量写回 tb_post.likes_count
+ */
+@Component
+public class LikeCountFlushTask {
+    
+    private final PostLikeStore postLikeStore;
+    private final PostMapper postMapper;
+    
+    @Value("${post.likes-count.flush-batch-size:500}")
+    private long batchSize;
+    
+    public LikeCountFlushTask(PostLikeStore postLikeStore, PostMapper postMapper) {
+        this.postLikeStore = postLikeStore;
+        this.postMapper = postMapper;
+    }
+    
+    @Scheduled(fixedDelayString = "${post.likes-count.flush-interval-ms:3000}")
+    public void flush() {
+        Map<Long, Integer> deltas;
+        while (!(deltas = postLikeStore.takePendingDeltas(batchSize)).isEmpty()) {
+            try {
+                postMapper.incrementLikesCountBatch(deltas);
+            } catch (Exception e) {
+                System.err.println("点赞数写回失败: " + e.getMessage());
+                postLikeStore.restoreDeltas(deltas);
+                return;
+            }
+        }
+    }
+}
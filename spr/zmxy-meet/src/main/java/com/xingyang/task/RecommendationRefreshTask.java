@@ -0,0 +1,36 @@
+package com.xingyang.task;
+
+import com.xingyang.service.RecommendationService;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定期刷新"可能认识的人"：关注变化的用户增量重算，每天凌晨全量重算一次
+ */
+@Component
+public class RecommendationRefreshTask {
+    
+    private final RecommendationService recommendationService;
+    
+    public RecommendationRefreshTask(RecommendationService recommendationService) {
+        this.recommendationService = recommendationService;
+    }
+    
+    @Scheduled(fixedDelayString = "${recommend.incremental-interval-ms:300000}")
+    public void refreshDirty() {
+        try {
+            recommendationService.refreshDirty();
+        } catch (Exception e) {
+            System.err.println("推荐增量计算失败: " + e.getMessage());
+        }
+    }
+    
+    @Scheduled(cron = "${recommend.full-cron:0 0 5 * * ?}")
+    public void refreshAll() {
+        try {
+            recommendationService.refreshAll();
+        } catch (Exception e) {
+            System.err.println("推荐全量计算失败: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.xingyang.task;
+
+import com.xingyang.mapper.UserStatsMapper;
+import com.xingyang.service.UserStatsService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定期用 tb_post、tb_relation 校正 tb_user_stats，修复增量计数的偏差，并清掉对应的 Redis 缓存
+ */
+@Component
+public class UserStatsReconcileTask {
+    
+    private final UserStatsMapper userStatsMapper;
+    private final UserStatsService userStatsService;
+    
+    @Value("${user.stats.reconcile-batch-size:5000}")
+    private long batchSize;
+    
+    public UserStatsReconcileTask(UserStatsMapper userStatsMapper, UserStatsService userStatsService) {
+        this.userStatsMapper = userStatsMapper;
+        this.userStatsService = userStatsService;
+    }
+    
+    @Scheduled(cron = "${user.stats.reconcile-cron:0 0 4 * * ?}")
+    public void reconcile() {
+        long maxId = userStatsMapper.selectMaxUserId();
+        int fixed = 0;
+        // 按 ID 区间分批执行，避免长时间锁表
+        for (long fromId = 1; fromId <= maxId; fromId += batchSize) {
+            fixed += userStatsService.reconcile(fromId, fromId + batchSize - 1);
+        }
+        System.out.println("用户计数校正完成，修正用户数: " + fixed);
+    }
+}
@@ -0,0 +1,53 @@
+package com.xingyang.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+
+/**
+ * 游标编解码：游标是 (create_time, id) 的不透明 Base64 编码
+ */
+public final class CursorUtil {
+    
+    public static final int MAX_PAGE_SIZE = 100;
+    
+    private CursorUtil() {
+    }
+    
+    public record Cursor(LocalDateTime createTime, Long id) {
+    }
+    
+    public static String encode(LocalDateTime createTime, Long id) {
+        long millis = createTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        String raw = millis + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * 解析游标，空游标返回 null 表示从第一页开始
+     */
+    public static Cursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf(':');
+            long millis = Long.parseLong(raw.substring(0, sep));
+            long id = Long.parseLong(raw.substring(sep + 1));
+            LocalDateTime createTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+            return new Cursor(createTime, id);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无效的游标: " + cursor);
+        }
+    }
+    
+    /**
+     * 限制每页条数在 1 ~ MAX_PAGE_SIZE 之间
+     */
+    public static int clampSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+}
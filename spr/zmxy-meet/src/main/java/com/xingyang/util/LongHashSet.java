@@ -0,0 +1,180 @@
+package com.xingyang.util;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * long 基本类型哈希集合：开放寻址 + 线性探测，不装箱
+ * 0 作为空槽标记，集合中的 0 单独记录；非线程安全，由调用方加锁
+ */
+public final class LongHashSet {
+
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final int MIN_CAPACITY = 4;
+
+    private long[] slots;
+    private int size;
+    private boolean hasZero;
+    private int resizeAt;
+
+    public LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * 添加，返回 true 表示之前不存在
+     */
+    public boolean add(long value) {
+        if (value == 0) {
+            if (hasZero) {
+                return false;
+            }
+            hasZero = true;
+            size++;
+            return true;
+        }
+        int mask = slots.length - 1;
+        int i = mix(value) & mask;
+        while (slots[i] != 0) {
+            if (slots[i] == value) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        slots[i] = value;
+        if (++size >= resizeAt) {
+            rehash(slots.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * 删除，返回 true 表示之前存在
+     */
+    public boolean remove(long value) {
+        if (value == 0) {
+            if (!hasZero) {
+                return false;
+            }
+            hasZero = false;
+            size--;
+            return true;
+        }
+        int mask = slots.length - 1;
+        int i = mix(value) & mask;
+        while (slots[i] != 0) {
+            if (slots[i] == value) {
+                shiftBack(i);
+                size--;
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    public boolean contains(long value) {
+        if (value == 0) {
+            return hasZero;
+        }
+        int mask = slots.length - 1;
+        int i = mix(value) & mask;
+        while (slots[i] != 0) {
+            if (slots[i] == value) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(LongConsumer action) {
+        if (hasZero) {
+            action.accept(0);
+        }
+        for (long value : slots) {
+            if (value != 0) {
+                action.accept(value);
+            }
+        }
+    }
+
+    public long[] toArray() {
+        long[] result = new long[size];
+        int n = 0;
+        if (hasZero) {
+            result[n++] = 0;
+        }
+        for (long value : slots) {
+            if (value != 0) {
+                result[n++] = value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 删除后把后面同一探测链上的元素前移，保证查找不会被空槽截断
+     */
+    private void shiftBack(int gap) {
+        int mask = slots.length - 1;
+        int i = gap;
+        while (true) {
+            i = (i + 1) & mask;
+            long value = slots[i];
+            if (value == 0) {
+                break;
+            }
+            int home = mix(value) & mask;
+            // home 不在 (gap, i] 区间内时，元素可以前移到 gap
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                slots[gap] = value;
+                gap = i;
+            }
+        }
+        slots[gap] = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = slots;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (long value : old) {
+            if (value != 0) {
+                int i = mix(value) & mask;
+                while (slots[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = value;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        slots = new long[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
@@ -0,0 +1,25 @@
+package com.xingyang.util;
+
+/**
+ * 私信、圈子群聊消息内容的统一校验，REST 和 WebSocket 共用
+ */
+public final class MessageContentUtil {
+    
+    public static final int MAX_LENGTH = 2000;
+    
+    private MessageContentUtil() {
+    }
+    
+    /**
+     * 校验消息内容，合法时返回 null，否则返回错误提示
+     */
+    public static String validate(String content) {
+        if (content == null || content.isBlank()) {
+            return "消息内容不能为空";
+        }
+        if (content.length() > MAX_LENGTH) {
+            return "消息内容不能超过" + MAX_LENGTH + "个字符";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,181 @@
+package com.xingyang.websocket;
+
+import com.xingyang.cache.CircleMemberCache;
+import com.xingyang.websocket.protocol.BinaryFrameCodec;
+import com.xingyang.websocket.protocol.ChatFrame;
+import com.xingyang.websocket.protocol.FrameCodec;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 跨节点消息路由
+ * 接收者连在本节点时直接发送，连在其他节点时发布到该节点的频道 ws:node:{nodeId}，
+ * 每个节点只订阅自己的频道；转发内容为 8 字节用户ID + 二进制帧，由目标节点按接收者的协议重新编码
+ * 圈子群聊只发布一次到 ws:circle，各节点收到后分发给本节点在线的成员
+ */
+@Component
+public class ChatMessageRouter {
+    
+    private static final String NODE_CHANNEL_PREFIX = "ws:node:";
+    private static final String CIRCLE_CHANNEL = "ws:circle";
+    
+    private final WebSocketSessionRegistry sessionRegistry;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final BinaryFrameCodec binaryCodec;
+    private final CircleMemberCache circleMemberCache;
+    
+    public ChatMessageRouter(WebSocketSessionRegistry sessionRegistry,
+                             StringRedisTemplate stringRedisTemplate,
+                             BinaryFrameCodec binaryCodec,
+                             CircleMemberCache circleMemberCache,
+                             RedisMessageListenerContainer listenerContainer) {
+        this.sessionRegistry = sessionRegistry;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.binaryCodec = binaryCodec;
+        this.circleMemberCache = circleMemberCache;
+        
+        listenerContainer.addMessageListener(
+                (message, pattern) -> onRemoteMessage(message.getBody()),
+                new ChannelTopic(NODE_CHANNEL_PREFIX + sessionRegistry.getNodeId()));
+        listenerContainer.addMessageListener(
+                (message, pattern) -> onCircleMessage(message.getBody()),
+                new ChannelTopic(CIRCLE_CHANNEL));
+    }
+    
+    /**
+     * 用户是否在任一节点在线
+     */
+    public boolean isOnline(Long userId) {
+        return sessionRegistry.findNode(userId) != null;
+    }
+    
+    /**
+     * userIds 中在任一节点在线的用户
+     */
+    public Set<Long> onlineUsers(Collection<Long> userIds) {
+        return userIds.isEmpty() ? Set.of() : sessionRegistry.findOnline(userIds);
+    }
+    
+    /**
+     * 发送给指定用户，返回 false 表示用户不在线（消息已落库，等待上线后补发）
+     */
+    public boolean sendToUser(Long userId, ChatFrame frame) {
+        if (deliverLocal(userId, frame)) {
+            return true;
+        }
+        
+        String node = sessionRegistry.findNode(userId);
+        if (node == null || node.equals(sessionRegistry.getNodeId())) {
+            return false;
+        }
+        try {
+            byte[] encoded = binaryCodec.encodeBytes(frame);
+            byte[] body = ByteBuffer.allocate(Long.BYTES + encoded.length).putLong(userId).put(encoded).array();
+            byte[] channel = (NODE_CHANNEL_PREFIX + node).getBytes(StandardCharsets.UTF_8);
+            Long receivers = publish(channel, body);
+            return receivers != null && receivers > 0;
+        } catch (Exception e) {
+            System.err.println("跨节点消息转发失败: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * 圈子群聊分发：无论成员多少只发布一次，由每个节点（包括本节点）分发给本地在线成员
+     */
+    public void broadcastToCircle(Long circleId, Long excludeUserId, ChatFrame frame) {
+        try {
+            byte[] encoded = binaryCodec.encodeBytes(frame);
+            byte[] body = ByteBuffer.allocate(Long.BYTES * 2 + encoded.length)
+                    .putLong(circleId).putLong(excludeUserId != null ? excludeUserId : 0L).put(encoded).array();
+            publish(CIRCLE_CHANNEL.getBytes(StandardCharsets.UTF_8), body);
+        } catch (Exception e) {
+            System.err.println("圈子消息分发失败: " + e.getMessage());
+        }
+    }
+    
+    private Long publish(byte[] channel, byte[] body) {
+        return stringRedisTemplate.execute(
+                (RedisCallback<Long>) (RedisConnection connection) -> connection.publish(channel, body));
+    }
+    
+    private boolean deliverLocal(Long userId, ChatFrame frame) {
+        OutboundSession session = sessionRegistry.getLocalSession(userId);
+        if (session == null || !session.isOpen()) {
+            return false;
+        }
+        return session.send(frame);
+    }
+    
+    private void onRemoteMessage(byte[] body) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(body);
+            long userId = buffer.getLong();
+            // 用户可能刚刚断开，此时消息已落库，重连后补发
+            deliverLocal(userId, binaryCodec.decode(buffer));
+        } catch (Exception e) {
+            System.err.println("跨节点消息处理失败: " + e.getMessage());
+        }
+    }
+    
+    private void onCircleMessage(byte[] body) {
+        long circleId;
+        long excludeUserId;
+        ChatFrame frame;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(body);
+            circleId = buffer.getLong();
+            excludeUserId = buffer.getLong();
+            frame = binaryCodec.decode(buffer);
+        } catch (Exception e) {
+            System.err.println("圈子消息处理失败: " + e.getMessage());
+            return;
+        }
+        
+        // 成员列表未缓存时在缓存的加载线程中查库，不占用 Redis 监听线程
+        circleMemberCache.getMembersAsync(circleId)
+                .thenAccept(members -> deliverToCircle(members, excludeUserId, frame))
+                .exceptionally(e -> {
+                    System.err.println("圈子消息处理失败: " + e.getMessage());
+                    return null;
+                });
+    }
+    
+    private void deliverToCircle(Set<Long> members, long excludeUserId, ChatFrame frame) {
+        // 同一协议的成员共用一次编码结果
+        Map<FrameCodec, WebSocketMessage<?>> encoded = new IdentityHashMap<>();
+        for (Long memberId : members) {
+            if (memberId == excludeUserId) {
+                continue;
+            }
+            OutboundSession session = sessionRegistry.getLocalSession(memberId);
+            if (session == null || !session.isOpen()) {
+                continue;
+            }
+            WebSocketMessage<?> message = encoded.get(session.getCodec());
+            if (message == null) {
+                try {
+                    message = session.getCodec().encode(frame);
+                } catch (IOException e) {
+                    System.err.println("圈子消息编码失败: " + e.getMessage());
+                    continue;
+                }
+                encoded.put(session.getCodec(), message);
+            }
+            session.send(message);
+        }
+    }
+}
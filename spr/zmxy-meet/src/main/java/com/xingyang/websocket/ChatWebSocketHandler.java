@@ -1,107 +1,229 @@
 package com.xingyang.websocket;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xingyang.chat.ChatMessagePersister;
+import com.xingyang.entity.CircleMessage;
 import com.xingyang.entity.Message;
+import com.xingyang.service.CircleChatService;
+import com.xingyang.service.ConversationService;
 import com.xingyang.service.MessageService;
+import com.xingyang.service.NotificationService;
 import com.xingyang.util.JwtUtil;
+import com.xingyang.util.MessageContentUtil;
+import com.xingyang.websocket.protocol.ChatFrame;
+import com.xingyang.websocket.protocol.FrameCodecRegistry;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.io.IOException;
+import java.util.List;
 
 @Component
-public class ChatWebSocketHandler extends TextWebSocketHandler {
+public class ChatWebSocketHandler extends AbstractWebSocketHandler implements SubProtocolCapable {
     
     private final JwtUtil jwtUtil;
     private final MessageService messageService;
-    private final ObjectMapper objectMapper;
+    private final WebSocketSessionRegistry sessionRegistry;
+    private final ChatMessageRouter messageRouter;
+    private final OfflineMessageReplayer offlineMessageReplayer;
+    private final ChatMessagePersister chatMessagePersister;
+    private final OutboundSessionManager outboundSessionManager;
+    private final FrameCodecRegistry codecRegistry;
+    private final CircleChatService circleChatService;
+    private final NotificationService notificationService;
+    private final ConversationService conversationService;
     
-    // 存储用户 ID 和 WebSocket 会话的映射
-    private final Map<Long, WebSocketSession> sessions = new ConcurrentHashMap<>();
-    
-    public ChatWebSocketHandler(JwtUtil jwtUtil, MessageService messageService, ObjectMapper objectMapper) {
+    public ChatWebSocketHandler(JwtUtil jwtUtil, MessageService messageService, CircleChatService circleChatService,
+                                NotificationService notificationService, ConversationService conversationService,
+                                WebSocketSessionRegistry sessionRegistry, ChatMessageRouter messageRouter,
+                                OfflineMessageReplayer offlineMessageReplayer,
+                                ChatMessagePersister chatMessagePersister,
+                                OutboundSessionManager outboundSessionManager,
+                                FrameCodecRegistry codecRegistry) {
         this.jwtUtil = jwtUtil;
         this.messageService = messageService;
-        this.objectMapper = objectMapper;
+        this.circleChatService = circleChatService;
+        this.notificationService = notificationService;
+        this.conversationService = conversationService;
+        this.sessionRegistry = sessionRegistry;
+        this.messageRouter = messageRouter;
+        this.offlineMessageReplayer = offlineMessageReplayer;
+        this.chatMessagePersister = chatMessagePersister;
+        this.outboundSessionManager = outboundSessionManager;
+        this.codecRegistry = codecRegistry;
+    }
+    
+    /**
+     * 握手时可协商的子协议（二进制优先，JSON 兜底；不带子协议的客户端按 JSON 处理）
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        return codecRegistry.getSubprotocols();
     }
     
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        System.out.println("WebSocket 连接建立: " + session.getId());
+        // 所有发送都经过有界队列，由写线程池发出
+        outboundSessionManager.open(session, codecRegistry.forSession(session));
+        System.out.println("WebSocket 连接建立: " + session.getId() + ", 协议: " + session.getAcceptedProtocol());
     }
     
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        String payload = message.getPayload();
-        Map<String, Object> data = objectMapper.readValue(payload, Map.class);
-        
-        String type = (String) data.get("type");
+        handleFrame(session, message);
+    }
+    
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        handleFrame(session, message);
+    }
+    
+    private void handleFrame(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+        OutboundSession outbound = outboundSessionManager.get(session);
+        ChatFrame frame;
+        try {
+            frame = outbound.getCodec().decode(message);
+        } catch (IOException e) {
+            outbound.send(new ChatFrame.Error("无效的消息: " + e.getMessage()));
+            return;
+        }
         
-        if ("auth".equals(type)) {
-            // 认证消息
-            String token = (String) data.get("token");
-            if (jwtUtil.validateToken(token)) {
-                Long userId = jwtUtil.getUserIdFromToken(token);
-                sessions.put(userId, session);
-                session.getAttributes().put("userId", userId);
-                
-                // 发送认证成功消息
-                Map<String, Object> response = Map.of(
-                    "type", "auth_success",
-                    "message", "认证成功"
-                );
-                session.sendMessage(new TextMessage(objectMapper.writeValueAsString(response)));
-                
-                // 发送离线消息
-                sendOfflineMessages(userId, session);
+        Long userId = (Long) session.getAttributes().get("userId");
+        if (frame instanceof ChatFrame.Auth auth) {
+            handleAuth(session, outbound, auth);
+        } else if (frame instanceof ChatFrame.Send send) {
+            handleSend(userId, outbound, send);
+        } else if (frame instanceof ChatFrame.CircleSend circleSend) {
+            handleCircleSend(userId, outbound, circleSend);
+        } else if (frame instanceof ChatFrame.Ack ack) {
+            // 客户端确认已收到该消息及之前的消息
+            if (userId != null) {
+                offlineMessageReplayer.onAck(userId, outbound, ack.messageId());
+            }
+        } else if (frame instanceof ChatFrame.Replay) {
+            // 收到 replay_busy 后客户端重新请求补发
+            if (userId != null) {
+                offlineMessageReplayer.start(userId, outbound);
             }
-        } else if ("message".equals(type)) {
-            // 聊天消息
-            Long senderId = (Long) session.getAttributes().get("userId");
-            Long receiverId = Long.valueOf(data.get("receiverId").toString());
-            String content = (String) data.get("content");
-            
-            // 保存消息到数据库
-            Message msg = new Message();
-            msg.setSenderId(senderId);
-            msg.setReceiverId(receiverId);
-            msg.setContent(content);
-            msg.setType("text");
-            msg.setIsRead(false);
-            messageService.save(msg);
-            
-            // 如果接收者在线，立即发送
-            WebSocketSession receiverSession = sessions.get(receiverId);
-            if (receiverSession != null && receiverSession.isOpen()) {
-                Map<String, Object> messageData = Map.of(
-                    "type", "message",
-                    "id", msg.getId(),
-                    "senderId", senderId,
-                    "content", content,
-                    "timestamp", System.currentTimeMillis()
-                );
-                receiverSession.sendMessage(new TextMessage(objectMapper.writeValueAsString(messageData)));
+        } else if (frame instanceof ChatFrame.Typing typing) {
+            // 正在输入提示，只转发不落库
+            if (userId != null) {
+                messageRouter.sendToUser(typing.receiverId(), new ChatFrame.TypingNotice(userId));
             }
-            
-            // 发送确认给发送者
-            Map<String, Object> ack = Map.of(
-                "type", "message_sent",
-                "messageId", msg.getId()
-            );
-            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(ack)));
+        } else if (frame instanceof ChatFrame.ReadReceipt receipt) {
+            // 已读回执：标记已读并通知对方
+            if (userId != null) {
+                Long readUpTo = messageService.markConversationRead(userId, receipt.peerId(), receipt.messageId());
+                if (readUpTo != null) {
+                    messageRouter.sendToUser(receipt.peerId(), new ChatFrame.ReadNotice(userId, readUpTo));
+                }
+            }
+        } else if (frame instanceof ChatFrame.CircleRead circleRead) {
+            if (userId != null && !circleChatService.markRead(circleRead.circleId(), userId, circleRead.messageId())) {
+                outbound.send(new ChatFrame.Error("不是圈子成员"));
+            }
+        } else {
+            // 二进制协议也能解出下发类型的帧（跨节点转发用），客户端发来的一律拒绝
+            outbound.send(new ChatFrame.Error("不支持的帧类型: " + frame.getClass().getSimpleName()));
         }
     }
     
+    private void handleAuth(WebSocketSession session, OutboundSession outbound, ChatFrame.Auth auth) {
+        String token = auth.token();
+        if (!jwtUtil.validateToken(token)) {
+            return;
+        }
+        Long userId = jwtUtil.getUserIdFromToken(token);
+        session.getAttributes().put("userId", userId);
+        sessionRegistry.register(userId, outbound);
+        
+        // 发送认证成功消息
+        outbound.send(new ChatFrame.AuthSuccess("认证成功"));
+        
+        // 连接期间未读数变化都会推送，客户端不需要再轮询未读数接口
+        outbound.send(new ChatFrame.UnreadCount(ChatFrame.UnreadCount.NOTIFICATION,
+                notificationService.getUnreadCount(userId)));
+        outbound.send(new ChatFrame.UnreadCount(ChatFrame.UnreadCount.MESSAGE,
+                conversationService.getTotalUnread(userId)));
+        
+        // 发送离线消息
+        offlineMessageReplayer.start(userId, outbound);
+    }
+    
+    /**
+     * 聊天消息
+     */
+    private void handleSend(Long senderId, OutboundSession outbound, ChatFrame.Send send) {
+        if (senderId == null) {
+            outbound.send(new ChatFrame.Error("请先认证"));
+            return;
+        }
+        if (send.receiverId() <= 0) {
+            outbound.send(new ChatFrame.Error("无效的接收者"));
+            return;
+        }
+        String contentError = MessageContentUtil.validate(send.content());
+        if (contentError != null) {
+            outbound.send(new ChatFrame.Error(contentError));
+            return;
+        }
+        
+        // 分配ID并写入本地日志，随后异步批量落库（同时更新会话摘要）
+        Message msg = new Message();
+        msg.setSenderId(senderId);
+        msg.setReceiverId(send.receiverId());
+        msg.setContent(send.content());
+        msg.setType("text");
+        msg.setIsRead(false);
+        if (!chatMessagePersister.submit(msg)) {
+            outbound.send(new ChatFrame.Error("消息发送繁忙，请稍后重试"));
+            return;
+        }
+        
+        // 如果接收者在线（本节点或其他节点），立即发送
+        messageRouter.sendToUser(send.receiverId(), new ChatFrame.Deliver(
+                msg.getId(), senderId, send.content(), System.currentTimeMillis(), false));
+        
+        // 发送确认给发送者
+        outbound.send(new ChatFrame.Sent(msg.getId()));
+    }
+    
+    /**
+     * 圈子群聊：只存一条，按成员分发给在线用户
+     */
+    private void handleCircleSend(Long userId, OutboundSession outbound, ChatFrame.CircleSend circleSend) {
+        if (userId == null) {
+            outbound.send(new ChatFrame.Error("请先认证"));
+            return;
+        }
+        // 与 REST 发送接口相同的内容校验
+        String contentError = MessageContentUtil.validate(circleSend.content());
+        if (contentError != null) {
+            outbound.send(new ChatFrame.Error(contentError));
+            return;
+        }
+        CircleMessage circleMessage = circleChatService.sendMessage(
+                circleSend.circleId(), userId, circleSend.content());
+        if (circleMessage == null) {
+            outbound.send(new ChatFrame.Error("不是圈子成员"));
+            return;
+        }
+        outbound.send(new ChatFrame.CircleSent(circleSend.circleId(), circleMessage.getId()));
+    }
+    
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
         Long userId = (Long) session.getAttributes().get("userId");
-        if (userId != null) {
-            sessions.remove(userId);
+        OutboundSession outbound = outboundSessionManager.get(session);
+        if (userId != null && outbound != null) {
+            sessionRegistry.unregister(userId, outbound);
         }
+        outboundSessionManager.close(session);
         System.out.println("WebSocket 连接关闭: " + session.getId());
     }
     
@@ -109,11 +231,4 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
         System.err.println("WebSocket 错误: " + exception.getMessage());
     }
-    
-    /**
-     * 发送离线消息
-     */
-    private void sendOfflineMessages(Long userId, WebSocketSession session) throws Exception {
-        // TODO: 从数据库获取未读消息并发送
-    }
 }
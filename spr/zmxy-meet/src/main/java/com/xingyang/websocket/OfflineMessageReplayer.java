@@ -0,0 +1,166 @@
+package com.xingyang.websocket;
+
+import com.xingyang.chat.MessageIdGenerator;
+import com.xingyang.entity.Message;
+import com.xingyang.service.ConversationService;
+import com.xingyang.service.MessageService;
+import com.xingyang.websocket.protocol.ChatFrame;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 离线消息补发
+ * 用户认证后按消息ID分批推送未送达的消息，每批发完等待客户端 ACK 最后一条后再发下一批；
+ * 已送达位置（水位）保存在 Redis chat:delivered:{userId}，只会前进
+ */
+@Component
+public class OfflineMessageReplayer {
+    
+    private static final String WATERMARK_KEY_PREFIX = "chat:delivered:";
+    private static final String STATE_ATTRIBUTE = "offlineReplay";
+    
+    private static final DefaultRedisScript<Long> ADVANCE_SCRIPT = new DefaultRedisScript<>(
+            "local cur = tonumber(redis.call('GET', KEYS[1]) or '0')\n" +
+            "local next = tonumber(ARGV[1])\n" +
+            "if next > cur then\n" +
+            "  redis.call('SET', KEYS[1], ARGV[1])\n" +
+            "  cur = next\n" +
+            "end\n" +
+            "redis.call('EXPIRE', KEYS[1], ARGV[2])\n" +
+            "return cur",
+            Long.class);
+    
+    /**
+     * 单个连接的补发进度
+     */
+    private static class ReplayState {
+        volatile long lastSentId;
+        volatile long awaitingAckId;
+        volatile boolean done;
+    }
+    
+    private final MessageService messageService;
+    private final ConversationService conversationService;
+    private final MessageIdGenerator messageIdGenerator;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ThreadPoolExecutor executor;
+    private final int batchSize;
+    private final long watermarkTtlSeconds;
+    
+    public OfflineMessageReplayer(MessageService messageService,
+                                  ConversationService conversationService,
+                                  MessageIdGenerator messageIdGenerator,
+                                  StringRedisTemplate stringRedisTemplate,
+                                  @Value("${chat.replay.batch-size:50}") int batchSize,
+                                  @Value("${chat.replay.threads:4}") int threads,
+                                  @Value("${chat.replay.max-pending:10000}") int maxPending,
+                                  @Value("${chat.replay.watermark-ttl-days:30}") long watermarkTtlDays) {
+        this.messageService = messageService;
+        this.conversationService = conversationService;
+        this.messageIdGenerator = messageIdGenerator;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.batchSize = batchSize;
+        this.watermarkTtlSeconds = TimeUnit.DAYS.toSeconds(watermarkTtlDays);
+        
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxPending), r -> {
+                    Thread thread = new Thread(r, "chat-replay-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+    
+    /**
+     * 认证成功后开始补发
+     */
+    public void start(Long userId, OutboundSession session) {
+        ReplayState state = new ReplayState();
+        state.lastSentId = getWatermark(userId);
+        session.getSession().getAttributes().put(STATE_ATTRIBUTE, state);
+        submit(userId, session, state);
+    }
+    
+    /**
+     * 客户端确认收到 messageId 及之前的消息
+     */
+    public void onAck(Long userId, OutboundSession session, long messageId) {
+        ReplayState state = (ReplayState) session.getSession().getAttributes().get(STATE_ATTRIBUTE);
+        
+        // 补发未完成时水位不能越过已补发的位置，否则断线后中间的消息会丢失；
+        // 也不能越过全局已落库水位，否则还在缓冲区里的更小ID在重连补发时查不到
+        long watermark = state == null || state.done ? messageId : Math.min(messageId, state.lastSentId);
+        watermark = Math.min(watermark, messageIdGenerator.persistedWatermark());
+        stringRedisTemplate.execute(ADVANCE_SCRIPT, List.of(watermarkKey(userId)),
+                String.valueOf(watermark), String.valueOf(watermarkTtlSeconds));
+        
+        if (state != null && !state.done && state.awaitingAckId > 0 && messageId >= state.awaitingAckId) {
+            state.awaitingAckId = 0;
+            submit(userId, session, state);
+        }
+    }
+    
+    private void submit(Long userId, OutboundSession session, ReplayState state) {
+        try {
+            executor.execute(() -> sendNextBatch(userId, session, state));
+        } catch (RejectedExecutionException e) {
+            // 补发队列已满，让客户端稍后重新请求
+            session.send(new ChatFrame.ReplayBusy());
+        }
+    }
+    
+    private void sendNextBatch(Long userId, OutboundSession session, ReplayState state) {
+        if (!session.isOpen()) {
+            return;
+        }
+        try {
+            List<Message> messages = messageService.getUndeliveredMessages(userId, state.lastSentId, batchSize);
+            boolean lastBatch = messages.size() < batchSize;
+            if (!lastBatch) {
+                // 先登记等待的 ACK，避免客户端确认比这里更快到达
+                state.awaitingAckId = messages.get(messages.size() - 1).getId();
+            }
+            for (Message msg : messages) {
+                session.send(new ChatFrame.Deliver(msg.getId(), msg.getSenderId(), msg.getContent(),
+                        msg.getCreateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(), true));
+                state.lastSentId = msg.getId();
+            }
+            
+            if (lastBatch) {
+                state.done = true;
+                session.send(new ChatFrame.ReplayComplete());
+            }
+        } catch (Exception e) {
+            System.err.println("离线消息补发失败: " + e.getMessage());
+        }
+    }
+    
+    private long getWatermark(Long userId) {
+        String value = stringRedisTemplate.opsForValue().get(watermarkKey(userId));
+        if (value != null) {
+            return Long.parseLong(value);
+        }
+        // 没有水位（首次连接或已过期）时从会话已读位置开始，避免扫描全部历史
+        return conversationService.getReplayStartId(userId);
+    }
+    
+    private String watermarkKey(Long userId) {
+        return WATERMARK_KEY_PREFIX + userId;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
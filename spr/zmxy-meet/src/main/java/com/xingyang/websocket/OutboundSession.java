@@ -0,0 +1,189 @@
+package com.xingyang.websocket;
+
+import com.xingyang.websocket.protocol.ChatFrame;
+import com.xingyang.websocket.protocol.FrameCodec;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 带有界发送队列的会话
+ * 任意线程调用 send 只是入队，由共享的写线程池逐个会话串行发送，慢客户端不会阻塞调用方；
+ * 队列满时按策略丢弃消息或断开连接，积压字节超过上限时断开连接；
+ * 单次发送卡住超过时限时由 OutboundSessionManager 的巡检线程断开，写线程随之释放
+ */
+public class OutboundSession {
+    
+    public enum OverflowPolicy {
+        DROP, DISCONNECT
+    }
+    
+    private final WebSocketSession session;
+    private final FrameCodec codec;
+    private final Queue<WebSocketMessage<?>> queue;
+    private final long bufferSizeLimit;
+    private final Executor writer;
+    private final OverflowPolicy overflowPolicy;
+    private final OutboundSessionManager.Metrics metrics;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    // 已入队未发出的字节数（含正在发送的一条）
+    private final AtomicLong queuedBytes = new AtomicLong();
+    // 正在发送的一条开始的时间，0 表示当前没有发送
+    private volatile long sendStartedAt;
+    
+    OutboundSession(WebSocketSession session, FrameCodec codec, int capacity, long bufferSizeLimit, Executor writer,
+                    OverflowPolicy overflowPolicy, OutboundSessionManager.Metrics metrics) {
+        this.session = session;
+        this.codec = codec;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.writer = writer;
+        this.overflowPolicy = overflowPolicy;
+        this.metrics = metrics;
+    }
+    
+    /**
+     * 按本连接协商的协议编码后入队
+     */
+    public boolean send(ChatFrame frame) {
+        try {
+            return send(codec.encode(frame));
+        } catch (Exception e) {
+            System.err.println("WebSocket 帧编码失败: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * 入队发送，返回 false 表示消息被丢弃
+     */
+    public boolean send(WebSocketMessage<?> message) {
+        if (closed.get() || !session.isOpen()) {
+            return false;
+        }
+        int size = message.getPayloadLength();
+        if (queuedBytes.addAndGet(size) > bufferSizeLimit) {
+            // 积压字节超限说明对端读得太慢，不论溢出策略都断开
+            queuedBytes.addAndGet(-size);
+            metrics.dropped.increment();
+            metrics.disconnected.increment();
+            close(CloseStatus.SESSION_NOT_RELIABLE);
+            return false;
+        }
+        if (!queue.offer(message)) {
+            queuedBytes.addAndGet(-size);
+            metrics.dropped.increment();
+            if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+                metrics.disconnected.increment();
+                close(CloseStatus.SESSION_NOT_RELIABLE);
+            }
+            return false;
+        }
+        metrics.queued.increment();
+        scheduleDrain();
+        return true;
+    }
+    
+    public FrameCodec getCodec() {
+        return codec;
+    }
+    
+    public boolean isOpen() {
+        return session.isOpen();
+    }
+    
+    public String getId() {
+        return session.getId();
+    }
+    
+    public int getQueueDepth() {
+        return queue.size();
+    }
+    
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+    
+    public WebSocketSession getSession() {
+        return session;
+    }
+    
+    public void close(CloseStatus status) {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        queue.clear();
+        closeSession(status);
+    }
+    
+    /**
+     * 当前这次发送已经持续超过 timeLimitMs 时断开连接，关闭动作交给 closer 执行；返回是否断开
+     */
+    boolean abortIfStalled(long now, long timeLimitMs, Executor closer) {
+        long startedAt = sendStartedAt;
+        if (startedAt == 0 || now - startedAt <= timeLimitMs || !closed.compareAndSet(false, true)) {
+            return false;
+        }
+        queue.clear();
+        try {
+            closer.execute(() -> closeSession(CloseStatus.SESSION_NOT_RELIABLE));
+        } catch (RejectedExecutionException e) {
+            // 停机中
+        }
+        return true;
+    }
+    
+    private void closeSession(CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (Exception e) {
+            System.err.println("WebSocket 关闭失败: " + e.getMessage());
+        }
+    }
+    
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                writer.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+            }
+        }
+    }
+    
+    private void drain() {
+        try {
+            WebSocketMessage<?> message;
+            while ((message = queue.poll()) != null) {
+                sendStartedAt = System.currentTimeMillis();
+                try {
+                    session.sendMessage(message);
+                } finally {
+                    sendStartedAt = 0;
+                    queuedBytes.addAndGet(-message.getPayloadLength());
+                }
+                metrics.sent.increment();
+            }
+        } catch (Exception e) {
+            if (!closed.get()) {
+                System.err.println("WebSocket 发送失败，断开连接: " + e.getMessage());
+                metrics.disconnected.increment();
+                close(CloseStatus.SESSION_NOT_RELIABLE);
+            }
+        } finally {
+            draining.set(false);
+        }
+        // 释放标记后可能有新消息入队
+        if (!queue.isEmpty() && !closed.get() && session.isOpen()) {
+            scheduleDrain();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.xingyang.websocket;
+
+import jakarta.annotation.PreDestroy;
+import com.xingyang.websocket.protocol.FrameCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 为每个 WebSocket 连接创建 OutboundSession，并提供共享写线程池和队列统计
+ * 巡检线程定期检查正在进行的发送，超过 send-time-limit-ms 的连接被断开，避免卡住的对端长期占用写线程
+ */
+@Component
+public class OutboundSessionManager {
+    
+    private static final String ATTRIBUTE = "outboundSession";
+    
+    static class Metrics {
+        final LongAdder queued = new LongAdder();
+        final LongAdder sent = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        final LongAdder disconnected = new LongAdder();
+    }
+    
+    private final Metrics metrics = new Metrics();
+    private final Set<OutboundSession> sessions = ConcurrentHashMap.newKeySet();
+    private final ExecutorService writer;
+    private final ScheduledExecutorService watchdog;
+    // 关闭卡住的连接本身也可能阻塞一段时间，放到单独的线程里做，不拖慢巡检
+    private final ExecutorService closer;
+    
+    private final int queueCapacity;
+    private final int sendTimeLimitMs;
+    private final int bufferSizeLimit;
+    private final OutboundSession.OverflowPolicy overflowPolicy;
+    
+    public OutboundSessionManager(@Value("${chat.outbound.queue-capacity:256}") int queueCapacity,
+                                  @Value("${chat.outbound.send-time-limit-ms:5000}") int sendTimeLimitMs,
+                                  @Value("${chat.outbound.buffer-size-limit:524288}") int bufferSizeLimit,
+                                  @Value("${chat.outbound.overflow-policy:DISCONNECT}") OutboundSession.OverflowPolicy overflowPolicy,
+                                  @Value("${chat.outbound.writer-threads:8}") int writerThreads) {
+        this.queueCapacity = queueCapacity;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.overflowPolicy = overflowPolicy;
+        
+        AtomicInteger counter = new AtomicInteger();
+        this.writer = Executors.newFixedThreadPool(writerThreads, r -> {
+            Thread thread = new Thread(r, "ws-writer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.closer = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "ws-closer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-send-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkIntervalMs = Math.max(10, sendTimeLimitMs / 5);
+        this.watchdog.scheduleWithFixedDelay(this::closeStalledSessions, checkIntervalMs, checkIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * 连接建立时调用
+     */
+    public OutboundSession open(WebSocketSession session, FrameCodec codec) {
+        // 每个会话只有一个写线程在发送，发送时限和积压字节上限由 OutboundSession 自己执行
+        OutboundSession outbound = new OutboundSession(session, codec, queueCapacity, bufferSizeLimit, writer,
+                overflowPolicy, metrics);
+        session.getAttributes().put(ATTRIBUTE, outbound);
+        sessions.add(outbound);
+        return outbound;
+    }
+    
+    public OutboundSession get(WebSocketSession session) {
+        return (OutboundSession) session.getAttributes().get(ATTRIBUTE);
+    }
+    
+    /**
+     * 连接关闭时调用
+     */
+    public void close(WebSocketSession session) {
+        OutboundSession outbound = (OutboundSession) session.getAttributes().remove(ATTRIBUTE);
+        if (outbound != null) {
+            sessions.remove(outbound);
+        }
+    }
+    
+    /**
+     * 断开单次发送超时的连接；连接关闭后阻塞中的发送抛出异常，写线程得以释放
+     */
+    private void closeStalledSessions() {
+        long now = System.currentTimeMillis();
+        for (OutboundSession session : sessions) {
+            if (session.abortIfStalled(now, sendTimeLimitMs, closer)) {
+                System.err.println("WebSocket 发送超时，断开连接: " + session.getId());
+                metrics.disconnected.increment();
+            }
+        }
+    }
+    
+    /**
+     * 发送队列统计
+     */
+    public Map<String, Object> stats() {
+        int totalDepth = 0;
+        int maxDepth = 0;
+        long totalBytes = 0;
+        for (OutboundSession session : sessions) {
+            int depth = session.getQueueDepth();
+            totalDepth += depth;
+            maxDepth = Math.max(maxDepth, depth);
+            totalBytes += session.getQueuedBytes();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessions", sessions.size());
+        stats.put("queueDepth", totalDepth);
+        stats.put("maxQueueDepth", maxDepth);
+        stats.put("queuedBytes", totalBytes);
+        stats.put("queued", metrics.queued.sum());
+        stats.put("sent", metrics.sent.sum());
+        stats.put("dropped", metrics.dropped.sum());
+        stats.put("disconnected", metrics.disconnected.sum());
+        return stats;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+        writer.shutdownNow();
+        closer.shutdownNow();
+    }
+}
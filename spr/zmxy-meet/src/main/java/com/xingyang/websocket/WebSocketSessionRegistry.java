@@ -0,0 +1,207 @@
+package com.xingyang.websocket;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * WebSocket 会话注册表
+ * 本节点的会话保存在内存中，用户所在节点记录在 Redis（ws:presence:{userId} -> nodeId），
+ * 通过定时心跳续期，节点宕机后记录自动过期
+ * 同一用户再次登录时关闭旧连接：旧连接在本节点直接关闭，在其他节点时发布到该节点的 ws:kick:{nodeId} 频道
+ */
+@Component
+public class WebSocketSessionRegistry {
+    
+    private static final String PRESENCE_KEY_PREFIX = "ws:presence:";
+    private static final String KICK_CHANNEL_PREFIX = "ws:kick:";
+    
+    /**
+     * 被新登录挤下线时的关闭码
+     */
+    public static final CloseStatus REPLACED = new CloseStatus(4001, "账号在其他地方登录");
+    
+    /**
+     * 只删除仍指向本节点的记录，避免用户已重连到其他节点时被误删
+     */
+    private static final DefaultRedisScript<Long> UNREGISTER_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then\n" +
+            "  return redis.call('DEL', KEYS[1])\n" +
+            "end\n" +
+            "return 0",
+            Long.class);
+    
+    private final StringRedisTemplate stringRedisTemplate;
+    private final String nodeId;
+    private final Duration presenceTtl;
+    
+    // 存储本节点用户 ID 和 WebSocket 会话的映射
+    private final Map<Long, OutboundSession> localSessions = new ConcurrentHashMap<>();
+    
+    public WebSocketSessionRegistry(StringRedisTemplate stringRedisTemplate,
+                                    RedisMessageListenerContainer listenerContainer,
+                                    @Value("${chat.node-id:}") String nodeId,
+                                    @Value("${chat.presence.ttl-seconds:90}") long presenceTtlSeconds) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.nodeId = nodeId.isBlank() ? generateNodeId() : nodeId;
+        this.presenceTtl = Duration.ofSeconds(presenceTtlSeconds);
+        System.out.println("WebSocket 节点ID: " + this.nodeId);
+        
+        listenerContainer.addMessageListener(
+                (message, pattern) -> onKick(Long.valueOf(new String(message.getBody(), StandardCharsets.UTF_8))),
+                new ChannelTopic(KICK_CHANNEL_PREFIX + this.nodeId));
+    }
+    
+    public String getNodeId() {
+        return nodeId;
+    }
+    
+    /**
+     * 认证成功后登记会话，并关闭同一用户的旧连接；返回本节点被替换的旧会话（如有）
+     */
+    public OutboundSession register(Long userId, OutboundSession session) {
+        OutboundSession previous = localSessions.put(userId, session);
+        String previousNode = stringRedisTemplate.opsForValue().getAndSet(presenceKey(userId), nodeId);
+        stringRedisTemplate.expire(presenceKey(userId), presenceTtl);
+        
+        if (previous != null && previous != session) {
+            previous.close(REPLACED);
+        }
+        if (previousNode != null && !previousNode.equals(nodeId)) {
+            try {
+                stringRedisTemplate.convertAndSend(KICK_CHANNEL_PREFIX + previousNode, userId.toString());
+            } catch (Exception e) {
+                System.err.println("通知旧节点断开连接失败: " + e.getMessage());
+            }
+        }
+        return previous != session ? previous : null;
+    }
+    
+    /**
+     * 用户已在其他节点重新登录：关闭本节点的旧连接（用户又连回本节点时不处理）
+     */
+    private void onKick(Long userId) {
+        if (nodeId.equals(stringRedisTemplate.opsForValue().get(presenceKey(userId)))) {
+            return;
+        }
+        OutboundSession session = localSessions.remove(userId);
+        if (session != null) {
+            session.close(REPLACED);
+        }
+    }
+    
+    /**
+     * 连接关闭时注销，仅当当前登记的就是这个会话时才生效
+     */
+    public void unregister(Long userId, OutboundSession session) {
+        if (localSessions.remove(userId, session)) {
+            stringRedisTemplate.execute(UNREGISTER_SCRIPT, List.of(presenceKey(userId)), nodeId);
+        }
+    }
+    
+    public OutboundSession getLocalSession(Long userId) {
+        return localSessions.get(userId);
+    }
+    
+    /**
+     * 查询用户所在节点，不在线时返回 null
+     */
+    public String findNode(Long userId) {
+        return stringRedisTemplate.opsForValue().get(presenceKey(userId));
+    }
+    
+    /**
+     * 批量查询在线用户，一次 MGET
+     */
+    public Set<Long> findOnline(Collection<Long> userIds) {
+        List<Long> ids = new ArrayList<>(userIds);
+        List<String> nodes = stringRedisTemplate.opsForValue().multiGet(ids.stream().map(this::presenceKey).toList());
+        Set<Long> online = new HashSet<>();
+        for (int i = 0; nodes != null && i < ids.size(); i++) {
+            if (nodes.get(i) != null) {
+                online.add(ids.get(i));
+            }
+        }
+        return online;
+    }
+    
+    public int getLocalSessionCount() {
+        return localSessions.size();
+    }
+    
+    /**
+     * 心跳：批量续期本节点所有在线用户的登记
+     */
+    @Scheduled(fixedDelayString = "${chat.presence.heartbeat-interval-ms:30000}")
+    public void heartbeat() {
+        if (localSessions.isEmpty()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    for (Map.Entry<Long, OutboundSession> entry : localSessions.entrySet()) {
+                        if (entry.getValue().isOpen()) {
+                            ops.opsForValue().set(presenceKey(entry.getKey()), nodeId, presenceTtl);
+                        }
+                    }
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            System.err.println("WebSocket 在线状态续期失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 节点正常关闭时清理本节点的在线登记
+     */
+    @PreDestroy
+    public void shutdown() {
+        localSessions.forEach((userId, session) -> {
+            try {
+                stringRedisTemplate.execute(UNREGISTER_SCRIPT, List.of(presenceKey(userId)), nodeId);
+            } catch (Exception ignored) {
+                // 关闭过程中 Redis 可能已不可用，依赖 TTL 过期
+            }
+        });
+        localSessions.clear();
+    }
+    
+    private String presenceKey(Long userId) {
+        return PRESENCE_KEY_PREFIX + userId;
+    }
+    
+    private static String generateNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,221 @@
+package com.xingyang.websocket.protocol;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 紧凑二进制帧：1 字节帧类型 + 字段
+ * 整数使用无符号 varint，字符串为 varint 长度 + UTF-8，布尔为 1 字节
+ */
+@Component
+public class BinaryFrameCodec implements FrameCodec {
+    
+    public static final String SUBPROTOCOL = "zmxy.chat.v1.bin";
+    
+    private static final byte AUTH = 1;
+    private static final byte SEND = 2;
+    private static final byte ACK = 3;
+    private static final byte REPLAY = 4;
+    private static final byte TYPING = 5;
+    private static final byte READ_RECEIPT = 6;
+    private static final byte CIRCLE_SEND = 7;
+    private static final byte CIRCLE_READ = 8;
+    private static final byte AUTH_SUCCESS = 10;
+    private static final byte DELIVER = 11;
+    private static final byte SENT = 12;
+    private static final byte ERROR = 13;
+    private static final byte REPLAY_COMPLETE = 14;
+    private static final byte REPLAY_BUSY = 15;
+    private static final byte TYPING_NOTICE = 16;
+    private static final byte READ_NOTICE = 17;
+    private static final byte CIRCLE_DELIVER = 18;
+    private static final byte CIRCLE_SENT = 19;
+    private static final byte NOTIFY = 20;
+    private static final byte UNREAD_COUNT = 21;
+    
+    @Override
+    public String getSubprotocol() {
+        return SUBPROTOCOL;
+    }
+    
+    @Override
+    public ChatFrame decode(WebSocketMessage<?> message) throws IOException {
+        if (!(message instanceof BinaryMessage binary)) {
+            throw new IOException("二进制协议只接受二进制帧");
+        }
+        return decode(binary.getPayload().duplicate());
+    }
+    
+    @Override
+    public WebSocketMessage<?> encode(ChatFrame frame) throws IOException {
+        return new BinaryMessage(encodeBytes(frame));
+    }
+    
+    /**
+     * 解码一个完整的帧，也用于跨节点转发
+     */
+    public ChatFrame decode(ByteBuffer in) throws IOException {
+        try {
+            byte type = in.get();
+            return switch (type) {
+                case AUTH -> new ChatFrame.Auth(readString(in));
+                case SEND -> new ChatFrame.Send(readVarLong(in), readString(in));
+                case ACK -> new ChatFrame.Ack(readVarLong(in));
+                case REPLAY -> new ChatFrame.Replay();
+                case TYPING -> new ChatFrame.Typing(readVarLong(in));
+                case READ_RECEIPT -> new ChatFrame.ReadReceipt(readVarLong(in), readVarLong(in));
+                case CIRCLE_SEND -> new ChatFrame.CircleSend(readVarLong(in), readString(in));
+                case CIRCLE_READ -> new ChatFrame.CircleRead(readVarLong(in), readVarLong(in));
+                case AUTH_SUCCESS -> new ChatFrame.AuthSuccess(readString(in));
+                case DELIVER -> new ChatFrame.Deliver(readVarLong(in), readVarLong(in), readString(in),
+                        readVarLong(in), in.get() != 0);
+                case SENT -> new ChatFrame.Sent(readVarLong(in));
+                case ERROR -> new ChatFrame.Error(readString(in));
+                case REPLAY_COMPLETE -> new ChatFrame.ReplayComplete();
+                case REPLAY_BUSY -> new ChatFrame.ReplayBusy();
+                case TYPING_NOTICE -> new ChatFrame.TypingNotice(readVarLong(in));
+                case READ_NOTICE -> new ChatFrame.ReadNotice(readVarLong(in), readVarLong(in));
+                case CIRCLE_DELIVER -> new ChatFrame.CircleDeliver(readVarLong(in), readVarLong(in), readVarLong(in),
+                        readString(in), readVarLong(in));
+                case CIRCLE_SENT -> new ChatFrame.CircleSent(readVarLong(in), readVarLong(in));
+                case NOTIFY -> new ChatFrame.Notify(readVarLong(in), readString(in), readString(in), readVarLong(in),
+                        readVarLong(in), (int) readVarLong(in), readVarLong(in));
+                case UNREAD_COUNT -> new ChatFrame.UnreadCount(readString(in), readVarLong(in));
+                default -> throw new IOException("未知的帧类型: " + type);
+            };
+        } catch (BufferUnderflowException e) {
+            throw new IOException("帧数据不完整");
+        }
+    }
+    
+    public byte[] encodeBytes(ChatFrame frame) throws IOException {
+        Writer out = new Writer();
+        if (frame instanceof ChatFrame.Auth f) {
+            out.writeByte(AUTH).writeString(f.token());
+        } else if (frame instanceof ChatFrame.Send f) {
+            out.writeByte(SEND).writeVarLong(f.receiverId()).writeString(f.content());
+        } else if (frame instanceof ChatFrame.Ack f) {
+            out.writeByte(ACK).writeVarLong(f.messageId());
+        } else if (frame instanceof ChatFrame.Replay) {
+            out.writeByte(REPLAY);
+        } else if (frame instanceof ChatFrame.Typing f) {
+            out.writeByte(TYPING).writeVarLong(f.receiverId());
+        } else if (frame instanceof ChatFrame.ReadReceipt f) {
+            out.writeByte(READ_RECEIPT).writeVarLong(f.peerId()).writeVarLong(f.messageId());
+        } else if (frame instanceof ChatFrame.CircleSend f) {
+            out.writeByte(CIRCLE_SEND).writeVarLong(f.circleId()).writeString(f.content());
+        } else if (frame instanceof ChatFrame.CircleRead f) {
+            out.writeByte(CIRCLE_READ).writeVarLong(f.circleId()).writeVarLong(f.messageId());
+        } else if (frame instanceof ChatFrame.AuthSuccess f) {
+            out.writeByte(AUTH_SUCCESS).writeString(f.message());
+        } else if (frame instanceof ChatFrame.Deliver f) {
+            out.writeByte(DELIVER).writeVarLong(f.id()).writeVarLong(f.senderId()).writeString(f.content())
+               .writeVarLong(f.timestamp()).writeByte((byte) (f.offline() ? 1 : 0));
+        } else if (frame instanceof ChatFrame.Sent f) {
+            out.writeByte(SENT).writeVarLong(f.messageId());
+        } else if (frame instanceof ChatFrame.Error f) {
+            out.writeByte(ERROR).writeString(f.message());
+        } else if (frame instanceof ChatFrame.ReplayComplete) {
+            out.writeByte(REPLAY_COMPLETE);
+        } else if (frame instanceof ChatFrame.ReplayBusy) {
+            out.writeByte(REPLAY_BUSY);
+        } else if (frame instanceof ChatFrame.TypingNotice f) {
+            out.writeByte(TYPING_NOTICE).writeVarLong(f.senderId());
+        } else if (frame instanceof ChatFrame.ReadNotice f) {
+            out.writeByte(READ_NOTICE).writeVarLong(f.readerId()).writeVarLong(f.messageId());
+        } else if (frame instanceof ChatFrame.CircleDeliver f) {
+            out.writeByte(CIRCLE_DELIVER).writeVarLong(f.circleId()).writeVarLong(f.id()).writeVarLong(f.senderId())
+               .writeString(f.content()).writeVarLong(f.timestamp());
+        } else if (frame instanceof ChatFrame.CircleSent f) {
+            out.writeByte(CIRCLE_SENT).writeVarLong(f.circleId()).writeVarLong(f.messageId());
+        } else if (frame instanceof ChatFrame.Notify f) {
+            out.writeByte(NOTIFY).writeVarLong(f.id()).writeString(f.type()).writeString(f.content())
+               .writeVarLong(f.relatedId()).writeVarLong(f.senderId()).writeVarLong(f.aggregateCount())
+               .writeVarLong(f.unreadCount());
+        } else if (frame instanceof ChatFrame.UnreadCount f) {
+            out.writeByte(UNREAD_COUNT).writeString(f.category()).writeVarLong(f.count());
+        } else {
+            throw new IOException("不支持的帧类型: " + frame.getClass().getSimpleName());
+        }
+        return out.toByteArray();
+    }
+    
+    private static long readVarLong(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("varint 过长");
+    }
+    
+    private static String readString(ByteBuffer in) throws IOException {
+        // 长度前缀按 long 检查后再转 int，负数或超过剩余字节的长度都视为非法帧
+        long declared = readVarLong(in);
+        if (declared < 0 || declared > in.remaining()) {
+            throw new IOException("字符串长度非法: " + declared);
+        }
+        int length = (int) declared;
+        if (in.hasArray()) {
+            String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * 可增长的字节缓冲，避免 ByteArrayOutputStream 的同步开销
+     */
+    private static final class Writer {
+        private byte[] buf = new byte[64];
+        private int size;
+        
+        Writer writeByte(byte b) {
+            ensure(1);
+            buf[size++] = b;
+            return this;
+        }
+        
+        Writer writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[size++] = (byte) value;
+            return this;
+        }
+        
+        Writer writeString(String value) {
+            byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, size, bytes.length);
+            size += bytes.length;
+            return this;
+        }
+        
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, size);
+        }
+        
+        private void ensure(int extra) {
+            if (size + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+            }
+        }
+    }
+}
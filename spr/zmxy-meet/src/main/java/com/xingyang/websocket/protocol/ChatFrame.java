@@ -0,0 +1,84 @@
+package com.xingyang.websocket.protocol;
+
+/**
+ * /ws/chat 的帧类型，JSON 和二进制编解码共用
+ * 密封接口，所有帧类型都在本文件中声明
+ */
+public sealed interface ChatFrame {
+    
+    // 客户端 -> 服务端
+    
+    record Auth(String token) implements ChatFrame {
+    }
+    
+    record Send(long receiverId, String content) implements ChatFrame {
+    }
+    
+    record Ack(long messageId) implements ChatFrame {
+    }
+    
+    record Replay() implements ChatFrame {
+    }
+    
+    record Typing(long receiverId) implements ChatFrame {
+    }
+    
+    /**
+     * 已读回执：已读完 peerId 发来的、ID 不大于 messageId 的消息
+     */
+    record ReadReceipt(long peerId, long messageId) implements ChatFrame {
+    }
+    
+    record CircleSend(long circleId, String content) implements ChatFrame {
+    }
+    
+    record CircleRead(long circleId, long messageId) implements ChatFrame {
+    }
+    
+    // 服务端 -> 客户端
+    
+    record AuthSuccess(String message) implements ChatFrame {
+    }
+    
+    record Deliver(long id, long senderId, String content, long timestamp, boolean offline) implements ChatFrame {
+    }
+    
+    record Sent(long messageId) implements ChatFrame {
+    }
+    
+    record Error(String message) implements ChatFrame {
+    }
+    
+    record ReplayComplete() implements ChatFrame {
+    }
+    
+    record ReplayBusy() implements ChatFrame {
+    }
+    
+    record TypingNotice(long senderId) implements ChatFrame {
+    }
+    
+    record ReadNotice(long readerId, long messageId) implements ChatFrame {
+    }
+    
+    record CircleDeliver(long circleId, long id, long senderId, String content, long timestamp) implements ChatFrame {
+    }
+    
+    record CircleSent(long circleId, long messageId) implements ChatFrame {
+    }
+    
+    /**
+     * 新通知（或聚合通知人数变化），unreadCount 为推送后的通知未读总数
+     */
+    record Notify(long id, String type, String content, long relatedId, long senderId,
+                  int aggregateCount, long unreadCount) implements ChatFrame {
+    }
+    
+    /**
+     * 未读数变化，category 为 notification 或 message
+     */
+    record UnreadCount(String category, long count) implements ChatFrame {
+        public static final String NOTIFICATION = "notification";
+        public static final String MESSAGE = "message";
+    }
+}
@@ -0,0 +1,20 @@
+package com.xingyang.websocket.protocol;
+
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.IOException;
+
+/**
+ * 帧编解码器，每种实现对应一个 WebSocket 子协议
+ */
+public interface FrameCodec {
+    
+    /**
+     * 握手时协商的子协议名
+     */
+    String getSubprotocol();
+    
+    ChatFrame decode(WebSocketMessage<?> message) throws IOException;
+    
+    WebSocketMessage<?> encode(ChatFrame frame) throws IOException;
+}
@@ -0,0 +1,32 @@
+package com.xingyang.websocket.protocol;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+
+/**
+ * 根据握手协商出的子协议选择编解码器，未协商时使用 JSON
+ */
+@Component
+public class FrameCodecRegistry {
+    
+    private final JsonFrameCodec jsonCodec;
+    private final BinaryFrameCodec binaryCodec;
+    
+    public FrameCodecRegistry(JsonFrameCodec jsonCodec, BinaryFrameCodec binaryCodec) {
+        this.jsonCodec = jsonCodec;
+        this.binaryCodec = binaryCodec;
+    }
+    
+    /**
+     * 服务端支持的子协议，按优先级排列
+     */
+    public List<String> getSubprotocols() {
+        return List.of(binaryCodec.getSubprotocol(), jsonCodec.getSubprotocol());
+    }
+    
+    public FrameCodec forSession(WebSocketSession session) {
+        return BinaryFrameCodec.SUBPROTOCOL.equals(session.getAcceptedProtocol()) ? binaryCodec : jsonCodec;
+    }
+}
@@ -0,0 +1,151 @@
+package com.xingyang.websocket.protocol;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * JSON 文本帧（默认协议，未协商子协议的客户端使用）
+ * 格式与原来一致：{"type": "...", ...}
+ * 使用 Jackson 流式 API 直接读写字段，不构造中间 Map 或树节点，数字不装箱
+ */
+@Component
+public class JsonFrameCodec implements FrameCodec {
+    
+    public static final String SUBPROTOCOL = "zmxy.chat.v1.json";
+    
+    private final JsonFactory jsonFactory;
+    
+    public JsonFrameCodec(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+    
+    @Override
+    public String getSubprotocol() {
+        return SUBPROTOCOL;
+    }
+    
+    @Override
+    public ChatFrame decode(WebSocketMessage<?> message) throws IOException {
+        if (!(message instanceof TextMessage text)) {
+            throw new IOException("JSON 协议只接受文本帧");
+        }
+        
+        String type = null;
+        String token = null;
+        String content = null;
+        long receiverId = 0;
+        long messageId = 0;
+        long peerId = 0;
+        long circleId = 0;
+        
+        try (JsonParser parser = jsonFactory.createParser(text.getPayload())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("帧必须是 JSON 对象");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "type" -> type = parser.getValueAsString();
+                    case "token" -> token = parser.getValueAsString();
+                    case "content" -> content = parser.getValueAsString();
+                    case "receiverId" -> receiverId = parser.getValueAsLong();
+                    case "messageId" -> messageId = parser.getValueAsLong();
+                    case "peerId" -> peerId = parser.getValueAsLong();
+                    case "circleId" -> circleId = parser.getValueAsLong();
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        
+        if (type == null) {
+            throw new IOException("缺少帧类型");
+        }
+        return switch (type) {
+            case "auth" -> new ChatFrame.Auth(token);
+            case "message" -> new ChatFrame.Send(receiverId, content);
+            case "ack" -> new ChatFrame.Ack(messageId);
+            case "replay" -> new ChatFrame.Replay();
+            case "typing" -> new ChatFrame.Typing(receiverId);
+            case "read" -> new ChatFrame.ReadReceipt(peerId, messageId);
+            case "circle_message" -> new ChatFrame.CircleSend(circleId, content);
+            case "circle_read" -> new ChatFrame.CircleRead(circleId, messageId);
+            default -> throw new IOException("未知的帧类型: " + type);
+        };
+    }
+    
+    @Override
+    public WebSocketMessage<?> encode(ChatFrame frame) throws IOException {
+        StringWriter writer = new StringWriter(128);
+        try (JsonGenerator gen = jsonFactory.createGenerator(writer)) {
+            gen.writeStartObject();
+            if (frame instanceof ChatFrame.AuthSuccess f) {
+                gen.writeStringField("type", "auth_success");
+                gen.writeStringField("message", f.message());
+            } else if (frame instanceof ChatFrame.Deliver f) {
+                gen.writeStringField("type", "message");
+                gen.writeNumberField("id", f.id());
+                gen.writeNumberField("senderId", f.senderId());
+                gen.writeStringField("content", f.content());
+                gen.writeNumberField("timestamp", f.timestamp());
+                if (f.offline()) {
+                    gen.writeBooleanField("offline", true);
+                }
+            } else if (frame instanceof ChatFrame.Sent f) {
+                gen.writeStringField("type", "message_sent");
+                gen.writeNumberField("messageId", f.messageId());
+            } else if (frame instanceof ChatFrame.Error f) {
+                gen.writeStringField("type", "error");
+                gen.writeStringField("message", f.message());
+            } else if (frame instanceof ChatFrame.ReplayComplete) {
+                gen.writeStringField("type", "replay_complete");
+            } else if (frame instanceof ChatFrame.ReplayBusy) {
+                gen.writeStringField("type", "replay_busy");
+            } else if (frame instanceof ChatFrame.TypingNotice f) {
+                gen.writeStringField("type", "typing");
+                gen.writeNumberField("senderId", f.senderId());
+            } else if (frame instanceof ChatFrame.ReadNotice f) {
+                gen.writeStringField("type", "read");
+                gen.writeNumberField("readerId", f.readerId());
+                gen.writeNumberField("messageId", f.messageId());
+            } else if (frame instanceof ChatFrame.CircleDeliver f) {
+                gen.writeStringField("type", "circle_message");
+                gen.writeNumberField("circleId", f.circleId());
+                gen.writeNumberField("id", f.id());
+                gen.writeNumberField("senderId", f.senderId());
+                gen.writeStringField("content", f.content());
+                gen.writeNumberField("timestamp", f.timestamp());
+            } else if (frame instanceof ChatFrame.CircleSent f) {
+                gen.writeStringField("type", "circle_message_sent");
+                gen.writeNumberField("circleId", f.circleId());
+                gen.writeNumberField("messageId", f.messageId());
+            } else if (frame instanceof ChatFrame.Notify f) {
+                gen.writeStringField("type", "notification");
+                gen.writeNumberField("id", f.id());
+                gen.writeStringField("notificationType", f.type());
+                gen.writeStringField("content", f.content());
+                gen.writeNumberField("relatedId", f.relatedId());
+                gen.writeNumberField("senderId", f.senderId());
+                gen.writeNumberField("aggregateCount", f.aggregateCount());
+                gen.writeNumberField("unreadCount", f.unreadCount());
+            } else if (frame instanceof ChatFrame.UnreadCount f) {
+                gen.writeStringField("type", "unread_count");
+                gen.writeStringField("category", f.category());
+                gen.writeNumberField("count", f.count());
+            } else {
+                throw new IOException("不支持下发的帧类型: " + frame.getClass().getSimpleName());
+            }
+            gen.writeEndObject();
+        }
+        return new TextMessage(writer.toString());
+    }
+}
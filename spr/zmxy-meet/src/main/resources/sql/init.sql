@@ -60,6 +60,7 @@ CREATE TABLE `tb_circle_member` (
                                     `circle_id` bigint NOT NULL COMMENT '圈子ID',
                                     `user_id` bigint NOT NULL COMMENT '用户ID',
                                     `role` varchar(20) DEFAULT 'member' COMMENT '角色：admin-管理员, member-成员',
+                                    `last_read_message_id` bigint NOT NULL DEFAULT '0' COMMENT '圈子消息已读位置',
                                     `join_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '加入时间',
                                     `deleted` int DEFAULT '0' COMMENT '逻辑删除标记',
                                     PRIMARY KEY (`id`),
@@ -72,16 +73,34 @@ CREATE TABLE `tb_circle_member` (
 -- Records of tb_circle_member
 -- ----------------------------
 BEGIN;
-INSERT INTO `tb_circle_member` (`id`, `circle_id`, `user_id`, `role`, `join_time`, `deleted`) VALUES (1, 1, 1, 'admin', '2025-12-03 13:01:05', 0);
-INSERT INTO `tb_circle_member` (`id`, `circle_id`, `user_id`, `role`, `join_time`, `deleted`) VALUES (2, 1, 2, 'member', '2025-12-03 13:01:05', 0);
-INSERT INTO `tb_circle_member` (`id`, `circle_id`, `user_id`, `role`, `join_time`, `deleted`) VALUES (3, 1, 3, 'member', '2025-12-03 13:01:05', 0);
-INSERT INTO `tb_circle_member` (`id`, `circle_id`, `user_id`, `role`, `join_time`, `deleted`) VALUES (4, 2, 2, 'admin', '2025-12-03 13:01:05', 0);
-INSERT INTO `tb_circle_member` (`id`, `circle_id`, `user_id`, `role`, `join_time`, `deleted`) VALUES (5, 2, 1, 'member', '2025-12-03 13:01:05', 0);
-INSERT INTO `tb_circle_member` (`id`, `circle_id`, `user_id`, `role`, `join_time`, `deleted`) VALUES (6, 3, 1, 'admin', '2025-12-03 13:01:05', 0);
-INSERT INTO `tb_circle_member` (`id`, `circle_id`, `user_id`, `role`, `join_time`, `deleted`) VALUES (7, 3, 2, 'member', '2025-12-03 13:01:05', 0);
-INSERT INTO `tb_circle_member` (`id`, `circle_id`, `user_id`, `role`, `join_time`, `deleted`) VALUES (8, 3, 3, 'member', '2025-12-03 13:01:05', 0);
+INSERT INTO `tb_circle_member` (`id`, `circle_id`, `user_id`, `role`, `last_read_message_id`, `join_time`, `deleted`) VALUES (1, 1, 1, 'admin', 0, '2025-12-03 13:01:05', 0);
+INSERT INTO `tb_circle_member` (`id`, `circle_id`, `user_id`, `role`, `last_read_message_id`, `join_time`, `deleted`) VALUES (2, 1, 2, 'member', 0, '2025-12-03 13:01:05', 0);
+INSERT INTO `tb_circle_member` (`id`, `circle_id`, `user_id`, `role`, `last_read_message_id`, `join_time`, `deleted`) VALUES (3, 1, 3, 'member', 0, '2025-12-03 13:01:05', 0);
+INSERT INTO `tb_circle_member` (`id`, `circle_id`, `user_id`, `role`, `last_read_message_id`, `join_time`, `deleted`) VALUES (4, 2, 2, 'admin', 0, '2025-12-03 13:01:05', 0);
+INSERT INTO `tb_circle_member` (`id`, `circle_id`, `user_id`, `role`, `last_read_message_id`, `join_time`, `deleted`) VALUES (5, 2, 1, 'member', 0, '2025-12-03 13:01:05', 0);
+INSERT INTO `tb_circle_member` (`id`, `circle_id`, `user_id`, `role`, `last_read_message_id`, `join_time`, `deleted`) VALUES (6, 3, 1, 'admin', 0, '2025-12-03 13:01:05', 0);
+INSERT INTO `tb_circle_member` (`id`, `circle_id`, `user_id`, `role`, `last_read_message_id`, `join_time`, `deleted`) VALUES (7, 3, 2, 'member', 0, '2025-12-03 13:01:05', 0);
+INSERT INTO `tb_circle_member` (`id`, `circle_id`, `user_id`, `role`, `last_read_message_id`, `join_time`, `deleted`) VALUES (8, 3, 3, 'member', 0, '2025-12-03 13:01:05', 0);
 COMMIT;
 
+-- ----------------------------
+-- Table structure for tb_circle_message
+-- ----------------------------
+DROP TABLE IF EXISTS `tb_circle_message`;
+CREATE TABLE `tb_circle_message` (
+                                     `id` bigint NOT NULL AUTO_INCREMENT COMMENT '消息ID',
+                                     `circle_id` bigint NOT NULL COMMENT '圈子ID',
+                                     `sender_id` bigint NOT NULL COMMENT '发送者ID',
+                                     `content` text NOT NULL COMMENT '消息内容',
+                                     `type` varchar(20) DEFAULT 'text' COMMENT '消息类型：text-文本, image-图片, video-视频',
+                                     `media_urls` text COMMENT '媒体文件URL（JSON数组）',
+                                     `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+                                     `deleted` int DEFAULT '0' COMMENT '逻辑删除标记',
+                                     PRIMARY KEY (`id`),
+                                     KEY `idx_circle_id` (`circle_id`,`id`),
+                                     KEY `idx_sender` (`sender_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='圈子群聊消息表';
+
 -- ----------------------------
 -- Table structure for tb_comment
 -- ----------------------------
@@ -118,6 +137,36 @@ INSERT INTO `tb_comment` (`id`, `post_id`, `user_id`, `content`, `parent_comment
 INSERT INTO `tb_comment` (`id`, `post_id`, `user_id`, `content`, `parent_comment_id`, `create_time`, `deleted`) VALUES (12, 11, 9, 'sadasd', NULL, '2025-12-03 22:15:22', 0);
 COMMIT;
 
+-- ----------------------------
+-- Table structure for tb_conversation
+-- ----------------------------
+DROP TABLE IF EXISTS `tb_conversation`;
+CREATE TABLE `tb_conversation` (
+                                   `id` bigint NOT NULL AUTO_INCREMENT COMMENT '会话ID',
+                                   `owner_id` bigint NOT NULL COMMENT '会话所属用户ID',
+                                   `peer_id` bigint NOT NULL COMMENT '对话人ID',
+                                   `last_message_id` bigint NOT NULL COMMENT '最后一条消息ID',
+                                   `last_message` varchar(200) DEFAULT NULL COMMENT '最后一条消息内容（截断）',
+                                   `last_message_type` varchar(20) DEFAULT 'text' COMMENT '最后一条消息类型',
+                                   `last_message_time` datetime DEFAULT NULL COMMENT '最后一条消息时间',
+                                   `unread_count` int NOT NULL DEFAULT '0' COMMENT '未读消息数',
+                                   `last_read_message_id` bigint NOT NULL DEFAULT '0' COMMENT '已读到的消息ID',
+                                   `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+                                   PRIMARY KEY (`id`),
+                                   UNIQUE KEY `uk_owner_peer` (`owner_id`,`peer_id`),
+                                   KEY `idx_owner_last_message` (`owner_id`,`last_message_id`)
+) ENGINE=InnoDB AUTO_INCREMENT=5 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='会话摘要表';
+
+-- ----------------------------
+-- Records of tb_conversation
+-- ----------------------------
+BEGIN;
+INSERT INTO `tb_conversation` (`id`, `owner_id`, `peer_id`, `last_message_id`, `last_message`, `last_message_type`, `last_message_time`, `unread_count`, `last_read_message_id`, `update_time`) VALUES (1, 4, 1, 2, 'ccc\n', 'text', '2025-12-03 21:19:55', 0, 2, '2025-12-03 21:19:55');
+INSERT INTO `tb_conversation` (`id`, `owner_id`, `peer_id`, `last_message_id`, `last_message`, `last_message_type`, `last_message_time`, `unread_count`, `last_read_message_id`, `update_time`) VALUES (2, 1, 4, 2, 'ccc\n', 'text', '2025-12-03 21:19:55', 2, 0, '2025-12-03 21:19:55');
+INSERT INTO `tb_conversation` (`id`, `owner_id`, `peer_id`, `last_message_id`, `last_message`, `last_message_type`, `last_message_time`, `unread_count`, `last_read_message_id`, `update_time`) VALUES (3, 7, 4, 3, 'aaaa', 'text', '2025-12-03 22:03:25', 0, 3, '2025-12-03 22:03:25');
+INSERT INTO `tb_conversation` (`id`, `owner_id`, `peer_id`, `last_message_id`, `last_message`, `last_message_type`, `last_message_time`, `unread_count`, `last_read_message_id`, `update_time`) VALUES (4, 4, 7, 3, 'aaaa', 'text', '2025-12-03 22:03:25', 1, 0, '2025-12-03 22:03:25');
+COMMIT;
+
 -- ----------------------------
 -- Table structure for tb_message
 -- ----------------------------
@@ -126,6 +175,7 @@ CREATE TABLE `tb_message` (
                               `id` bigint NOT NULL AUTO_INCREMENT COMMENT '消息ID',
                               `sender_id` bigint NOT NULL COMMENT '发送者ID',
                               `receiver_id` bigint NOT NULL COMMENT '接收者ID',
+                              `conversation_key` varchar(41) NOT NULL DEFAULT '' COMMENT '会话键：较小用户ID_较大用户ID',
                               `content` text NOT NULL COMMENT '消息内容',
                               `type` varchar(20) DEFAULT 'text' COMMENT '消息类型：text-文本, image-图片, video-视频',
                               `media_urls` text COMMENT '媒体文件URL（JSON数组）',
@@ -135,16 +185,17 @@ CREATE TABLE `tb_message` (
                               PRIMARY KEY (`id`),
                               KEY `idx_sender` (`sender_id`),
                               KEY `idx_receiver` (`receiver_id`),
-                              KEY `idx_create_time` (`create_time`)
+                              KEY `idx_create_time` (`create_time`),
+                              KEY `idx_conversation` (`conversation_key`,`id`)
 ) ENGINE=InnoDB AUTO_INCREMENT=4 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='消息表';
 
 -- ----------------------------
 -- Records of tb_message
 -- ----------------------------
 BEGIN;
-INSERT INTO `tb_message` (`id`, `sender_id`, `receiver_id`, `content`, `type`, `media_urls`, `is_read`, `create_time`, `deleted`) VALUES (1, 4, 1, 'aaa1', 'text', NULL, 0, '2025-12-03 21:19:30', 0);
-INSERT INTO `tb_message` (`id`, `sender_id`, `receiver_id`, `content`, `type`, `media_urls`, `is_read`, `create_time`, `deleted`) VALUES (2, 4, 1, 'ccc\n', 'text', NULL, 0, '2025-12-03 21:19:55', 0);
-INSERT INTO `tb_message` (`id`, `sender_id`, `receiver_id`, `content`, `type`, `media_urls`, `is_read`, `create_time`, `deleted`) VALUES (3, 7, 4, 'aaaa', 'text', NULL, 0, '2025-12-03 22:03:25', 0);
+INSERT INTO `tb_message` (`id`, `sender_id`, `receiver_id`, `conversation_key`, `content`, `type`, `media_urls`, `is_read`, `create_time`, `deleted`) VALUES (1, 4, 1, '1_4', 'aaa1', 'text', NULL, 0, '2025-12-03 21:19:30', 0);
+INSERT INTO `tb_message` (`id`, `sender_id`, `receiver_id`, `conversation_key`, `content`, `type`, `media_urls`, `is_read`, `create_time`, `deleted`) VALUES (2, 4, 1, '1_4', 'ccc\n', 'text', NULL, 0, '2025-12-03 21:19:55', 0);
+INSERT INTO `tb_message` (`id`, `sender_id`, `receiver_id`, `conversation_key`, `content`, `type`, `media_urls`, `is_read`, `create_time`, `deleted`) VALUES (3, 7, 4, '4_7', 'aaaa', 'text', NULL, 0, '2025-12-03 22:03:25', 0);
 COMMIT;
 
 -- ----------------------------
@@ -159,11 +210,13 @@ CREATE TABLE `tb_notification` (
                                    `content` text NOT NULL COMMENT '通知内容',
                                    `related_id` bigint DEFAULT NULL COMMENT '关联ID（如动态ID、评论ID等）',
                                    `is_read` tinyint(1) DEFAULT '0' COMMENT '是否已读',
+                                   `aggregate_count` int NOT NULL DEFAULT '1' COMMENT '聚合的通知条数（触发人数）',
                                    `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+                                   `update_time` datetime DEFAULT NULL COMMENT '最近一次聚合时间',
                                    `deleted` int DEFAULT '0' COMMENT '逻辑删除标记',
                                    PRIMARY KEY (`id`),
                                    KEY `idx_user` (`user_id`),
-                                   KEY `idx_is_read` (`is_read`),
+                                   KEY `idx_user_read` (`user_id`,`is_read`),
                                    KEY `idx_sender` (`sender_id`)
 ) ENGINE=InnoDB AUTO_INCREMENT=11 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='通知表';
 
@@ -325,4 +378,17 @@ INSERT INTO `tb_user` (`id`, `username`, `password`, `nickname`, `email`, `avata
 INSERT INTO `tb_user` (`id`, `username`, `password`, `nickname`, `email`, `avatar_url`, `school_verified`, `campus`, `create_time`, `update_time`, `deleted`) VALUES (10, 'aaaa', '$2a$10$s7PJW8HHmFN69oDMyjzqnOGVpDpwaQUqFMxuTIdoqYXnT6Moni/BW', 'aaaa', 'aaaa', NULL, 0, NULL, '2025-12-03 21:40:54', '2025-12-03 21:40:54', 0);
 COMMIT;
 
+-- ----------------------------
+-- Table structure for tb_user_stats
+-- ----------------------------
+DROP TABLE IF EXISTS `tb_user_stats`;
+CREATE TABLE `tb_user_stats` (
+                                 `user_id` bigint NOT NULL COMMENT '用户ID',
+                                 `posts_count` int NOT NULL DEFAULT '0' COMMENT '动态数',
+                                 `followers_count` int NOT NULL DEFAULT '0' COMMENT '粉丝数',
+                                 `following_count` int NOT NULL DEFAULT '0' COMMENT '关注数',
+                                 `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+                                 PRIMARY KEY (`user_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='用户计数表';
+
 SET FOREIGN_KEY_CHECKS = 1;
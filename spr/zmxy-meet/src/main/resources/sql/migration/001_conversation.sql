@@ -0,0 +1,32 @@
+-- 会话摘要表：每个 (owner, peer) 一行，由发送消息和标记已读维护
+CREATE TABLE IF NOT EXISTS `tb_conversation` (
+                                   `id` bigint NOT NULL AUTO_INCREMENT COMMENT '会话ID',
+                                   `owner_id` bigint NOT NULL COMMENT '会话所属用户ID',
+                                   `peer_id` bigint NOT NULL COMMENT '对话人ID',
+                                   `last_message_id` bigint NOT NULL COMMENT '最后一条消息ID',
+                                   `last_message` varchar(200) DEFAULT NULL COMMENT '最后一条消息内容（截断）',
+                                   `last_message_type` varchar(20) DEFAULT 'text' COMMENT '最后一条消息类型',
+                                   `last_message_time` datetime DEFAULT NULL COMMENT '最后一条消息时间',
+                                   `unread_count` int NOT NULL DEFAULT '0' COMMENT '未读消息数',
+                                   `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+                                   PRIMARY KEY (`id`),
+                                   UNIQUE KEY `uk_owner_peer` (`owner_id`,`peer_id`),
+                                   KEY `idx_owner_last_message` (`owner_id`,`last_message_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='会话摘要表';
+
+-- 用已有消息回填会话摘要
+INSERT INTO `tb_conversation` (`owner_id`, `peer_id`, `last_message_id`, `last_message`, `last_message_type`, `last_message_time`, `unread_count`)
+SELECT c.owner_id, c.peer_id, m.id, LEFT(m.content, 200), m.type, m.create_time, c.unread_count
+FROM (
+    SELECT owner_id, peer_id, MAX(id) AS last_id, SUM(unread) AS unread_count
+    FROM (
+        SELECT sender_id AS owner_id, receiver_id AS peer_id, id, 0 AS unread
+        FROM tb_message WHERE deleted = 0
+        UNION ALL
+        SELECT receiver_id AS owner_id, sender_id AS peer_id, id, IF(is_read = 0, 1, 0) AS unread
+        FROM tb_message WHERE deleted = 0 AND sender_id <> receiver_id
+    ) t
+    GROUP BY owner_id, peer_id
+) c
+JOIN tb_message m ON m.id = c.last_id
+ON DUPLICATE KEY UPDATE `last_message_id` = VALUES(`last_message_id`);
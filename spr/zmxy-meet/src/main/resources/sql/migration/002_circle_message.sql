@@ -0,0 +1,17 @@
+-- 圈子群聊：消息只存一行，成员已读位置记录在 tb_circle_member
+CREATE TABLE IF NOT EXISTS `tb_circle_message` (
+                                     `id` bigint NOT NULL AUTO_INCREMENT COMMENT '消息ID',
+                                     `circle_id` bigint NOT NULL COMMENT '圈子ID',
+                                     `sender_id` bigint NOT NULL COMMENT '发送者ID',
+                                     `content` text NOT NULL COMMENT '消息内容',
+                                     `type` varchar(20) DEFAULT 'text' COMMENT '消息类型：text-文本, image-图片, video-视频',
+                                     `media_urls` text COMMENT '媒体文件URL（JSON数组）',
+                                     `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+                                     `deleted` int DEFAULT '0' COMMENT '逻辑删除标记',
+                                     PRIMARY KEY (`id`),
+                                     KEY `idx_circle_id` (`circle_id`,`id`),
+                                     KEY `idx_sender` (`sender_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='圈子群聊消息表';
+
+ALTER TABLE `tb_circle_member`
+    ADD COLUMN `last_read_message_id` bigint NOT NULL DEFAULT '0' COMMENT '圈子消息已读位置' AFTER `role`;
@@ -0,0 +1,15 @@
+-- 会话已读位置：替代逐行更新 tb_message.is_read
+ALTER TABLE `tb_conversation`
+    ADD COLUMN `last_read_message_id` bigint NOT NULL DEFAULT '0' COMMENT '已读到的消息ID' AFTER `unread_count`;
+
+-- 用已有的 is_read 回填：已读到最后一条已读消息
+UPDATE `tb_conversation` c
+    JOIN (SELECT receiver_id, sender_id, MAX(id) AS read_id
+          FROM tb_message WHERE is_read = 1 AND deleted = 0
+          GROUP BY receiver_id, sender_id) r
+    ON r.receiver_id = c.owner_id AND r.sender_id = c.peer_id
+SET c.last_read_message_id = r.read_id;
+
+-- 没有未读的会话直接视为已读到最后一条
+UPDATE `tb_conversation` SET last_read_message_id = last_message_id
+WHERE unread_count = 0 AND last_read_message_id < last_message_id;
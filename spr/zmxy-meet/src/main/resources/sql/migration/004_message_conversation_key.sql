@@ -0,0 +1,14 @@
+-- 私信会话键：双向消息共用一个键，配合 (conversation_key, id) 索引查询会话历史
+-- 原先的 (sender=a AND receiver=b) OR (sender=b AND receiver=a) 只能走单列索引后回表过滤
+ALTER TABLE `tb_message`
+    ADD COLUMN `conversation_key` varchar(41) NOT NULL DEFAULT '' COMMENT '会话键：较小用户ID_较大用户ID' AFTER `receiver_id`,
+    ALGORITHM=INPLACE, LOCK=NONE;
+
+-- 回填历史数据，大表可按 id 区间分批执行
+UPDATE `tb_message`
+SET conversation_key = CONCAT(LEAST(sender_id, receiver_id), '_', GREATEST(sender_id, receiver_id))
+WHERE conversation_key = '';
+
+ALTER TABLE `tb_message`
+    ADD INDEX `idx_conversation` (`conversation_key`, `id`),
+    ALGORITHM=INPLACE, LOCK=NONE;
@@ -0,0 +1,5 @@
+-- 通知未读统计和全部已读按 (user_id, is_read) 定位，单列 is_read 区分度太低，去掉
+ALTER TABLE `tb_notification`
+    ADD INDEX `idx_user_read` (`user_id`, `is_read`),
+    DROP INDEX `idx_is_read`,
+    ALGORITHM=INPLACE, LOCK=NONE;
@@ -0,0 +1,5 @@
+-- 通知聚合：窗口内同一动态的点赞/评论、关注合并为一条，记录人数和最近一次聚合时间
+ALTER TABLE `tb_notification`
+    ADD COLUMN `aggregate_count` int NOT NULL DEFAULT '1' COMMENT '聚合的通知条数（触发人数）' AFTER `is_read`,
+    ADD COLUMN `update_time` datetime DEFAULT NULL COMMENT '最近一次聚合时间' AFTER `create_time`,
+    ALGORITHM=INPLACE, LOCK=NONE;
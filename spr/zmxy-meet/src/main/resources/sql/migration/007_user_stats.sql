@@ -0,0 +1,21 @@
+-- 用户计数表：动态数、粉丝数、关注数随发帖/删帖、关注/取关增减，个人主页不再每次 COUNT
+CREATE TABLE IF NOT EXISTS `tb_user_stats` (
+                                 `user_id` bigint NOT NULL COMMENT '用户ID',
+                                 `posts_count` int NOT NULL DEFAULT '0' COMMENT '动态数',
+                                 `followers_count` int NOT NULL DEFAULT '0' COMMENT '粉丝数',
+                                 `following_count` int NOT NULL DEFAULT '0' COMMENT '关注数',
+                                 `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+                                 PRIMARY KEY (`user_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='用户计数表';
+
+-- 用已有数据回填
+INSERT INTO `tb_user_stats` (`user_id`, `posts_count`, `followers_count`, `following_count`)
+SELECT u.id,
+       (SELECT COUNT(*) FROM tb_post p WHERE p.user_id = u.id AND p.deleted = 0),
+       (SELECT COUNT(*) FROM tb_relation r WHERE r.user_id_b = u.id AND r.deleted = 0),
+       (SELECT COUNT(*) FROM tb_relation r WHERE r.user_id_a = u.id AND r.deleted = 0)
+FROM tb_user u
+WHERE u.deleted = 0
+ON DUPLICATE KEY UPDATE `posts_count` = VALUES(`posts_count`),
+                        `followers_count` = VALUES(`followers_count`),
+                        `following_count` = VALUES(`following_count`);
@@ -0,0 +1,263 @@
+package com.xingyang.mapper;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 热点查询的执行计划回归检查：从 Mapper 注解中取出真实 SQL 执行 EXPLAIN，
+ * 索引用不上（退化成全表扫描）时测试失败。
+ * 使用 Testcontainers 启动 MySQL，依次执行 init.sql 和 sql/migration 下的全部迁移脚本，
+ * 再为热点表各灌入 SEED_ROWS 行数据并 ANALYZE；没有 Docker 时跳过。
+ * 数据量很小时优化器可能直接选全表扫描，此时只检查索引是否可用（possible_keys），
+ * 表行数达到 queryplan.min-rows（默认 1000）才要求真正走到期望的索引。
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class QueryPlanTest {
+
+    private static final int SEED_ROWS = 5000;
+
+    private static final String[] MIGRATIONS = {
+            "001_conversation.sql",
+            "002_circle_message.sql",
+            "003_conversation_read_cursor.sql",
+            "004_message_conversation_key.sql",
+            "005_notification_user_read_index.sql",
+            "006_notification_aggregate.sql",
+            "007_user_stats.sql",
+    };
+
+    /**
+     * init.sql 已包含迁移后的表结构，迁移脚本在其上重复执行时这些错误表示“已经迁移过”：
+     * 1060 列已存在、1061 索引已存在、1091 要删除的索引不存在
+     */
+    private static final Set<Integer> ALREADY_APPLIED = Set.of(1060, 1061, 1091);
+
+    @Container
+    static final MySQLContainer<?> MYSQL = new MySQLContainer<>(DockerImageName.parse("mysql:8.0"));
+
+    private static Connection connection;
+    private static MybatisConfiguration configuration;
+    private static long minRows;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        // init.sql 会 CREATE DATABASE zmxy_meet 并 USE，需要 root 权限；之后同一连接都在 zmxy_meet 上
+        connection = DriverManager.getConnection(MYSQL.getJdbcUrl(), "root", MYSQL.getPassword());
+        runScript("sql/init.sql", false);
+        for (String migration : MIGRATIONS) {
+            runScript("sql/migration/" + migration, true);
+        }
+        seed();
+        minRows = Long.getLong("queryplan.min-rows", 1000L);
+
+        configuration = new MybatisConfiguration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.addMapper(MessageMapper.class);
+        configuration.addMapper(ConversationMapper.class);
+        configuration.addMapper(CircleMemberMapper.class);
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    /**
+     * 按行尾分号切分脚本逐条执行，跳过 -- 和块注释
+     */
+    private static void runScript(String resource, boolean tolerateApplied) throws Exception {
+        List<String> statements = new ArrayList<>();
+        try (InputStream in = QueryPlanTest.class.getClassLoader().getResourceAsStream(resource)) {
+            assertNotNull(in, "找不到脚本 " + resource);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            StringBuilder current = new StringBuilder();
+            boolean inBlockComment = false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (inBlockComment) {
+                    inBlockComment = !trimmed.endsWith("*/");
+                    continue;
+                }
+                if (trimmed.startsWith("/*")) {
+                    inBlockComment = !trimmed.endsWith("*/");
+                    continue;
+                }
+                if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                    continue;
+                }
+                current.append(line).append('\n');
+                if (trimmed.endsWith(";")) {
+                    statements.add(current.substring(0, current.lastIndexOf(";")));
+                    current.setLength(0);
+                }
+            }
+        }
+
+        try (Statement st = connection.createStatement()) {
+            for (String sql : statements) {
+                try {
+                    st.execute(sql);
+                } catch (SQLException e) {
+                    if (!tolerateApplied || !ALREADY_APPLIED.contains(e.getErrorCode())) {
+                        throw new IllegalStateException(resource + " 执行失败: " + sql, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 灌入足够的数据让优化器按真实分布选择索引，查询条件里用到的 ID 只对应 init.sql 里的少量行
+     */
+    private static void seed() throws Exception {
+        String seq = "WITH RECURSIVE seq (n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < " + SEED_ROWS + ") ";
+        try (Statement st = connection.createStatement()) {
+            st.execute("SET SESSION cte_max_recursion_depth = " + (SEED_ROWS + 1));
+            st.execute("INSERT INTO tb_message (sender_id, receiver_id, conversation_key, content, type, is_read, deleted) "
+                    + seq + "SELECT n % 200 + 10, (n * 7) % 200 + 10, "
+                    + "CONCAT(LEAST(n % 200 + 10, (n * 7) % 200 + 10), '_', GREATEST(n % 200 + 10, (n * 7) % 200 + 10)), "
+                    + "'seed', 'text', 0, 0 FROM seq");
+            st.execute("INSERT INTO tb_conversation (owner_id, peer_id, last_message_id, unread_count, last_read_message_id) "
+                    + seq + "SELECT n % 500 + 10, n DIV 500 + 1000, n, n % 3, 0 FROM seq");
+            st.execute("INSERT INTO tb_circle_member (circle_id, user_id, role, last_read_message_id, deleted) "
+                    + seq + "SELECT n % 100 + 10, n DIV 100 + 100, 'member', 0, 0 FROM seq");
+            st.execute("INSERT INTO tb_circle_message (circle_id, sender_id, content, type, deleted) "
+                    + seq + "SELECT n % 100 + 10, n % 50 + 100, 'seed', 'text', 0 FROM seq");
+            st.execute("ANALYZE TABLE tb_message, tb_conversation, tb_circle_member, tb_circle_message");
+        }
+    }
+
+    @Test
+    void chatHistoryPageUsesConversationIndex() throws Exception {
+        assertPlan(MessageMapper.class, "selectHistoryPage",
+                Map.of("conversationKey", "1_4", "offset", 0L, "limit", 50),
+                Map.of("tb_message", uses("tb_message", "idx_conversation")));
+    }
+
+    @Test
+    void chatHistoryCursorUsesConversationIndex() throws Exception {
+        Map<String, Object> params = new HashMap<>();
+        params.put("conversationKey", "1_4");
+        params.put("beforeId", 1000L);
+        params.put("limit", 51);
+        assertPlan(MessageMapper.class, "selectHistoryBefore", params,
+                Map.of("tb_message", uses("tb_message", "idx_conversation")));
+    }
+
+    @Test
+    void offlineReplayUsesReceiverIndex() throws Exception {
+        assertPlan(MessageMapper.class, "selectUndelivered",
+                Map.of("receiverId", 1L, "afterId", 0L, "limit", 100),
+                Map.of("tb_message", uses("tb_message", "idx_receiver")));
+    }
+
+    @Test
+    void unreadMessagesUseReadCursorRange() throws Exception {
+        assertPlan(MessageMapper.class, "selectUnreadByReadCursor",
+                Map.of("userId", 1L),
+                Map.of("c", uses("tb_conversation", "uk_owner_peer", "idx_owner_last_message"),
+                        "m", uses("tb_message", "idx_conversation")));
+    }
+
+    @Test
+    void totalUnreadUsesOwnerIndex() throws Exception {
+        assertPlan(ConversationMapper.class, "sumUnread",
+                Map.of("ownerId", 1L),
+                Map.of("tb_conversation", uses("tb_conversation", "uk_owner_peer", "idx_owner_last_message")));
+    }
+
+    @Test
+    void circleUnreadCountsUseCircleIndex() throws Exception {
+        assertPlan(CircleMemberMapper.class, "selectUnreadCounts",
+                Map.of("userId", 1L),
+                Map.of("m", uses("tb_circle_member", "idx_user"),
+                        "c", uses("tb_circle_message", "idx_circle_id")));
+    }
+
+    /**
+     * 某张表允许使用的索引
+     */
+    private record Expected(String table, Set<String> keys) {
+    }
+
+    private static Expected uses(String table, String... keys) {
+        return new Expected(table, Set.of(keys));
+    }
+
+    /**
+     * expected：EXPLAIN 中的表名或别名 -> 期望
+     */
+    private void assertPlan(Class<?> mapper, String method, Map<String, Object> params,
+                            Map<String, Expected> expected) throws Exception {
+        String statementId = mapper.getName() + "." + method;
+        MappedStatement ms = configuration.getMappedStatement(statementId);
+        BoundSql boundSql = ms.getSqlSource().getBoundSql(params);
+
+        Set<String> seen = new HashSet<>();
+        try (PreparedStatement ps = connection.prepareStatement("EXPLAIN " + boundSql.getSql())) {
+            List<ParameterMapping> mappings = boundSql.getParameterMappings();
+            for (int i = 0; i < mappings.size(); i++) {
+                String property = mappings.get(i).getProperty();
+                ps.setObject(i + 1, boundSql.hasAdditionalParameter(property)
+                        ? boundSql.getAdditionalParameter(property) : params.get(property));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String alias = rs.getString("table");
+                    Expected exp = alias != null ? expected.get(alias) : null;
+                    if (exp == null) {
+                        continue;
+                    }
+                    seen.add(alias);
+                    List<String> possibleKeys = Arrays.asList(Objects.toString(rs.getString("possible_keys"), "").split(","));
+                    String key = rs.getString("key");
+                    String type = rs.getString("type");
+                    String plan = statementId + " / " + exp.table() + ": type=" + type + ", key=" + key
+                            + ", possible_keys=" + possibleKeys;
+
+                    assertTrue(exp.keys().contains(key) || exp.keys().stream().anyMatch(possibleKeys::contains),
+                            "期望的索引不可用 " + exp.keys() + "，" + plan);
+                    if (countRows(exp.table()) >= minRows) {
+                        assertFalse("ALL".equals(type) || "index".equals(type), "退化为全表扫描，" + plan);
+                        assertTrue(exp.keys().contains(key), "没有使用期望的索引 " + exp.keys() + "，" + plan);
+                    }
+                }
+            }
+        }
+        assertEquals(expected.keySet(), seen, statementId + " 的执行计划中缺少预期的表");
+    }
+
+    private long countRows(String table) throws Exception {
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.xingyang.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 开放寻址集合：0 哨兵、探测链冲突、跨数组末尾的删除前移和扩容
+ */
+public class LongHashSetTest {
+
+    /**
+     * new LongHashSet(8) 的槽数，插入不超过 8 个非 0 元素时不会扩容
+     */
+    private static final int CAPACITY = 16;
+
+    @Test
+    void addRemoveContains() {
+        LongHashSet set = new LongHashSet();
+        assertTrue(set.isEmpty());
+        assertTrue(set.add(1L));
+        assertTrue(set.add(-1L));
+        assertTrue(set.add(Long.MIN_VALUE));
+        assertFalse(set.add(1L));
+        assertEquals(3, set.size());
+        assertTrue(set.contains(-1L));
+        assertFalse(set.contains(2L));
+
+        assertTrue(set.remove(-1L));
+        assertFalse(set.remove(-1L));
+        assertFalse(set.contains(-1L));
+        assertEquals(2, set.size());
+    }
+
+    @Test
+    void zeroIsStoredSeparatelyFromEmptySlots() {
+        LongHashSet set = new LongHashSet();
+        assertFalse(set.contains(0L));
+        assertFalse(set.remove(0L));
+
+        assertTrue(set.add(0L));
+        assertFalse(set.add(0L));
+        assertTrue(set.contains(0L));
+        assertEquals(1, set.size());
+        assertArrayEquals(new long[]{0L}, set.toArray());
+
+        set.add(5L);
+        assertTrue(set.remove(0L));
+        assertFalse(set.contains(0L));
+        assertTrue(set.contains(5L));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    void collidingKeysShareProbeChain() {
+        List<Long> keys = keysWithHome(3, 4);
+        LongHashSet set = new LongHashSet(8);
+        keys.forEach(set::add);
+        keys.forEach(k -> assertTrue(set.contains(k)));
+
+        // 删掉链中间的一个，后面的元素仍然能找到
+        assertTrue(set.remove(keys.get(1)));
+        assertFalse(set.contains(keys.get(1)));
+        assertTrue(set.contains(keys.get(0)));
+        assertTrue(set.contains(keys.get(2)));
+        assertTrue(set.contains(keys.get(3)));
+
+        // 删掉的位置可以被重新使用
+        assertTrue(set.add(keys.get(1)));
+        keys.forEach(k -> assertTrue(set.contains(k)));
+        assertEquals(4, set.size());
+    }
+
+    @Test
+    void removeShiftsBackAcrossArrayEnd() {
+        // 三个 key 落在最后一个槽，探测链绕回 0、1；再放一个本来就落在 0 号槽的 key，被挤到 2
+        List<Long> tail = keysWithHome(CAPACITY - 1, 3);
+        long atZero = keysWithHome(0, 1).get(0);
+        LongHashSet set = new LongHashSet(8);
+        tail.forEach(set::add);
+        set.add(atZero);
+
+        assertTrue(set.remove(tail.get(0)));
+        assertFalse(set.contains(tail.get(0)));
+        assertTrue(set.contains(tail.get(1)));
+        assertTrue(set.contains(tail.get(2)));
+        assertTrue(set.contains(atZero));
+
+        assertTrue(set.remove(tail.get(2)));
+        assertTrue(set.contains(tail.get(1)));
+        assertTrue(set.contains(atZero));
+        assertEquals(2, set.size());
+        assertEquals(2, set.toArray().length);
+    }
+
+    @Test
+    void growsPastInitialCapacity() {
+        LongHashSet set = new LongHashSet();
+        for (long v = 0; v < 10_000; v++) {
+            assertTrue(set.add(v * 31));
+        }
+        assertEquals(10_000, set.size());
+        for (long v = 0; v < 10_000; v++) {
+            assertTrue(set.contains(v * 31));
+            assertFalse(set.contains(v * 31 + 1));
+        }
+        long[] values = set.toArray();
+        Arrays.sort(values);
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(i * 31L, values[i]);
+        }
+    }
+
+    @Test
+    void matchesHashSetUnderRandomOperations() {
+        // 取值范围小，冲突、重复删除、删后再加都会频繁出现
+        Random random = new Random(42);
+        LongHashSet set = new LongHashSet();
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 50_000; i++) {
+            long value = random.nextInt(512) - 256;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                assertEquals(expected.add(value), set.add(value));
+            }
+            assertEquals(expected.size(), set.size());
+        }
+        for (long v = -256; v < 256; v++) {
+            assertEquals(expected.contains(v), set.contains(v), String.valueOf(v));
+        }
+        Set<Long> actual = new HashSet<>();
+        set.forEach(actual::add);
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * 找出 count 个在 16 槽表中落在同一个槽的非 0 key，散列方式与 LongHashSet 一致
+     */
+    private static List<Long> keysWithHome(int home, int count) {
+        List<Long> keys = new ArrayList<>();
+        for (long v = 1; keys.size() < count; v++) {
+            if ((mix(v) & (CAPACITY - 1)) == home) {
+                keys.add(v);
+            }
+        }
+        return keys;
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,87 @@
+package com.xingyang.websocket;
+
+import com.xingyang.websocket.protocol.FrameCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 发送队列：对端卡住时按发送时限和积压字节上限断开，写线程不被长期占用
+ */
+public class OutboundSessionTest {
+
+    private OutboundSessionManager manager;
+
+    @AfterEach
+    void tearDown() {
+        if (manager != null) {
+            manager.shutdown();
+        }
+    }
+
+    @Test
+    void stalledSendIsClosedAndWriterIsReleased() throws Exception {
+        // 只有一个写线程：卡住的连接被断开之前，另一个连接的消息发不出去
+        manager = new OutboundSessionManager(16, 200, 65536, OutboundSession.OverflowPolicy.DISCONNECT, 1);
+        WebSocketSession stalled = blockingSession("stalled");
+        WebSocketSession healthy = mock(WebSocketSession.class);
+        when(healthy.getId()).thenReturn("healthy");
+        when(healthy.getAttributes()).thenReturn(new ConcurrentHashMap<>());
+        when(healthy.isOpen()).thenReturn(true);
+
+        assertTrue(manager.open(stalled, mock(FrameCodec.class)).send(new TextMessage("first")));
+        TextMessage message = new TextMessage("second");
+        assertTrue(manager.open(healthy, mock(FrameCodec.class)).send(message));
+
+        verify(stalled, timeout(3000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        verify(healthy, timeout(3000)).sendMessage(message);
+        assertEquals(1L, manager.stats().get("disconnected"));
+    }
+
+    @Test
+    void exceedingBufferSizeLimitDisconnects() throws Exception {
+        manager = new OutboundSessionManager(16, 60000, 100, OutboundSession.OverflowPolicy.DROP, 1);
+        WebSocketSession stalled = blockingSession("stalled");
+        OutboundSession outbound = manager.open(stalled, mock(FrameCodec.class));
+
+        // 第一条进入发送并卡住，第二条让积压超过 100 字节
+        assertTrue(outbound.send(new TextMessage("x".repeat(60))));
+        assertFalse(outbound.send(new TextMessage("y".repeat(60))));
+
+        verify(stalled, timeout(3000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertFalse(outbound.send(new TextMessage("z")));
+        assertEquals(1L, manager.stats().get("dropped"));
+    }
+
+    /**
+     * sendMessage 一直阻塞直到连接被关闭，模拟不读数据的对端
+     */
+    private WebSocketSession blockingSession(String id) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        AtomicBoolean open = new AtomicBoolean(true);
+        CountDownLatch closed = new CountDownLatch(1);
+        when(session.getId()).thenReturn(id);
+        when(session.getAttributes()).thenReturn(new ConcurrentHashMap<>());
+        when(session.isOpen()).thenAnswer(invocation -> open.get());
+        doAnswer(invocation -> {
+            closed.await();
+            throw new IOException("连接已关闭");
+        }).when(session).sendMessage(any());
+        doAnswer(invocation -> {
+            open.set(false);
+            closed.countDown();
+            return null;
+        }).when(session).close(any(CloseStatus.class));
+        return session;
+    }
+}
@@ -0,0 +1,139 @@
+package com.xingyang.websocket;
+
+import com.xingyang.websocket.protocol.FrameCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.web.socket.WebSocketSession;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 会话注册表：在线登记、重复登录踢掉旧连接（本节点和跨节点）
+ * 使用 Testcontainers 启动 Redis，没有 Docker 时跳过
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class WebSocketSessionRegistryTest {
+
+    @Container
+    static final GenericContainer<?> REDIS = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redis;
+    private final List<RedisMessageListenerContainer> containers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(REDIS.getHost(), REDIS.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redis = new StringRedisTemplate(connectionFactory);
+        redis.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (RedisMessageListenerContainer container : containers) {
+            container.destroy();
+        }
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void registerRecordsPresenceAndUnregisterClearsIt() {
+        WebSocketSessionRegistry registry = newRegistry("node-a");
+        OutboundSession session = newSession();
+
+        assertNull(registry.register(1L, session));
+        assertEquals("node-a", registry.findNode(1L));
+        assertSame(session, registry.getLocalSession(1L));
+
+        registry.unregister(1L, session);
+        assertNull(registry.findNode(1L));
+        assertNull(registry.getLocalSession(1L));
+    }
+
+    @Test
+    void secondLoginOnSameNodeClosesOldSession() throws Exception {
+        WebSocketSessionRegistry registry = newRegistry("node-a");
+        OutboundSession first = newSession();
+        OutboundSession second = newSession();
+
+        registry.register(1L, first);
+        assertSame(first, registry.register(1L, second));
+
+        verify(first.getSession()).close(WebSocketSessionRegistry.REPLACED);
+        verify(second.getSession(), never()).close(any());
+        assertSame(second, registry.getLocalSession(1L));
+
+        // 旧连接随后触发的注销不能删掉新连接的登记
+        registry.unregister(1L, first);
+        assertSame(second, registry.getLocalSession(1L));
+        assertEquals("node-a", registry.findNode(1L));
+    }
+
+    @Test
+    void secondLoginOnOtherNodeClosesOldSession() throws Exception {
+        WebSocketSessionRegistry nodeA = newRegistry("node-a");
+        WebSocketSessionRegistry nodeB = newRegistry("node-b");
+        awaitSubscribed("ws:kick:node-a");
+
+        OutboundSession onA = newSession();
+        OutboundSession onB = newSession();
+        nodeA.register(1L, onA);
+        nodeB.register(1L, onB);
+
+        verify(onA.getSession(), timeout(5000)).close(WebSocketSessionRegistry.REPLACED);
+        assertEquals("node-b", nodeA.findNode(1L));
+
+        // 节点 A 上的旧连接关闭后注销，不影响节点 B 的登记
+        nodeA.unregister(1L, onA);
+        assertEquals("node-b", nodeB.findNode(1L));
+        assertSame(onB, nodeB.getLocalSession(1L));
+    }
+
+    private WebSocketSessionRegistry newRegistry(String nodeId) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.afterPropertiesSet();
+        container.start();
+        containers.add(container);
+        return new WebSocketSessionRegistry(redis, container, nodeId, 90);
+    }
+
+    private OutboundSession newSession() {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        return new OutboundSession(session, mock(FrameCodec.class), 16, 65536, Runnable::run,
+                OutboundSession.OverflowPolicy.DISCONNECT, new OutboundSessionManager.Metrics());
+    }
+
+    /**
+     * 订阅是异步建立的，等频道有订阅者后再开始
+     */
+    private void awaitSubscribed(String channel) throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            Long receivers = redis.convertAndSend(channel, "0");
+            if (receivers != null && receivers > 0) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        fail("订阅未建立: " + channel);
+    }
+}
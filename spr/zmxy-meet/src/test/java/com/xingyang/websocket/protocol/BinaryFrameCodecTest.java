@@ -0,0 +1,134 @@
+package com.xingyang.websocket.protocol;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 二进制帧：所有帧类型编码后能原样解码，截断或长度非法的帧一律以 IOException 拒绝
+ */
+public class BinaryFrameCodecTest {
+
+    private final BinaryFrameCodec codec = new BinaryFrameCodec();
+
+    private static List<ChatFrame> allFrames() {
+        return List.of(
+                new ChatFrame.Auth("token-abc"),
+                new ChatFrame.Send(42L, "你好，world"),
+                new ChatFrame.Ack(Long.MAX_VALUE),
+                new ChatFrame.Replay(),
+                new ChatFrame.Typing(0L),
+                new ChatFrame.ReadReceipt(7L, 300L),
+                new ChatFrame.CircleSend(9L, ""),
+                new ChatFrame.CircleRead(9L, 128L),
+                new ChatFrame.AuthSuccess("认证成功"),
+                new ChatFrame.Deliver(1L, 2L, "hi", 1700000000000L, true),
+                new ChatFrame.Deliver(1L, 2L, "hi", 1700000000000L, false),
+                new ChatFrame.Sent(-1L),
+                new ChatFrame.Error("出错了"),
+                new ChatFrame.ReplayComplete(),
+                new ChatFrame.ReplayBusy(),
+                new ChatFrame.TypingNotice(5L),
+                new ChatFrame.ReadNotice(5L, 6L),
+                new ChatFrame.CircleDeliver(3L, 4L, 5L, "x".repeat(1000), 1700000000000L),
+                new ChatFrame.CircleSent(3L, 4L),
+                new ChatFrame.Notify(10L, "like", "赞了你的动态", 20L, 30L, 3, 99L),
+                new ChatFrame.UnreadCount(ChatFrame.UnreadCount.MESSAGE, 12L));
+    }
+
+    @Test
+    void everyFrameRoundTrips() throws IOException {
+        for (ChatFrame frame : allFrames()) {
+            assertEquals(frame, codec.decode(ByteBuffer.wrap(codec.encodeBytes(frame))), frame.toString());
+            assertEquals(frame, codec.decode(codec.encode(frame)), frame.toString());
+        }
+    }
+
+    @Test
+    void decodesFromDirectBuffer() throws IOException {
+        // 跨节点转发时可能拿到没有底层数组的缓冲区，走 readString 的拷贝分支
+        ChatFrame frame = new ChatFrame.Send(42L, "direct");
+        byte[] bytes = codec.encodeBytes(frame);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        assertEquals(frame, codec.decode(direct));
+    }
+
+    @Test
+    void everyTruncatedFrameIsRejected() throws IOException {
+        assertThrows(IOException.class, () -> codec.decode(ByteBuffer.allocate(0)));
+        for (ChatFrame frame : allFrames()) {
+            byte[] bytes = codec.encodeBytes(frame);
+            for (int length = 1; length < bytes.length; length++) {
+                ByteBuffer truncated = ByteBuffer.wrap(Arrays.copyOf(bytes, length));
+                assertThrows(IOException.class, () -> codec.decode(truncated), frame + " 截断到 " + length);
+            }
+        }
+    }
+
+    @Test
+    void overlongVarintIsRejected() {
+        // 11 个字节都带续位标记，超过 64 位
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(3);
+        for (int i = 0; i < 10; i++) {
+            out.write(0x80);
+        }
+        out.write(0x01);
+        IOException e = assertThrows(IOException.class, () -> codec.decode(ByteBuffer.wrap(out.toByteArray())));
+        assertTrue(e.getMessage().contains("varint"));
+    }
+
+    @Test
+    void negativeStringLengthIsRejected() {
+        byte[] frame = frame(1, varint(-1L), new byte[]{'a', 'b', 'c'});
+        assertThrows(IOException.class, () -> codec.decode(ByteBuffer.wrap(frame)));
+    }
+
+    @Test
+    void stringLengthBeyondPayloadIsRejected() {
+        byte[] frame = frame(13, varint(1000L), new byte[]{'a', 'b', 'c'});
+        assertThrows(IOException.class, () -> codec.decode(ByteBuffer.wrap(frame)));
+    }
+
+    @Test
+    void stringLengthOverflowingIntIsRejected() {
+        // 1L << 32 直接转 int 是 0，以前会被当成空字符串接受
+        byte[] frame = frame(13, varint(1L << 32), new byte[0]);
+        assertThrows(IOException.class, () -> codec.decode(ByteBuffer.wrap(frame)));
+    }
+
+    @Test
+    void unknownTypeAndTextMessageAreRejected() {
+        assertThrows(IOException.class, () -> codec.decode(ByteBuffer.wrap(new byte[]{99})));
+        assertThrows(IOException.class, () -> codec.decode(new TextMessage("{\"type\":\"auth\"}")));
+        assertThrows(IOException.class, () -> codec.decode(new BinaryMessage(new byte[0])));
+    }
+
+    private static byte[] frame(int type, byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(type);
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] varint(long value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+        return out.toByteArray();
+    }
+}
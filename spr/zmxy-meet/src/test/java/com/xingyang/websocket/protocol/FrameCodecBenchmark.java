@@ -0,0 +1,75 @@
+package com.xingyang.websocket.protocol;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON 与二进制帧编解码对比
+ * 运行：在 IDE 中执行 main，或 mvn test-compile 后用 test classpath 启动本类；
+ * 加 -prof gc 可以看到每次操作的分配字节数
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FrameCodecBenchmark {
+    
+    private JsonFrameCodec jsonCodec;
+    private BinaryFrameCodec binaryCodec;
+    
+    private ChatFrame.Deliver deliver;
+    private WebSocketMessage<?> jsonSend;
+    private WebSocketMessage<?> binarySend;
+    
+    @Setup
+    public void setup() throws Exception {
+        jsonCodec = new JsonFrameCodec(new ObjectMapper());
+        binaryCodec = new BinaryFrameCodec();
+        
+        deliver = new ChatFrame.Deliver(1234567L, 42L, "晚上一起去图书馆吗？", 1733232000000L, false);
+        ChatFrame.Send send = new ChatFrame.Send(42L, "晚上一起去图书馆吗？");
+        jsonSend = new TextMessage(
+                "{\"type\":\"message\",\"receiverId\":42,\"content\":\"晚上一起去图书馆吗？\"}");
+        binarySend = new BinaryMessage(binaryCodec.encodeBytes(send));
+        
+        System.out.println("JSON 下发帧字节数: " + jsonCodec.encode(deliver).getPayloadLength());
+        System.out.println("二进制下发帧字节数: " + binaryCodec.encode(deliver).getPayloadLength());
+    }
+    
+    @Benchmark
+    public WebSocketMessage<?> encodeJson() throws Exception {
+        return jsonCodec.encode(deliver);
+    }
+    
+    @Benchmark
+    public WebSocketMessage<?> encodeBinary() throws Exception {
+        return binaryCodec.encode(deliver);
+    }
+    
+    @Benchmark
+    public ChatFrame decodeJson() throws Exception {
+        return jsonCodec.decode(jsonSend);
+    }
+    
+    @Benchmark
+    public ChatFrame decodeBinary() throws Exception {
+        return binaryCodec.decode(binarySend);
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(FrameCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,104 @@
+package com.xingyang.websocket.protocol;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JSON 帧：客户端帧按原有字段名解码，服务端帧编码后字段与原格式一致，非法帧以 IOException 拒绝
+ */
+public class JsonFrameCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonFrameCodec codec = new JsonFrameCodec(objectMapper);
+
+    @Test
+    void everyClientFrameDecodes() throws IOException {
+        Map<String, ChatFrame> cases = new LinkedHashMap<>();
+        cases.put("{\"type\":\"auth\",\"token\":\"token-abc\"}", new ChatFrame.Auth("token-abc"));
+        cases.put("{\"type\":\"message\",\"receiverId\":42,\"content\":\"你好\"}", new ChatFrame.Send(42L, "你好"));
+        cases.put("{\"type\":\"ack\",\"messageId\":9223372036854775807}", new ChatFrame.Ack(Long.MAX_VALUE));
+        cases.put("{\"type\":\"replay\"}", new ChatFrame.Replay());
+        cases.put("{\"type\":\"typing\",\"receiverId\":7}", new ChatFrame.Typing(7L));
+        cases.put("{\"type\":\"read\",\"peerId\":7,\"messageId\":300}", new ChatFrame.ReadReceipt(7L, 300L));
+        cases.put("{\"type\":\"circle_message\",\"circleId\":9,\"content\":\"\"}", new ChatFrame.CircleSend(9L, ""));
+        cases.put("{\"type\":\"circle_read\",\"circleId\":9,\"messageId\":128}", new ChatFrame.CircleRead(9L, 128L));
+        for (Map.Entry<String, ChatFrame> c : cases.entrySet()) {
+            assertEquals(c.getValue(), codec.decode(new TextMessage(c.getKey())), c.getKey());
+        }
+    }
+
+    @Test
+    void unknownFieldsAreSkipped() throws IOException {
+        // 字段顺序不限，未知字段（包括嵌套对象）跳过
+        ChatFrame frame = codec.decode(new TextMessage(
+                "{\"extra\":{\"a\":[1,2]},\"content\":\"hi\",\"receiverId\":1,\"type\":\"message\"}"));
+        assertEquals(new ChatFrame.Send(1L, "hi"), frame);
+    }
+
+    @Test
+    void everyServerFrameEncodes() throws IOException {
+        assertFields(new ChatFrame.AuthSuccess("认证成功"), Map.of("type", "auth_success", "message", "认证成功"));
+        assertFields(new ChatFrame.Deliver(1L, 2L, "hi", 1700000000000L, true), Map.of("type", "message",
+                "id", 1L, "senderId", 2L, "content", "hi", "timestamp", 1700000000000L, "offline", true));
+        assertFields(new ChatFrame.Deliver(1L, 2L, "hi", 1700000000000L, false), Map.of("type", "message",
+                "id", 1L, "senderId", 2L, "content", "hi", "timestamp", 1700000000000L));
+        assertFields(new ChatFrame.Sent(5L), Map.of("type", "message_sent", "messageId", 5L));
+        assertFields(new ChatFrame.Error("出错了"), Map.of("type", "error", "message", "出错了"));
+        assertFields(new ChatFrame.ReplayComplete(), Map.of("type", "replay_complete"));
+        assertFields(new ChatFrame.ReplayBusy(), Map.of("type", "replay_busy"));
+        assertFields(new ChatFrame.TypingNotice(5L), Map.of("type", "typing", "senderId", 5L));
+        assertFields(new ChatFrame.ReadNotice(5L, 6L), Map.of("type", "read", "readerId", 5L, "messageId", 6L));
+        assertFields(new ChatFrame.CircleDeliver(3L, 4L, 5L, "hi", 1700000000000L), Map.of("type", "circle_message",
+                "circleId", 3L, "id", 4L, "senderId", 5L, "content", "hi", "timestamp", 1700000000000L));
+        assertFields(new ChatFrame.CircleSent(3L, 4L), Map.of("type", "circle_message_sent",
+                "circleId", 3L, "messageId", 4L));
+        assertFields(new ChatFrame.Notify(10L, "like", "赞了你的动态", 20L, 30L, 3, 99L), Map.of("type", "notification",
+                "id", 10L, "notificationType", "like", "content", "赞了你的动态", "relatedId", 20L, "senderId", 30L,
+                "aggregateCount", 3L, "unreadCount", 99L));
+        assertFields(new ChatFrame.UnreadCount(ChatFrame.UnreadCount.MESSAGE, 12L), Map.of("type", "unread_count",
+                "category", "message", "count", 12L));
+    }
+
+    @Test
+    void clientFramesCannotBeEncoded() {
+        for (ChatFrame frame : List.of(new ChatFrame.Auth("t"), new ChatFrame.Send(1L, "hi"), new ChatFrame.Replay())) {
+            assertThrows(IOException.class, () -> codec.encode(frame), frame.toString());
+        }
+    }
+
+    @Test
+    void malformedFramesAreRejected() {
+        for (String payload : List.of("", "[]", "\"auth\"", "{\"token\":\"t\"}", "{\"type\":\"unknown\"}",
+                "{\"type\":\"auth\",\"token\":")) {
+            assertThrows(IOException.class, () -> codec.decode(new TextMessage(payload)), payload);
+        }
+        assertThrows(IOException.class, () -> codec.decode(new BinaryMessage(new byte[]{1})));
+    }
+
+    private void assertFields(ChatFrame frame, Map<String, Object> expected) throws IOException {
+        String payload = ((TextMessage) codec.encode(frame)).getPayload();
+        JsonNode node = objectMapper.readTree(payload);
+        assertEquals(expected.size(), node.size(), payload);
+        for (Map.Entry<String, Object> e : expected.entrySet()) {
+            JsonNode value = node.get(e.getKey());
+            assertNotNull(value, payload + " 缺少字段 " + e.getKey());
+            if (e.getValue() instanceof Long l) {
+                assertEquals(l.longValue(), value.asLong(), payload);
+            } else if (e.getValue() instanceof Boolean b) {
+                assertEquals(b, value.asBoolean(), payload);
+            } else {
+                assertEquals(e.getValue(), value.asText(), payload);
+            }
+        }
+    }
+}